@@ -16,4 +16,9 @@ public interface AndroidDevice {
     void pullFile(String remoteFrom, File localTo);
 
     void pushFile(File localFrom, String remoteTo);
+
+    /**
+     * @return API level of the Android version of the device, 0 if it is unknown
+     */
+    int getApiLevel();
 }
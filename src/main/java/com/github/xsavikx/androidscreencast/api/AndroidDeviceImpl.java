@@ -2,6 +2,7 @@ package com.github.xsavikx.androidscreencast.api;
 
 import com.android.ddmlib.IDevice;
 import com.android.ddmlib.SyncService;
+import com.github.xsavikx.androidscreencast.api.adb.ShellSessionPool;
 import com.github.xsavikx.androidscreencast.api.file.FileInfo;
 import com.github.xsavikx.androidscreencast.api.injector.OutputStreamShellOutputReceiver;
 import com.github.xsavikx.androidscreencast.exception.AndroidScreenCastRuntimeException;
@@ -22,17 +23,19 @@ import static org.slf4j.LoggerFactory.getLogger;
 public final class AndroidDeviceImpl implements AndroidDevice {
 
     private final IDevice device;
+    private final ShellSessionPool shellSessionPool;
 
     @Inject
-    public AndroidDeviceImpl(final IDevice device) {
+    public AndroidDeviceImpl(final IDevice device, final ShellSessionPool shellSessionPool) {
         this.device = device;
+        this.shellSessionPool = shellSessionPool;
     }
 
     @Override
     public String executeCommand(final String cmd) {
         log().debug("Executing command: `{}`.", cmd);
         try (final ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-            device.executeShellCommand(cmd, new OutputStreamShellOutputReceiver(bos));
+            shellSessionPool.executeShellCommand(cmd, new OutputStreamShellOutputReceiver(bos));
             final String result = new String(bos.toByteArray(), StandardCharsets.UTF_8);
             log().debug("Command `{}` executed with result: `{}`.", cmd, result);
             return result;
@@ -109,6 +112,21 @@ public final class AndroidDeviceImpl implements AndroidDevice {
         }
     }
 
+    @Override
+    public int getApiLevel() {
+        String apiLevel = device.getProperty(IDevice.PROP_BUILD_API_LEVEL);
+        try {
+            if (apiLevel == null) {
+                // Properties are read by ddmlib in background, they may be not available yet.
+                apiLevel = executeCommand("getprop " + IDevice.PROP_BUILD_API_LEVEL);
+            }
+            return Integer.parseInt(apiLevel.trim());
+        } catch (final ExecuteCommandException | NumberFormatException ex) {
+            log().warn("Unable to get API level of the device.", ex);
+            return 0;
+        }
+    }
+
     private enum LogSingleton {
         INSTANCE;
 
@@ -0,0 +1,128 @@
+package com.github.xsavikx.androidscreencast.api.adb;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Connection to a process started on the device by the raw {@code exec:} service of ADB.
+ * <p>
+ * Unlike {@code shell:}, the service passes bytes between the connection and the process unchanged in both
+ * directions, so binary data can be sent to the process. The service is not provided by Android 4.x.
+ */
+public final class ExecConnection implements Closeable {
+
+    private static final int ADB_REPLY_LENGTH = 4;
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+
+    private ExecConnection(final Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = socket.getInputStream();
+        this.out = socket.getOutputStream();
+    }
+
+    /**
+     * Connects to the ADB server and starts the command on the device.
+     *
+     * @param adbAddress    address of the ADB server
+     * @param serialNumber  serial number of the device
+     * @param command       command line of the process, interpreted by the device shell
+     * @param timeoutMillis timeout of connecting and of every read
+     * @throws ExecRejectedException if ADB refused to start the process
+     * @throws IOException           if the connection failed
+     */
+    public static ExecConnection open(final InetSocketAddress adbAddress, final String serialNumber,
+                                      final String command, final int timeoutMillis) throws IOException {
+        final Socket socket = new Socket();
+        try {
+            socket.connect(adbAddress, timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            socket.setTcpNoDelay(true);
+            final ExecConnection connection = new ExecConnection(socket);
+            connection.request("host:transport:" + serialNumber);
+            connection.request("exec:" + command);
+            return connection;
+        } catch (final IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return output of the process
+     */
+    public InputStream getInputStream() {
+        return in;
+    }
+
+    /**
+     * @return input of the process
+     */
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * Sends a request to the ADB server, see {@code SERVICES.TXT} of ADB for the protocol.
+     */
+    private void request(final String service) throws IOException {
+        final byte[] payload = service.getBytes(StandardCharsets.US_ASCII);
+        out.write(String.format("%04x", payload.length).getBytes(StandardCharsets.US_ASCII));
+        out.write(payload);
+        out.flush();
+        final String reply = readString(ADB_REPLY_LENGTH);
+        if ("FAIL".equals(reply)) {
+            final String message = readString(Integer.parseInt(readString(ADB_REPLY_LENGTH), 16));
+            throw new ExecRejectedException(service, message);
+        }
+        if (!"OKAY".equals(reply)) {
+            throw new IOException("Unexpected reply of ADB server: " + reply);
+        }
+    }
+
+    private String readString(final int length) throws IOException {
+        final byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            final int count = in.read(bytes, read, length - read);
+            if (count < 0) {
+                throw new EOFException("ADB server closed the connection.");
+            }
+            read += count;
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Thrown if ADB refused a request of the connection, for example because the device does not support the service.
+     */
+    public static final class ExecRejectedException extends IOException {
+
+        private static final long serialVersionUID = 6473081626542095717L;
+        private final String service;
+
+        private ExecRejectedException(final String service, final String message) {
+            super(String.format("ADB rejected '%s': %s", service, message));
+            this.service = service;
+        }
+
+        /**
+         * @return {@code true} if the device does not provide the {@code exec:} service, rather than being unavailable
+         */
+        public boolean isExecUnsupported() {
+            return service.startsWith("exec:");
+        }
+    }
+}
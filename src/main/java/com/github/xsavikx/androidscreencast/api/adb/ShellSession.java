@@ -0,0 +1,130 @@
+package com.github.xsavikx.androidscreencast.api.adb;
+
+import com.android.ddmlib.IShellOutputReceiver;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Long-lived {@code sh} process on the device, executing commands one after another over a single ADB connection.
+ * <p>
+ * The shell is started by an {@link ExecConnection}, so its streams pass bytes unchanged. Every command is followed
+ * by printing a unique marker with the exit code of the command, output of the command is everything printed before
+ * the marker. Commands read from {@code /dev/null}, so they can't consume the following commands, and run in a
+ * subshell, so changes of the working directory, variables and exports don't leak into the following commands and
+ * {@code exit} doesn't end the session.
+ */
+final class ShellSession implements Closeable {
+
+    private final ExecConnection connection;
+    private final InputStream in;
+    private final OutputStream out;
+    private final String markerPrefix = "__androidscreencast_" + UUID.randomUUID().toString().replace("-", "") + "_";
+    /**
+     * Bytes received since the start of the current command.
+     */
+    private byte[] output = new byte[16 * 1024];
+    private int outputLength;
+    private long commandNumber;
+
+    private ShellSession(final ExecConnection connection) {
+        this.connection = connection;
+        this.in = connection.getInputStream();
+        this.out = connection.getOutputStream();
+    }
+
+    /**
+     * Connects to the ADB server and starts a shell on the device.
+     *
+     * @param adbAddress    address of the ADB server
+     * @param serialNumber  serial number of the device
+     * @param timeoutMillis timeout of connecting and of every read
+     * @throws ExecConnection.ExecRejectedException if the device does not provide raw shell sessions
+     * @throws IOException                          if the connection failed
+     */
+    static ShellSession open(final InetSocketAddress adbAddress, final String serialNumber, final int timeoutMillis)
+            throws IOException {
+        return new ShellSession(ExecConnection.open(adbAddress, serialNumber, "sh", timeoutMillis));
+    }
+
+    /**
+     * Executes the command and passes its output to the receiver once the command has finished.
+     *
+     * @return exit code of the command
+     * @throws java.net.SocketTimeoutException if the command did not finish within the timeout, the session can't be
+     *                                         used anymore then
+     * @throws IOException                     if the connection was lost
+     */
+    int execute(final String command, final IShellOutputReceiver receiver) throws IOException {
+        final String marker = markerPrefix + (++commandNumber) + ':';
+        out.write(("( " + command + "\n) </dev/null 2>&1; printf '\\n%s%d\\n' " + marker + " $?\n")
+                .getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        final byte[] markerLine = ('\n' + marker).getBytes(StandardCharsets.US_ASCII);
+        outputLength = 0;
+        int searchFrom = 0;
+        int markerIndex;
+        while ((markerIndex = indexOf(markerLine, searchFrom)) < 0) {
+            searchFrom = Math.max(0, outputLength - markerLine.length + 1);
+            readMore();
+        }
+        final int exitCodeStart = markerIndex + markerLine.length;
+        final byte[] newLine = {'\n'};
+        int lineEnd;
+        while ((lineEnd = indexOf(newLine, exitCodeStart)) < 0) {
+            readMore();
+        }
+        receiver.addOutput(output, 0, markerIndex);
+        receiver.flush();
+        final String exitCode = new String(output, exitCodeStart, lineEnd - exitCodeStart, StandardCharsets.US_ASCII);
+        try {
+            return Integer.parseInt(exitCode.trim());
+        } catch (final NumberFormatException e) {
+            throw new IOException("Unexpected exit code of the shell command: " + exitCode, e);
+        }
+    }
+
+    /**
+     * @return whether the device responded to the last command at all, a command which failed without any response
+     * most likely was not executed
+     */
+    boolean hasResponded() {
+        return outputLength > 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        connection.close();
+    }
+
+    private void readMore() throws IOException {
+        if (outputLength == output.length) {
+            output = Arrays.copyOf(output, output.length * 2);
+        }
+        final int count = in.read(output, outputLength, output.length - outputLength);
+        if (count < 0) {
+            throw new EOFException("Shell session was closed by the device.");
+        }
+        outputLength += count;
+    }
+
+    private int indexOf(final byte[] pattern, final int from) {
+        outer:
+        for (int i = from; i <= outputLength - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (output[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,201 @@
+package com.github.xsavikx.androidscreencast.api.adb;
+
+import com.android.ddmlib.AdbCommandRejectedException;
+import com.android.ddmlib.AndroidDebugBridge;
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.IShellOutputReceiver;
+import com.android.ddmlib.ShellCommandUnresponsiveException;
+import com.android.ddmlib.TimeoutException;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.ADB_COMMAND_TIMEOUT_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.ADB_SHELL_SESSIONS_KEY;
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Executes shell commands on the device through a pool of long-lived shell sessions.
+ * <p>
+ * {@link IDevice#executeShellCommand(String, IShellOutputReceiver)} opens a new ADB connection and starts a new shell
+ * for every command, which adds tens of milliseconds to every tap or key press. Sessions of the pool are opened on
+ * demand and reused, so a command costs only its own execution on the device. Several sessions let a slow command,
+ * like listing a large directory, run concurrently with input commands.
+ * <p>
+ * A session which failed or timed out is closed and replaced by a new one on the next command. A command failing on a
+ * reused session because the connection was lost while the session was idle is retried once on a new session. If the
+ * device does not provide raw shell sessions (Android 4.x), or the pool is disabled, commands are executed by
+ * {@link IDevice#executeShellCommand(String, IShellOutputReceiver, long, TimeUnit)}.
+ */
+@Singleton
+public final class ShellSessionPool {
+
+    private final IDevice device;
+    private final int maxSessions;
+    private final long commandTimeout;
+    private final BlockingQueue<ShellSession> idleSessions = new LinkedBlockingQueue<>();
+    private final Semaphore permits;
+    private volatile boolean sessionsUnsupported = false;
+    private volatile boolean isClosed = false;
+
+    @Inject
+    public ShellSessionPool(final IDevice device,
+                            @Named(ADB_SHELL_SESSIONS_KEY) final int maxSessions,
+                            @Named(ADB_COMMAND_TIMEOUT_KEY) final long commandTimeout) {
+        checkArgument(maxSessions >= 0, "Amount of shell sessions must not be negative, but was %s", maxSessions);
+        this.device = device;
+        this.maxSessions = maxSessions;
+        this.commandTimeout = commandTimeout;
+        this.permits = new Semaphore(maxSessions, true);
+    }
+
+    /**
+     * Executes the command and passes its output to the receiver once the command has finished.
+     * <p>
+     * Every command starts in the same state as in a new shell: it runs in a subshell of the session, so changing the
+     * working directory, setting variables or exporting them affects only the command itself.
+     *
+     * @throws TimeoutException                 if no session got free within the command timeout
+     * @throws ShellCommandUnresponsiveException if the command did not finish within the command timeout
+     * @throws AdbCommandRejectedException      if ADB rejected the command executed without a session
+     * @throws IOException                      if the connection to the device was lost
+     */
+    public void executeShellCommand(final String command, final IShellOutputReceiver receiver)
+            throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
+        if (maxSessions == 0 || sessionsUnsupported || isClosed) {
+            device.executeShellCommand(command, receiver, commandTimeout, TimeUnit.SECONDS);
+            return;
+        }
+        acquirePermit();
+        try {
+            ShellSession session = idleSessions.poll();
+            if (session != null && executeOnIdleSession(session, command, receiver)) {
+                return;
+            }
+            session = openSession();
+            if (session == null) {
+                device.executeShellCommand(command, receiver, commandTimeout, TimeUnit.SECONDS);
+                return;
+            }
+            execute(session, command, receiver);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes idle sessions, commands executed afterwards don't use sessions.
+     */
+    public void close() {
+        isClosed = true;
+        ShellSession session;
+        while ((session = idleSessions.poll()) != null) {
+            closeQuietly(session);
+        }
+    }
+
+    /**
+     * @return {@code false} if the connection of the idle session was lost before the command was sent, so the
+     * command has to be executed by another session
+     */
+    private boolean executeOnIdleSession(final ShellSession session, final String command,
+                                         final IShellOutputReceiver receiver)
+            throws ShellCommandUnresponsiveException, IOException {
+        try {
+            session.execute(command, receiver);
+        } catch (final SocketTimeoutException e) {
+            closeQuietly(session);
+            throw new ShellCommandUnresponsiveException();
+        } catch (final IOException e) {
+            closeQuietly(session);
+            if (session.hasResponded()) {
+                throw e;
+            }
+            log().debug("Idle shell session was lost, reconnecting.", e);
+            return false;
+        }
+        release(session);
+        return true;
+    }
+
+    private void execute(final ShellSession session, final String command, final IShellOutputReceiver receiver)
+            throws ShellCommandUnresponsiveException, IOException {
+        try {
+            session.execute(command, receiver);
+        } catch (final SocketTimeoutException e) {
+            closeQuietly(session);
+            throw new ShellCommandUnresponsiveException();
+        } catch (final IOException e) {
+            closeQuietly(session);
+            throw e;
+        }
+        release(session);
+    }
+
+    /**
+     * @return new session, or {@code null} if the command has to be executed without a session
+     */
+    private ShellSession openSession() {
+        try {
+            return ShellSession.open(AndroidDebugBridge.getSocketAddress(), device.getSerialNumber(),
+                    (int) TimeUnit.SECONDS.toMillis(commandTimeout));
+        } catch (final ExecConnection.ExecRejectedException e) {
+            if (e.isExecUnsupported()) {
+                sessionsUnsupported = true;
+                log().info("Device does not support persistent shell sessions, a new shell is started for every command.");
+            } else {
+                log().warn("Unable to open a shell session.", e);
+            }
+        } catch (final IOException e) {
+            log().warn("Unable to open a shell session.", e);
+        }
+        return null;
+    }
+
+    private void acquirePermit() throws TimeoutException, IOException {
+        try {
+            if (!permits.tryAcquire(commandTimeout, TimeUnit.SECONDS)) {
+                throw new TimeoutException();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a shell session.", e);
+        }
+    }
+
+    private void release(final ShellSession session) {
+        if (isClosed) {
+            closeQuietly(session);
+        } else {
+            idleSessions.offer(session);
+        }
+    }
+
+    private static void closeQuietly(final ShellSession session) {
+        try {
+            session.close();
+        } catch (final IOException e) {
+            log().debug("Unable to close the shell session.", e);
+        }
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+
+        @SuppressWarnings({"NonSerializableFieldInSerializableClass", "ImmutableEnumChecker"})
+        private final Logger value = getLogger(ShellSessionPool.class);
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.xsavikx.androidscreencast.api.command;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Single step of a touch gesture, available since Android 10.
+ * <p>
+ * A gesture is a {@link Action#DOWN} followed by any amount of {@link Action#MOVE} and ends by {@link Action#UP}, so the
+ * device follows the finger while the gesture is still going on, unlike {@link SwipeCommand}.
+ * <p>
+ * A step may carry several pointers for multi-touch gestures, fingers are added or lifted when their amount changes
+ * between steps. {@code input motionevent} knows a single pointer only, so it gets the first one.
+ */
+public final class MotionEventCommand extends InputCommand {
+
+    private final Action action;
+    private final int[] x;
+    private final int[] y;
+
+    public MotionEventCommand(Action action, int x, int y) {
+        this(action, new int[]{x}, new int[]{y});
+    }
+
+    public MotionEventCommand(Action action, int[] x, int[] y) {
+        checkArgument(x.length > 0 && x.length == y.length,
+                "Motion event must have the same positive amount of coordinates, but had %s and %s", x.length, y.length);
+        this.action = action;
+        this.x = x.clone();
+        this.y = y.clone();
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public int getPointerCount() {
+        return x.length;
+    }
+
+    public int getX() {
+        return x[0];
+    }
+
+    public int getY() {
+        return y[0];
+    }
+
+    public int getX(int pointerIndex) {
+        return x[pointerIndex];
+    }
+
+    public int getY(int pointerIndex) {
+        return y[pointerIndex];
+    }
+
+    @Override
+    protected String getCommandPart() {
+        return "motionevent " + action + ' ' + x[0] + ' ' + y[0];
+    }
+
+    public enum Action {
+        DOWN,
+        MOVE,
+        UP
+    }
+}
@@ -24,6 +24,26 @@ public final class SwipeCommand extends InputCommand {
         this.duration = duration;
     }
 
+    public int getX1() {
+        return x1;
+    }
+
+    public int getY1() {
+        return y1;
+    }
+
+    public int getX2() {
+        return x2;
+    }
+
+    public int getY2() {
+        return y2;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
     @Override
     protected String getCommandPart() {
         StringBuilder stringBuilder = new StringBuilder("swipe ");
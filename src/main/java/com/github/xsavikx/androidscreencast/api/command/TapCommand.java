@@ -10,6 +10,14 @@ public final class TapCommand extends InputCommand {
         this.y = y;
     }
 
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
     @Override
     protected String getCommandPart() {
         return "tap " + x + ' ' + y;
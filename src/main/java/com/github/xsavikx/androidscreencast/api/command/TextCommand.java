@@ -0,0 +1,26 @@
+package com.github.xsavikx.androidscreencast.api.command;
+
+/**
+ * Types a string of printable ASCII characters at once.
+ * <p>
+ * The text is quoted for the device shell. {@code input} replaces {@code %s} by a space, so spaces are sent as
+ * {@code %s}, which keeps them intact on devices splitting the text by whitespace. A {@code %} directly followed by
+ * {@code s} can't be typed by a single command.
+ */
+public final class TextCommand extends InputCommand {
+
+    private final String text;
+
+    public TextCommand(String text) {
+        this.text = text;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    protected String getCommandPart() {
+        return "text '" + text.replace(" ", "%s").replace("'", "'\\''") + '\'';
+    }
+}
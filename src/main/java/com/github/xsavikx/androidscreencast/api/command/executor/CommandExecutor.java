@@ -2,7 +2,31 @@ package com.github.xsavikx.androidscreencast.api.command.executor;
 
 import com.github.xsavikx.androidscreencast.api.command.Command;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface CommandExecutor {
 
+    /**
+     * Executes the command and waits until it is finished.
+     */
     void execute(Command command);
+
+    /**
+     * Executes the command without blocking the caller if the implementation allows it. Commands submitted by one thread
+     * are executed in the order of submission.
+     * <p>
+     * By default the command is executed on the calling thread.
+     *
+     * @return future completed once the command is executed, or completed exceptionally if it failed or was dropped
+     */
+    default CompletableFuture<Void> submit(Command command) {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            execute(command);
+            result.complete(null);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
 }
@@ -0,0 +1,274 @@
+package com.github.xsavikx.androidscreencast.api.command.executor;
+
+import com.android.ddmlib.AndroidDebugBridge;
+import com.android.ddmlib.IDevice;
+import com.github.xsavikx.androidscreencast.api.AndroidDevice;
+import com.github.xsavikx.androidscreencast.api.adb.ExecConnection;
+import com.github.xsavikx.androidscreencast.api.command.Command;
+import com.github.xsavikx.androidscreencast.api.command.MotionEventCommand;
+import com.github.xsavikx.androidscreencast.api.command.SwipeCommand;
+import com.github.xsavikx.androidscreencast.api.command.TapCommand;
+import com.github.xsavikx.androidscreencast.api.command.exception.AdbShellCommandExecutionException;
+import com.github.xsavikx.androidscreencast.api.image.Rotation;
+import com.github.xsavikx.androidscreencast.api.injector.DeviceOrientationMonitor;
+import com.github.xsavikx.androidscreencast.exception.ExecuteCommandException;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_POSITION_X;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_POSITION_Y;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.ADB_COMMAND_TIMEOUT_KEY;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Executes touch commands by writing input events straight into the touchscreen device node.
+ * <p>
+ * {@code input} starts a Java process on the device for every command, which takes 100 ms or more. Here touches are
+ * written by a single {@code cat} process, which is started on the first touch and kept running, so a touch costs
+ * only its transfer to the device. Several pointers of a {@link MotionEventCommand} are passed as multi-touch.
+ * <p>
+ * Positions are given in display coordinates, like for {@code input}, and are mapped to the axes of the touchscreen,
+ * which always reports positions in the natural orientation. The current rotation is known only while the device
+ * orientation is monitored, otherwise the natural orientation is assumed.
+ * <p>
+ * Other commands, and all commands if the touchscreen can't be written by the shell user or ADB doesn't provide
+ * {@link ExecConnection raw connections}, are executed by {@link ShellCommandExecutor}.
+ */
+@Singleton
+public final class EvdevCommandExecutor implements CommandExecutor {
+
+    private static final String GETEVENT_COMMAND = "getevent -p";
+    private static final String DISPLAY_SIZE_COMMAND = "wm size";
+    private static final String CPU_ABI_COMMAND = "getprop ro.product.cpu.abi";
+    private static final Pattern DISPLAY_SIZE_PATTERN = Pattern.compile("(Physical|Override) size: (\\d+)x(\\d+)");
+    private static final String WRITABLE = "writable";
+    private static final long SWIPE_STEP_MILLIS = 16;
+    /**
+     * Swipes hold the command queue, so they are not allowed to last longer.
+     */
+    private static final long MAX_SWIPE_MILLIS = 2000;
+    private final ShellCommandExecutor shellCommandExecutor;
+    private final AndroidDevice androidDevice;
+    private final IDevice device;
+    private final DeviceOrientationMonitor orientationMonitor;
+    private final long commandTimeout;
+    /**
+     * {@code null} until the touchscreen is found. Guarded by this.
+     */
+    private EvdevTouchscreen touchscreen;
+    private int displayWidth;
+    private int displayHeight;
+    private int eventSize;
+    private boolean isUnavailable = false;
+    private ExecConnection connection;
+    private EvdevEventWriter writer;
+
+    @Inject
+    public EvdevCommandExecutor(final ShellCommandExecutor shellCommandExecutor,
+                                final AndroidDevice androidDevice,
+                                final IDevice device,
+                                final DeviceOrientationMonitor orientationMonitor,
+                                @Named(ADB_COMMAND_TIMEOUT_KEY) final long commandTimeout) {
+        this.shellCommandExecutor = shellCommandExecutor;
+        this.androidDevice = androidDevice;
+        this.device = device;
+        this.orientationMonitor = orientationMonitor;
+        this.commandTimeout = commandTimeout;
+    }
+
+    @Override
+    public void execute(final Command command) {
+        if (!(command instanceof MotionEventCommand || command instanceof TapCommand
+                || command instanceof SwipeCommand)) {
+            shellCommandExecutor.execute(command);
+            return;
+        }
+        synchronized (this) {
+            if (!open()) {
+                shellCommandExecutor.execute(command);
+                return;
+            }
+            log().debug("Injecting command: {}", command);
+            try {
+                inject(command);
+            } catch (final IOException e) {
+                log().error("An exception happened during command injection: {}.", command, e);
+                closeConnection();
+                throw new AdbShellCommandExecutionException(command, e);
+            }
+        }
+    }
+
+    private void inject(final Command command) throws IOException {
+        if (command instanceof MotionEventCommand) {
+            final MotionEventCommand motionEvent = (MotionEventCommand) command;
+            if (motionEvent.getAction() == MotionEventCommand.Action.UP) {
+                writer.release();
+                return;
+            }
+            final int[] x = new int[motionEvent.getPointerCount()];
+            final int[] y = new int[x.length];
+            for (int i = 0; i < x.length; i++) {
+                x[i] = toAxisX(motionEvent.getX(i), motionEvent.getY(i));
+                y[i] = toAxisY(motionEvent.getX(i), motionEvent.getY(i));
+            }
+            writer.touch(x, y);
+        } else if (command instanceof TapCommand) {
+            final TapCommand tap = (TapCommand) command;
+            touch(tap.getX(), tap.getY());
+            writer.release();
+        } else {
+            swipe((SwipeCommand) command);
+        }
+    }
+
+    private void swipe(final SwipeCommand swipe) throws IOException {
+        final long duration = Math.min(Math.max(swipe.getDuration(), 0), MAX_SWIPE_MILLIS);
+        final long steps = Math.max(1, duration / SWIPE_STEP_MILLIS);
+        try {
+            for (long step = 0; step <= steps; step++) {
+                touch((int) (swipe.getX1() + (swipe.getX2() - swipe.getX1()) * step / steps),
+                        (int) (swipe.getY1() + (swipe.getY2() - swipe.getY1()) * step / steps));
+                if (step < steps) {
+                    TimeUnit.MILLISECONDS.sleep(duration / steps);
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.release();
+    }
+
+    private void touch(final int x, final int y) throws IOException {
+        writer.touch(new int[]{toAxisX(x, y)}, new int[]{toAxisY(x, y)});
+    }
+
+    private int toAxisX(final int x, final int y) {
+        return toAxis(touchscreen.getAxis(ABS_MT_POSITION_X), toNaturalX(x, y), displayWidth);
+    }
+
+    private int toAxisY(final int x, final int y) {
+        return toAxis(touchscreen.getAxis(ABS_MT_POSITION_Y), toNaturalY(x, y), displayHeight);
+    }
+
+    private static int toAxis(final EvdevTouchscreen.Axis axis, final int position, final int displayLength) {
+        return axis.clamp(axis.getMin() + (int) ((long) position * axis.getRange() / displayLength));
+    }
+
+    private int toNaturalX(final int x, final int y) {
+        switch (getRotation()) {
+            case ROTATION_90:
+                return displayWidth - 1 - y;
+            case ROTATION_180:
+                return displayWidth - 1 - x;
+            case ROTATION_270:
+                return y;
+            default:
+                return x;
+        }
+    }
+
+    private int toNaturalY(final int x, final int y) {
+        switch (getRotation()) {
+            case ROTATION_90:
+                return x;
+            case ROTATION_180:
+                return displayHeight - 1 - y;
+            case ROTATION_270:
+                return displayHeight - 1 - x;
+            default:
+                return y;
+        }
+    }
+
+    private Rotation getRotation() {
+        final Rotation rotation = orientationMonitor.getDeviceRotation();
+        return rotation == null ? Rotation.ROTATION_0 : rotation;
+    }
+
+    /**
+     * @return {@code false} if touches have to be executed by shell commands
+     */
+    private boolean open() {
+        if (writer != null) {
+            return true;
+        }
+        if (isUnavailable) {
+            return false;
+        }
+        try {
+            if (touchscreen == null && !findTouchscreen()) {
+                isUnavailable = true;
+                return false;
+            }
+            connection = ExecConnection.open(AndroidDebugBridge.getSocketAddress(), device.getSerialNumber(),
+                    "cat > " + touchscreen.getPath(), (int) TimeUnit.SECONDS.toMillis(commandTimeout));
+            writer = new EvdevEventWriter(touchscreen, eventSize, connection.getOutputStream());
+            log().info("Injecting touches into {}.", touchscreen);
+            return true;
+        } catch (final ExecConnection.ExecRejectedException e) {
+            if (e.isExecUnsupported()) {
+                isUnavailable = true;
+                log().info("Device does not support raw connections, touches are injected by shell commands.");
+            } else {
+                log().warn("Unable to open the touchscreen.", e);
+            }
+        } catch (final IOException | ExecuteCommandException e) {
+            log().warn("Unable to open the touchscreen.", e);
+        }
+        return false;
+    }
+
+    private boolean findTouchscreen() {
+        final EvdevTouchscreen found = EvdevTouchscreen.find(androidDevice.executeCommand(GETEVENT_COMMAND));
+        if (found == null) {
+            log().warn("No multi-touch touchscreen found, touches are injected by shell commands.");
+            return false;
+        }
+        if (!androidDevice.executeCommand("test -w " + found.getPath() + " && echo " + WRITABLE).contains(WRITABLE)) {
+            log().warn("Touchscreen {} is not writable, touches are injected by shell commands.", found.getPath());
+            return false;
+        }
+        // Sizes are given in the natural orientation, a size overridden by "wm size" follows the physical one.
+        displayWidth = found.getAxis(ABS_MT_POSITION_X).getRange();
+        displayHeight = found.getAxis(ABS_MT_POSITION_Y).getRange();
+        final Matcher displaySize = DISPLAY_SIZE_PATTERN.matcher(androidDevice.executeCommand(DISPLAY_SIZE_COMMAND));
+        while (displaySize.find()) {
+            displayWidth = Integer.parseInt(displaySize.group(2));
+            displayHeight = Integer.parseInt(displaySize.group(3));
+        }
+        eventSize = androidDevice.executeCommand(CPU_ABI_COMMAND).contains("64")
+                ? EvdevEventWriter.EVENT_SIZE_64
+                : EvdevEventWriter.EVENT_SIZE_32;
+        touchscreen = found;
+        return true;
+    }
+
+    private void closeConnection() {
+        writer = null;
+        try {
+            connection.close();
+        } catch (final IOException e) {
+            log().debug("Unable to close the touchscreen connection.", e);
+        }
+        connection = null;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+
+        @SuppressWarnings({"NonSerializableFieldInSerializableClass", "ImmutableEnumChecker"})
+        private final Logger value = getLogger(EvdevCommandExecutor.class);
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.xsavikx.androidscreencast.api.command.executor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_POSITION_X;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_POSITION_Y;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_PRESSURE;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_SLOT;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_TOUCH_MAJOR;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_TRACKING_ID;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.BTN_TOUCH;
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Writes touches of an {@link EvdevTouchscreen} as {@code struct input_event} records, following multi-touch protocol
+ * B: every finger is tracked in its own slot and keeps its tracking id until it is lifted.
+ * <p>
+ * Records of a single report are written at once, ending by {@code SYN_REPORT}. Timestamps are left 0, the kernel sets
+ * them. All Android ABIs are little endian.
+ */
+final class EvdevEventWriter {
+
+    /**
+     * Size of {@code struct input_event} for 64-bit user space, {@code struct timeval} has 64-bit fields there.
+     */
+    static final int EVENT_SIZE_64 = 24;
+    /**
+     * Size of {@code struct input_event} for 32-bit user space.
+     */
+    static final int EVENT_SIZE_32 = 16;
+    private static final int EV_SYN = 0x00;
+    private static final int EV_KEY = 0x01;
+    private static final int EV_ABS = 0x03;
+    private static final int SYN_REPORT = 0;
+    /**
+     * Events reported for a finger put down: slot, tracking id, pressure, touch major and position.
+     */
+    private static final int MAX_EVENTS_PER_POINTER = 6;
+    private final EvdevTouchscreen touchscreen;
+    private final OutputStream out;
+    private final int eventSize;
+    private final ByteBuffer buffer;
+    /**
+     * Tracking id of the finger in every slot, -1 if the slot is free.
+     */
+    private final int[] trackingIds;
+    private int activePointers = 0;
+    private int lastTrackingId = -1;
+
+    EvdevEventWriter(final EvdevTouchscreen touchscreen, final int eventSize, final OutputStream out) {
+        checkArgument(eventSize == EVENT_SIZE_64 || eventSize == EVENT_SIZE_32, "Unknown input event size: %s", eventSize);
+        this.touchscreen = touchscreen;
+        this.out = out;
+        this.eventSize = eventSize;
+        this.trackingIds = new int[touchscreen.getMaxPointers()];
+        Arrays.fill(trackingIds, -1);
+        this.buffer = ByteBuffer.allocate((trackingIds.length * MAX_EVENTS_PER_POINTER + 2) * eventSize)
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Moves fingers to the given positions, putting them down if they are not touching yet. Fingers beyond the given
+     * positions are lifted, so empty arrays lift all fingers. Positions beyond the amount of fingers tracked by the
+     * touchscreen are ignored.
+     *
+     * @param x positions on the {@code ABS_MT_POSITION_X} axis
+     * @param y positions on the {@code ABS_MT_POSITION_Y} axis
+     * @throws IOException if writing the records failed
+     */
+    void touch(final int[] x, final int[] y) throws IOException {
+        final int pointers = Math.min(Math.min(x.length, y.length), trackingIds.length);
+        final int firstSlot = touchscreen.getAxis(ABS_MT_SLOT).getMin();
+        buffer.clear();
+        for (int i = 0; i < pointers; i++) {
+            abs(ABS_MT_SLOT, firstSlot + i);
+            if (trackingIds[i] < 0) {
+                trackingIds[i] = nextTrackingId();
+                abs(ABS_MT_TRACKING_ID, trackingIds[i]);
+                if (touchscreen.getAxis(ABS_MT_PRESSURE) != null) {
+                    abs(ABS_MT_PRESSURE, touchscreen.getAxis(ABS_MT_PRESSURE).getMiddle());
+                }
+                if (touchscreen.getAxis(ABS_MT_TOUCH_MAJOR) != null) {
+                    abs(ABS_MT_TOUCH_MAJOR, touchscreen.getAxis(ABS_MT_TOUCH_MAJOR).getMiddle());
+                }
+            }
+            abs(ABS_MT_POSITION_X, touchscreen.getAxis(ABS_MT_POSITION_X).clamp(x[i]));
+            abs(ABS_MT_POSITION_Y, touchscreen.getAxis(ABS_MT_POSITION_Y).clamp(y[i]));
+        }
+        for (int i = pointers; i < trackingIds.length; i++) {
+            if (trackingIds[i] >= 0) {
+                abs(ABS_MT_SLOT, firstSlot + i);
+                abs(ABS_MT_TRACKING_ID, -1);
+                trackingIds[i] = -1;
+            }
+        }
+        if (touchscreen.hasKey(BTN_TOUCH) && (activePointers == 0) != (pointers == 0)) {
+            event(EV_KEY, BTN_TOUCH, pointers > 0 ? 1 : 0);
+        }
+        event(EV_SYN, SYN_REPORT, 0);
+        activePointers = pointers;
+        out.write(buffer.array(), 0, buffer.position());
+        out.flush();
+    }
+
+    /**
+     * Lifts all fingers.
+     *
+     * @throws IOException if writing the records failed
+     */
+    void release() throws IOException {
+        if (activePointers > 0) {
+            touch(new int[0], new int[0]);
+        }
+    }
+
+    private int nextTrackingId() {
+        final EvdevTouchscreen.Axis axis = touchscreen.getAxis(ABS_MT_TRACKING_ID);
+        lastTrackingId = lastTrackingId < Math.max(0, axis.getMin()) || lastTrackingId >= axis.getMax()
+                ? Math.max(0, axis.getMin())
+                : lastTrackingId + 1;
+        return lastTrackingId;
+    }
+
+    private void abs(final int code, final int value) {
+        event(EV_ABS, code, value);
+    }
+
+    private void event(final int type, final int code, final int value) {
+        for (int i = 8; i < eventSize; i += 4) {
+            // struct timeval
+            buffer.putInt(0);
+        }
+        buffer.putShort((short) type);
+        buffer.putShort((short) code);
+        buffer.putInt(value);
+    }
+}
@@ -0,0 +1,167 @@
+package com.github.xsavikx.androidscreencast.api.command.executor;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Multi-touch input device of the device, as described by {@code getevent -p}.
+ */
+final class EvdevTouchscreen {
+
+    static final int ABS_MT_SLOT = 0x2f;
+    static final int ABS_MT_TOUCH_MAJOR = 0x30;
+    static final int ABS_MT_POSITION_X = 0x35;
+    static final int ABS_MT_POSITION_Y = 0x36;
+    static final int ABS_MT_TRACKING_ID = 0x39;
+    static final int ABS_MT_PRESSURE = 0x3a;
+    static final int BTN_TOUCH = 0x14a;
+    private static final Pattern DEVICE_PATTERN = Pattern.compile("^add device \\d+: (\\S+)");
+    private static final Pattern SECTION_PATTERN = Pattern.compile("^\\s+([A-Z]+) \\([0-9a-f]{4}\\):");
+    private static final Pattern AXIS_PATTERN =
+            Pattern.compile("([0-9a-f]{4})\\s*: value -?\\d+, min (-?\\d+), max (-?\\d+)");
+    private static final Pattern CODE_PATTERN = Pattern.compile("\\b[0-9a-f]{4}\\b");
+    private static final String INPUT_PROP_DIRECT = "INPUT_PROP_DIRECT";
+    private final String path;
+    private final Map<Integer, Axis> axes = new HashMap<>();
+    private final Set<Integer> keys = new HashSet<>();
+    private boolean isDirect;
+
+    private EvdevTouchscreen(final String path) {
+        this.path = path;
+    }
+
+    /**
+     * Finds the touchscreen, which has to report touches by slots of multi-touch protocol B. A device marked as a
+     * direct input device is preferred, as touch pads and pens are not.
+     *
+     * @param geteventOutput output of {@code getevent -p}
+     * @return the touchscreen or {@code null} if there is none
+     */
+    static EvdevTouchscreen find(final String geteventOutput) {
+        EvdevTouchscreen found = null;
+        EvdevTouchscreen device = null;
+        String section = null;
+        for (final String line : geteventOutput.split("\r?\n")) {
+            final Matcher deviceMatcher = DEVICE_PATTERN.matcher(line);
+            if (deviceMatcher.find()) {
+                found = choose(found, device);
+                device = new EvdevTouchscreen(deviceMatcher.group(1));
+                section = null;
+                continue;
+            }
+            if (device == null) {
+                continue;
+            }
+            final Matcher sectionMatcher = SECTION_PATTERN.matcher(line);
+            if (sectionMatcher.find()) {
+                section = sectionMatcher.group(1);
+            } else if (!line.startsWith("        ")) {
+                section = null;
+            }
+            if (line.trim().equals(INPUT_PROP_DIRECT)) {
+                device.isDirect = true;
+            } else if ("ABS".equals(section)) {
+                final Matcher axisMatcher = AXIS_PATTERN.matcher(line);
+                if (axisMatcher.find()) {
+                    device.axes.put(Integer.parseInt(axisMatcher.group(1), 16),
+                            new Axis(Integer.parseInt(axisMatcher.group(2)), Integer.parseInt(axisMatcher.group(3))));
+                }
+            } else if ("KEY".equals(section)) {
+                final Matcher codeMatcher = CODE_PATTERN.matcher(line.substring(line.indexOf(':') + 1));
+                while (codeMatcher.find()) {
+                    device.keys.add(Integer.parseInt(codeMatcher.group(), 16));
+                }
+            }
+        }
+        return choose(found, device);
+    }
+
+    private static EvdevTouchscreen choose(final EvdevTouchscreen found, final EvdevTouchscreen device) {
+        if (device == null || !device.isTouchscreen()) {
+            return found;
+        }
+        return found == null || !found.isDirect && device.isDirect ? device : found;
+    }
+
+    private boolean isTouchscreen() {
+        return axes.containsKey(ABS_MT_SLOT) && axes.containsKey(ABS_MT_TRACKING_ID)
+                && axes.containsKey(ABS_MT_POSITION_X) && axes.containsKey(ABS_MT_POSITION_Y);
+    }
+
+    /**
+     * @return path of the device node
+     */
+    String getPath() {
+        return path;
+    }
+
+    /**
+     * @return range of the axis or {@code null} if the device doesn't report it
+     */
+    Axis getAxis(final int code) {
+        return axes.get(code);
+    }
+
+    boolean hasKey(final int code) {
+        return keys.contains(code);
+    }
+
+    /**
+     * @return amount of fingers the device tracks at once
+     */
+    int getMaxPointers() {
+        return axes.get(ABS_MT_SLOT).getRange();
+    }
+
+    @Override
+    public String toString() {
+        return path + " " + getAxis(ABS_MT_POSITION_X) + "x" + getAxis(ABS_MT_POSITION_Y) + ", " + getMaxPointers()
+                + " pointers";
+    }
+
+    static final class Axis {
+
+        private final int min;
+        private final int max;
+
+        private Axis(final int min, final int max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        int getMin() {
+            return min;
+        }
+
+        int getMax() {
+            return max;
+        }
+
+        /**
+         * @return amount of values of the axis
+         */
+        int getRange() {
+            return max - min + 1;
+        }
+
+        /**
+         * @return middle of the axis, but at least 1, as a value of 0 means no contact for pressure and touch size
+         */
+        int getMiddle() {
+            return Math.max(1, min + getRange() / 2);
+        }
+
+        int clamp(final int value) {
+            return Math.max(min, Math.min(max, value));
+        }
+
+        @Override
+        public String toString() {
+            return "[" + min + ".." + max + "]";
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.xsavikx.androidscreencast.api.command.executor;
+
+import com.github.xsavikx.androidscreencast.api.command.Command;
+import com.github.xsavikx.androidscreencast.api.injector.DropPolicy;
+import com.github.xsavikx.androidscreencast.api.injector.FrameQueue;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_INPUT_BACKEND_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_INPUT_QUEUE_POLICY_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_INPUT_QUEUE_SIZE_KEY;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Executes commands on a dedicated thread, one after another in the order they were submitted.
+ * <p>
+ * Submitting a command never waits for ADB, so input handlers on the Event Dispatch Thread return immediately and the
+ * screen keeps being painted while commands are executed. Commands wait in a bounded queue, behaviour of a full queue
+ * is defined by its {@link DropPolicy}; a dropped command completes its future with
+ * {@link RejectedExecutionException}. The thread is started on the first submitted command.
+ */
+@Singleton
+public final class QueuedCommandExecutor implements CommandExecutor {
+
+    private final CommandExecutor delegate;
+    private final FrameQueue<QueuedCommand> commands;
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    @Inject
+    public QueuedCommandExecutor(@Named(APP_INPUT_BACKEND_KEY) final CommandExecutor delegate,
+                                 @Named(APP_INPUT_QUEUE_SIZE_KEY) final int capacity,
+                                 @Named(APP_INPUT_QUEUE_POLICY_KEY) final DropPolicy dropPolicy) {
+        this.delegate = delegate;
+        this.commands = new FrameQueue<>(capacity, dropPolicy, dropped -> {
+            log().warn("Command queue is full, command {} was dropped.", dropped.command);
+            dropped.result.completeExceptionally(
+                    new RejectedExecutionException("Command queue is full, command was dropped: " + dropped.command));
+        });
+    }
+
+    /**
+     * Submits the command and waits until it and all commands submitted before it are executed.
+     */
+    @Override
+    public void execute(final Command command) {
+        try {
+            submit(command).join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> submit(final Command command) {
+        if (started.compareAndSet(false, true)) {
+            final Thread thread = new Thread(this::executeQueuedCommands, "Command Executor");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        final QueuedCommand queuedCommand = new QueuedCommand(command);
+        try {
+            commands.offer(queuedCommand);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queuedCommand.result.completeExceptionally(e);
+        }
+        return queuedCommand.result;
+    }
+
+    private void executeQueuedCommands() {
+        log().info("Starting command execution.");
+        try {
+            while (true) {
+                final QueuedCommand queuedCommand = commands.take();
+                if (queuedCommand.result.isDone()) {
+                    continue;
+                }
+                try {
+                    delegate.execute(queuedCommand.command);
+                    queuedCommand.result.complete(null);
+                } catch (final RuntimeException e) {
+                    queuedCommand.result.completeExceptionally(e);
+                }
+            }
+        } catch (final InterruptedException e) {
+            log().error("Execution of thread was interrupted. Shutting down thread.", e);
+        }
+    }
+
+    private static final class QueuedCommand {
+
+        private final Command command;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private QueuedCommand(final Command command) {
+            this.command = command;
+        }
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+
+        @SuppressWarnings({"NonSerializableFieldInSerializableClass", "ImmutableEnumChecker"})
+        private final Logger value = getLogger(QueuedCommandExecutor.class);
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+}
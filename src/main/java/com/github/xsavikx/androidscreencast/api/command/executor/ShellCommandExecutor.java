@@ -1,33 +1,33 @@
 package com.github.xsavikx.androidscreencast.api.command.executor;
 
 import com.android.ddmlib.*;
+import com.github.xsavikx.androidscreencast.api.adb.ShellSessionPool;
 import com.github.xsavikx.androidscreencast.api.command.Command;
 import com.github.xsavikx.androidscreencast.api.command.exception.AdbShellCommandExecutionException;
+import com.github.xsavikx.androidscreencast.api.metrics.CaptureMetrics;
+import com.github.xsavikx.androidscreencast.api.metrics.Stage;
 import org.slf4j.Logger;
 
 import javax.inject.Inject;
-import javax.inject.Named;
 import javax.inject.Singleton;
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
 
-import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.ADB_COMMAND_TIMEOUT_KEY;
 import static org.slf4j.LoggerFactory.getLogger;
 
 @Singleton
 public final class ShellCommandExecutor implements CommandExecutor {
 
-    private final IDevice device;
+    private final ShellSessionPool shellSessionPool;
     private final IShellOutputReceiver shellOutputReceiver;
-    private final long adbCommandTimeout;
+    private final CaptureMetrics metrics;
 
     @Inject
-    public ShellCommandExecutor(final IDevice device,
+    public ShellCommandExecutor(final ShellSessionPool shellSessionPool,
                                 final IShellOutputReceiver shellOutputReceiver,
-                                @Named(ADB_COMMAND_TIMEOUT_KEY) long adbCommandTimeout) {
-        this.device = device;
+                                final CaptureMetrics metrics) {
+        this.shellSessionPool = shellSessionPool;
         this.shellOutputReceiver = shellOutputReceiver;
-        this.adbCommandTimeout = adbCommandTimeout;
+        this.metrics = metrics;
     }
 
     @Override
@@ -35,8 +35,9 @@ public final class ShellCommandExecutor implements CommandExecutor {
         log().debug("Executing command: {}", command);
 
         try {
-            device.executeShellCommand(command.getFormattedCommand(), shellOutputReceiver,
-                    adbCommandTimeout, TimeUnit.SECONDS);
+            final long start = System.nanoTime();
+            shellSessionPool.executeShellCommand(command.getFormattedCommand(), shellOutputReceiver);
+            metrics.record(Stage.SHELL, System.nanoTime() - start);
             log().debug("Command {} successfully executed.", command);
         } catch (TimeoutException | AdbCommandRejectedException | ShellCommandUnresponsiveException | IOException e) {
             log().error("An exception happened during command execution: {}.", command, e);
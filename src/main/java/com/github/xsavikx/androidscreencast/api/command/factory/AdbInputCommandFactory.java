@@ -1,8 +1,10 @@
 package com.github.xsavikx.androidscreencast.api.command.factory;
 
 import com.github.xsavikx.androidscreencast.api.command.KeyCommand;
+import com.github.xsavikx.androidscreencast.api.command.MotionEventCommand;
 import com.github.xsavikx.androidscreencast.api.command.SwipeCommand;
 import com.github.xsavikx.androidscreencast.api.command.TapCommand;
+import com.github.xsavikx.androidscreencast.api.command.TextCommand;
 import com.github.xsavikx.androidscreencast.api.injector.InputKeyEvent;
 import org.slf4j.Logger;
 
@@ -32,6 +34,20 @@ public final class AdbInputCommandFactory implements InputCommandFactory {
         return returnKeyCommand;
     }
 
+    @Override
+    public MotionEventCommand getMotionEventCommand(final MotionEventCommand.Action action, final int x, final int y) {
+        final MotionEventCommand returnMotionEventCommand = new MotionEventCommand(action, x, y);
+        log().debug(String.valueOf(returnMotionEventCommand));
+        return returnMotionEventCommand;
+    }
+
+    @Override
+    public MotionEventCommand getMotionEventCommand(final MotionEventCommand.Action action, final int[] x, final int[] y) {
+        final MotionEventCommand returnMotionEventCommand = new MotionEventCommand(action, x, y);
+        log().debug(String.valueOf(returnMotionEventCommand));
+        return returnMotionEventCommand;
+    }
+
     @Override
     public SwipeCommand getSwipeCommand(final int x1, final int y1, final int x2, final int y2, final long duration) {
         final SwipeCommand returnSwipeCommand = new SwipeCommand(x1, y1, x2, y2, duration);
@@ -46,6 +62,13 @@ public final class AdbInputCommandFactory implements InputCommandFactory {
         return returnTapCommand;
     }
 
+    @Override
+    public TextCommand getTextCommand(final String text) {
+        final TextCommand returnTextCommand = new TextCommand(text);
+        log().debug(String.valueOf(returnTextCommand));
+        return returnTextCommand;
+    }
+
     private enum LogSingleton {
         INSTANCE;
 
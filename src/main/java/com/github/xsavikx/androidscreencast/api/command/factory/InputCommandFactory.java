@@ -1,8 +1,10 @@
 package com.github.xsavikx.androidscreencast.api.command.factory;
 
 import com.github.xsavikx.androidscreencast.api.command.KeyCommand;
+import com.github.xsavikx.androidscreencast.api.command.MotionEventCommand;
 import com.github.xsavikx.androidscreencast.api.command.SwipeCommand;
 import com.github.xsavikx.androidscreencast.api.command.TapCommand;
+import com.github.xsavikx.androidscreencast.api.command.TextCommand;
 import com.github.xsavikx.androidscreencast.api.injector.InputKeyEvent;
 
 public interface InputCommandFactory {
@@ -11,7 +13,13 @@ public interface InputCommandFactory {
 
     KeyCommand getKeyCommand(InputKeyEvent inputKeyEvent, boolean longpress);
 
+    MotionEventCommand getMotionEventCommand(MotionEventCommand.Action action, int x, int y);
+
+    MotionEventCommand getMotionEventCommand(MotionEventCommand.Action action, int[] x, int[] y);
+
     SwipeCommand getSwipeCommand(int x1, int y1, int x2, int y2, long duration);
 
     TapCommand getTapCommand(int x, int y);
+
+    TextCommand getTextCommand(String text);
 }
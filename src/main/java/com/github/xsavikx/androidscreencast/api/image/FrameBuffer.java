@@ -0,0 +1,64 @@
+package com.github.xsavikx.androidscreencast.api.image;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Reference counted image produced by frame conversion.
+ * <p>
+ * A frame buffer starts with a single reference owned by the caller of {@link ImageUtils#convertImage(com.android.ddmlib.RawImage, Rotation, int, boolean, FrameBufferPool)}.
+ * Every consumer that keeps the image after handing it over must {@link #retain()} it and {@link #release()} it when
+ * done. Once the last reference is released, pooled buffers return to their {@link FrameBufferPool} and may be
+ * overwritten by the next frame.
+ */
+public final class FrameBuffer {
+
+    private final BufferedImage image;
+    private final FrameBufferPool pool;
+    private final Object key;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    FrameBuffer(BufferedImage image, FrameBufferPool pool, Object key) {
+        this.image = image;
+        this.pool = pool;
+        this.key = key;
+    }
+
+    /**
+     * Wraps an image that does not belong to any pool.
+     *
+     * @param image image to wrap
+     * @return frame buffer holding the image
+     */
+    static FrameBuffer wrap(BufferedImage image) {
+        return new FrameBuffer(image, null, null);
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    public FrameBuffer retain() {
+        final int previous = references.getAndIncrement();
+        checkState(previous > 0, "Frame buffer is already released.");
+        return this;
+    }
+
+    public void release() {
+        final int left = references.decrementAndGet();
+        checkState(left >= 0, "Frame buffer is released more times than retained.");
+        if (left == 0 && pool != null) {
+            pool.recycle(this);
+        }
+    }
+
+    Object getKey() {
+        return key;
+    }
+
+    void reset() {
+        references.set(1);
+    }
+}
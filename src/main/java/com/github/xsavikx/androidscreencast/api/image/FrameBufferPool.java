@@ -0,0 +1,68 @@
+package com.github.xsavikx.androidscreencast.api.image;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Pool of reusable frame buffers keyed by (width, height, pixel layout).
+ * <p>
+ * Only buffers of the most recently requested key are kept: once the frame size or layout changes (e.g. on rotation)
+ * buffers of the previous key are left to the garbage collector as they get released.
+ */
+public final class FrameBufferPool {
+
+    private static final int MAX_IDLE_BUFFERS = 4;
+    private final Queue<FrameBuffer> idleBuffers = new ConcurrentLinkedQueue<>();
+    private volatile Key currentKey;
+
+    FrameBuffer acquire(int width, int height, RawImageFormat format) {
+        final Key key = new Key(width, height, format);
+        if (!key.equals(currentKey)) {
+            currentKey = key;
+            idleBuffers.clear();
+        }
+        final FrameBuffer buffer = idleBuffers.poll();
+        if (buffer != null) {
+            buffer.reset();
+            return buffer;
+        }
+        return new FrameBuffer(ImageUtils.createImage(width, height, format), this, key);
+    }
+
+    void recycle(FrameBuffer buffer) {
+        if (buffer.getKey().equals(currentKey) && idleBuffers.size() < MAX_IDLE_BUFFERS) {
+            idleBuffers.offer(buffer);
+        }
+    }
+
+    private static final class Key {
+
+        private final int width;
+        private final int height;
+        private final RawImageFormat format;
+
+        private Key(int width, int height, RawImageFormat format) {
+            this.width = width;
+            this.height = height;
+            this.format = format;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return width == key.width && height == key.height && format.equals(key.format);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(width, height, format);
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.android.ddmlib.RawImage;
 import java.awt.*;
 import java.awt.image.*;
 import java.util.Hashtable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Modified version of ImageUtils from <a href="https://android.googlesource.com/platform/tools/swt/+/master/chimpchat/src/main/java/com/android/chimpchat/adb/image/ImageUtils.java">android.chimpchat</a>
@@ -16,6 +18,11 @@ public final class ImageUtils {
     private static final Hashtable<?, ?> EMPTY_HASH = new Hashtable();
     private static final int[] BAND_OFFSETS_32 = {0, 1, 2, 3};
     private static final int[] BAND_OFFSETS_16 = {0, 1};
+    private static final ColorModel SIXTEEN_BIT_COLOR_MODEL = new SixteenBitColorModel();
+    /**
+     * Color models are immutable, so a single instance is shared by all frames with the same channel layout.
+     */
+    private static final ConcurrentMap<RawImageFormat, ColorModel> COLOR_MODELS = new ConcurrentHashMap<>();
 
     // Utility class
     private ImageUtils() {
@@ -28,37 +35,109 @@ public final class ImageUtils {
      * @return the converted image.
      */
     public static BufferedImage convertImage(RawImage rawImage) {
-        switch (rawImage.bpp) {
+        return wrap(rawImage.data, rawImage.width, rawImage.height, RawImageFormat.of(rawImage));
+    }
+
+    /**
+     * Convert a raw image into a frame buffer, optionally downscaling and rotating it.
+     * <p>
+     * Frames in one of the well-known {@link PixelLayout}s are converted into a pooled {@code TYPE_INT_RGB} image,
+     * split into row stripes converted by the common fork/join pool if {@code parallel} is set.
+     * Other formats fall back to the generic color models and are never downscaled: unrotated frames are wrapped
+     * without copying, rotated frames are written directly into a pooled buffer.
+     * In both cases rotation is done in the same pass, without an intermediate copy via {@link RawImage#getRotated()}.
+     *
+     * @param rawImage the image to convert.
+     * @param rotation rotation to apply.
+     * @param scale    downscale divisor, {@code 1} keeps the original size.
+     * @param parallel whether the image should be converted by several threads.
+     * @param pool     pool to take the destination buffer from.
+     * @return the converted frame, owned by the caller.
+     */
+    public static FrameBuffer convertImage(RawImage rawImage, Rotation rotation, int scale, boolean parallel,
+                                           FrameBufferPool pool) {
+        final RawImageFormat format = RawImageFormat.of(rawImage);
+        final PixelLayout layout = PixelLayout.of(format);
+        if (layout != null) {
+            final int width = rawImage.width / scale;
+            final int height = rawImage.height / scale;
+            final FrameBuffer frameBuffer = acquire(pool, width, height, rotation, format);
+            final int[] target = ((DataBufferInt) frameBuffer.getImage().getRaster().getDataBuffer()).getData();
+            if (parallel) {
+                RowStripeTask.convert(layout, rawImage.data, target, rawImage.width, rawImage.height, scale, rotation);
+            } else {
+                layout.convertRows(rawImage.data, target, rawImage.width, rawImage.height, scale, rotation, 0, height);
+            }
+            return frameBuffer;
+        }
+        if (rotation == Rotation.ROTATION_0) {
+            return FrameBuffer.wrap(wrap(rawImage.data, rawImage.width, rawImage.height, format));
+        }
+        final FrameBuffer frameBuffer = acquire(pool, rawImage.width, rawImage.height, rotation, format);
+        final byte[] target = ((DataBufferByte) frameBuffer.getImage().getRaster().getDataBuffer()).getData();
+        rotate(rawImage.data, target, rawImage.width, rawImage.height, format.getBytesPerPixel(), rotation);
+        return frameBuffer;
+    }
+
+    private static FrameBuffer acquire(FrameBufferPool pool, int width, int height, Rotation rotation,
+                                       RawImageFormat format) {
+        return rotation.isQuarterTurn() ? pool.acquire(height, width, format) : pool.acquire(width, height, format);
+    }
+
+    static BufferedImage createImage(int width, int height, RawImageFormat format) {
+        if (PixelLayout.of(format) != null) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        return wrap(new byte[width * height * format.getBytesPerPixel()], width, height, format);
+    }
+
+    private static BufferedImage wrap(byte[] data, int width, int height, RawImageFormat format) {
+        switch (format.getBpp()) {
             case SIXTEEN_BIT_IMAGE:
-                return rawImage16toARGB(rawImage);
+                return rawImage16toARGB(data, width, height);
             case THIRTY_TWO_BIT_IMAGE:
-                return rawImage32toARGB(rawImage);
+                return rawImage32toARGB(data, width, height, format);
             default:
-                throw new IllegalStateException("Raw image contain wrong bpp: " + rawImage.bpp);
+                throw new IllegalStateException("Raw image contain wrong bpp: " + format.getBpp());
+        }
+    }
+
+    private static void rotate(byte[] source, byte[] target, int width, int height, int bytesPerPixel,
+                               Rotation rotation) {
+        final int targetStep = rotation.pixelStep(width, height) * bytesPerPixel;
+        int sourceIndex = 0;
+        for (int y = 0; y < height; y++) {
+            int targetIndex = rotation.rowStart(y, width, height) * bytesPerPixel;
+            for (int x = 0; x < width; x++) {
+                for (int b = 0; b < bytesPerPixel; b++) {
+                    target[targetIndex + b] = source[sourceIndex++];
+                }
+                targetIndex += targetStep;
+            }
         }
     }
 
-    private static BufferedImage rawImage32toARGB(RawImage rawImage) {
+    private static BufferedImage rawImage32toARGB(byte[] data, int width, int height, RawImageFormat format) {
         // Do as much as we can to not make an extra copy of the data.  This is just a bunch of
         // classes that wrap's the raw byte array of the image data.
-        DataBufferByte dataBuffer = new DataBufferByte(rawImage.data, rawImage.size);
+        DataBufferByte dataBuffer = new DataBufferByte(data, data.length);
         PixelInterleavedSampleModel sampleModel =
-                new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, rawImage.width, rawImage.height,
-                        4, rawImage.width * 4, BAND_OFFSETS_32);
+                new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, width, height,
+                        4, width * 4, BAND_OFFSETS_32);
         WritableRaster raster = Raster.createWritableRaster(sampleModel, dataBuffer,
                 new Point(0, 0));
-        return new BufferedImage(new ThirtyTwoBitColorModel(rawImage), raster, false, EMPTY_HASH);
+        return new BufferedImage(COLOR_MODELS.computeIfAbsent(format, ThirtyTwoBitColorModel::new), raster, false, EMPTY_HASH);
     }
 
-    private static BufferedImage rawImage16toARGB(RawImage rawImage) {
+    private static BufferedImage rawImage16toARGB(byte[] data, int width, int height) {
         // Do as much as we can to not make an extra copy of the data.  This is just a bunch of
         // classes that wrap's the raw byte array of the image data.
-        DataBufferByte dataBuffer = new DataBufferByte(rawImage.data, rawImage.size);
+        DataBufferByte dataBuffer = new DataBufferByte(data, data.length);
         PixelInterleavedSampleModel sampleModel =
-                new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, rawImage.width, rawImage.height,
-                        2, rawImage.width * 2, BAND_OFFSETS_16);
+                new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, width, height,
+                        2, width * 2, BAND_OFFSETS_16);
         WritableRaster raster = Raster.createWritableRaster(sampleModel, dataBuffer,
                 new Point(0, 0));
-        return new BufferedImage(new SixteenBitColorModel(), raster, false, EMPTY_HASH);
+        return new BufferedImage(SIXTEEN_BIT_COLOR_MODEL, raster, false, EMPTY_HASH);
     }
 }
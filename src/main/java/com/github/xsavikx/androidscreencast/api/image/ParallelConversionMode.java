@@ -0,0 +1,19 @@
+package com.github.xsavikx.androidscreencast.api.image;
+
+/**
+ * Defines whether frames are converted by several threads at once.
+ */
+public enum ParallelConversionMode {
+    /**
+     * Frames are converted in parallel only if they are large enough and more than one processor is available.
+     */
+    AUTO,
+    /**
+     * Frames are always converted in parallel.
+     */
+    ON,
+    /**
+     * Frames are always converted by the conversion thread alone.
+     */
+    OFF
+}
@@ -0,0 +1,147 @@
+package com.github.xsavikx.androidscreencast.api.image;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Well-known pixel layouts of adb RawImage that are converted by specialized loops straight into
+ * {@link BufferedImage#TYPE_INT_RGB} images.
+ * <p>
+ * Converting into an int raster lets Java2D use its native blit loops when the frame is painted, instead of calling
+ * back into the color model for every pixel. The device framebuffer is always opaque, so the alpha channel (if any)
+ * is dropped.
+ */
+enum PixelLayout {
+    /**
+     * Bytes R, G, B, A.
+     */
+    RGBA_8888(4, 0, 8, 16, 24, 8) {
+        @Override
+        int toRgb(byte[] data, int index) {
+            return (data[index] & 0xFF) << 16 | (data[index + 1] & 0xFF) << 8 | data[index + 2] & 0xFF;
+        }
+    },
+    /**
+     * Bytes R, G, B and an unused byte.
+     */
+    RGBX_8888(4, 0, 8, 16, 0, 0) {
+        @Override
+        int toRgb(byte[] data, int index) {
+            return (data[index] & 0xFF) << 16 | (data[index + 1] & 0xFF) << 8 | data[index + 2] & 0xFF;
+        }
+    },
+    /**
+     * Bytes B, G, R, A.
+     */
+    BGRA_8888(4, 16, 8, 0, 24, 8) {
+        @Override
+        int toRgb(byte[] data, int index) {
+            return (data[index + 2] & 0xFF) << 16 | (data[index + 1] & 0xFF) << 8 | data[index] & 0xFF;
+        }
+    },
+    /**
+     * Little-endian 16-bit RGB565, decoded through a lookup table.
+     */
+    RGB_565(2, 11, 5, 0, 0, 0) {
+        @Override
+        int toRgb(byte[] data, int index) {
+            return RGB565_TO_RGB[data[index] & 0xFF | (data[index + 1] & 0xFF) << 8];
+        }
+    };
+
+    private static final int CHANNEL_LENGTH = 8;
+    /**
+     * RGB888 value for every possible RGB565 pixel. Channels are widened by replicating their high bits, so full
+     * intensity maps to 0xFF.
+     */
+    private static final int[] RGB565_TO_RGB = createRgb565Table();
+    private final int bytesPerPixel;
+    private final int redOffset;
+    private final int greenOffset;
+    private final int blueOffset;
+    private final int alphaOffset;
+    private final int alphaLength;
+
+    PixelLayout(int bytesPerPixel, int redOffset, int greenOffset, int blueOffset, int alphaOffset, int alphaLength) {
+        this.bytesPerPixel = bytesPerPixel;
+        this.redOffset = redOffset;
+        this.greenOffset = greenOffset;
+        this.blueOffset = blueOffset;
+        this.alphaOffset = alphaOffset;
+        this.alphaLength = alphaLength;
+    }
+
+    /**
+     * @param format raw image format reported by the device
+     * @return matching layout or {@code null} if the format has to be handled by the generic color model
+     */
+    static PixelLayout of(RawImageFormat format) {
+        if (format.getBpp() == 16) {
+            // SixteenBitColorModel always treated 16-bit frames as RGB565 as well
+            return RGB_565;
+        }
+        if (format.getBpp() != 32 || format.getRedLength() != CHANNEL_LENGTH
+                || format.getGreenLength() != CHANNEL_LENGTH || format.getBlueLength() != CHANNEL_LENGTH) {
+            return null;
+        }
+        for (PixelLayout layout : values()) {
+            if (layout.bytesPerPixel == 4 && layout.matches(format)) {
+                return layout;
+            }
+        }
+        return null;
+    }
+
+    private boolean matches(RawImageFormat format) {
+        return redOffset == format.getRedOffset()
+                && greenOffset == format.getGreenOffset()
+                && blueOffset == format.getBlueOffset()
+                && alphaLength == format.getAlphaLength()
+                && (alphaLength == 0 || alphaOffset == format.getAlphaOffset());
+    }
+
+    private static int[] createRgb565Table() {
+        final int[] table = new int[1 << 16];
+        for (int pixel = 0; pixel < table.length; pixel++) {
+            final int red = pixel >> 11 & 0x1F;
+            final int green = pixel >> 5 & 0x3F;
+            final int blue = pixel & 0x1F;
+            table[pixel] = (red << 3 | red >> 2) << 16 | (green << 2 | green >> 4) << 8 | blue << 3 | blue >> 2;
+        }
+        return table;
+    }
+
+    abstract int toRgb(byte[] data, int index);
+
+    /**
+     * Converts the given rows of the frame, optionally downscaling and rotating them.
+     * <p>
+     * Rows are counted in the downscaled, unrotated frame. Downscaling takes every {@code scale}-th pixel of every
+     * {@code scale}-th row. Rotated pixels are written straight to their place in the target, so no intermediate copy
+     * of the frame is needed.
+     *
+     * @param source   raw pixel data
+     * @param target   int raster of a {@link BufferedImage#TYPE_INT_RGB} image
+     * @param width    width of the source frame
+     * @param height   height of the source frame
+     * @param scale    downscale divisor, {@code 1} keeps the original size
+     * @param rotation rotation to apply
+     * @param fromRow  first row to convert, inclusive
+     * @param toRow    last row to convert, exclusive
+     */
+    void convertRows(byte[] source, int[] target, int width, int height, int scale, Rotation rotation, int fromRow,
+                     int toRow) {
+        final int targetWidth = width / scale;
+        final int targetHeight = height / scale;
+        final int step = scale * bytesPerPixel;
+        final int targetStep = rotation.pixelStep(targetWidth, targetHeight);
+        for (int row = fromRow; row < toRow; row++) {
+            int index = row * scale * width * bytesPerPixel;
+            int targetIndex = rotation.rowStart(row, targetWidth, targetHeight);
+            for (int x = 0; x < targetWidth; x++) {
+                target[targetIndex] = toRgb(source, index);
+                index += step;
+                targetIndex += targetStep;
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.xsavikx.androidscreencast.api.image;
+
+import com.android.ddmlib.RawImage;
+
+/**
+ * Cheap fingerprint of a raw frame, used to notice that the device screen stopped changing.
+ * <p>
+ * Only a few thousand bytes spread over the whole frame are hashed, so the fingerprint may miss a change of a few
+ * pixels. It is meant to drive heuristics, never to decide whether a frame can be skipped.
+ */
+public final class RawImageFingerprint {
+
+    private static final int SAMPLE_COUNT = 8192;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // Utility class
+    private RawImageFingerprint() {
+    }
+
+    /**
+     * @param rawImage frame to fingerprint
+     * @return 64-bit FNV-1a hash of the frame size and sampled bytes
+     */
+    public static long of(RawImage rawImage) {
+        final byte[] data = rawImage.data;
+        // odd stride walks through all channels of the pixels instead of sampling always the same one
+        final int stride = Math.max(1, data.length / SAMPLE_COUNT) | 1;
+        long hash = FNV_OFFSET_BASIS;
+        hash = (hash ^ rawImage.width) * FNV_PRIME;
+        hash = (hash ^ rawImage.height) * FNV_PRIME;
+        for (int i = 0; i < data.length; i += stride) {
+            hash = (hash ^ data[i]) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.xsavikx.androidscreencast.api.image;
+
+import com.android.ddmlib.RawImage;
+
+/**
+ * Pixel layout of adb RawImage: bits per pixel together with offsets and lengths of every color channel.
+ */
+public final class RawImageFormat {
+
+    private final int bpp;
+    private final int redOffset;
+    private final int redLength;
+    private final int greenOffset;
+    private final int greenLength;
+    private final int blueOffset;
+    private final int blueLength;
+    private final int alphaOffset;
+    private final int alphaLength;
+    private final int hashCode;
+
+    private RawImageFormat(RawImage rawImage) {
+        bpp = rawImage.bpp;
+        redOffset = rawImage.red_offset;
+        redLength = rawImage.red_length;
+        greenOffset = rawImage.green_offset;
+        greenLength = rawImage.green_length;
+        blueOffset = rawImage.blue_offset;
+        blueLength = rawImage.blue_length;
+        alphaOffset = rawImage.alpha_offset;
+        alphaLength = rawImage.alpha_length;
+        hashCode = computeHashCode();
+    }
+
+    public static RawImageFormat of(RawImage rawImage) {
+        return new RawImageFormat(rawImage);
+    }
+
+    public int getBpp() {
+        return bpp;
+    }
+
+    public int getBytesPerPixel() {
+        return bpp >> 3;
+    }
+
+    public int getRedOffset() {
+        return redOffset;
+    }
+
+    public int getRedLength() {
+        return redLength;
+    }
+
+    public int getGreenOffset() {
+        return greenOffset;
+    }
+
+    public int getGreenLength() {
+        return greenLength;
+    }
+
+    public int getBlueOffset() {
+        return blueOffset;
+    }
+
+    public int getBlueLength() {
+        return blueLength;
+    }
+
+    public int getAlphaOffset() {
+        return alphaOffset;
+    }
+
+    public int getAlphaLength() {
+        return alphaLength;
+    }
+
+    private int computeHashCode() {
+        int result = bpp;
+        result = 31 * result + redOffset;
+        result = 31 * result + redLength;
+        result = 31 * result + greenOffset;
+        result = 31 * result + greenLength;
+        result = 31 * result + blueOffset;
+        result = 31 * result + blueLength;
+        result = 31 * result + alphaOffset;
+        result = 31 * result + alphaLength;
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        RawImageFormat that = (RawImageFormat) o;
+        return bpp == that.bpp
+                && redOffset == that.redOffset && redLength == that.redLength
+                && greenOffset == that.greenOffset && greenLength == that.greenLength
+                && blueOffset == that.blueOffset && blueLength == that.blueLength
+                && alphaOffset == that.alphaOffset && alphaLength == that.alphaLength;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RawImageFormat [bpp=%d, red=%d/%d, green=%d/%d, blue=%d/%d, alpha=%d/%d]", bpp,
+                redOffset, redLength, greenOffset, greenLength, blueOffset, blueLength, alphaOffset, alphaLength);
+    }
+}
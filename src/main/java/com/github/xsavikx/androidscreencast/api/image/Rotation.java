@@ -0,0 +1,85 @@
+package com.github.xsavikx.androidscreencast.api.image;
+
+/**
+ * Counter-clockwise rotation applied to a frame during conversion.
+ * <p>
+ * Constants follow the numbering of Android {@code Surface.ROTATION_*}: a frame captured in the natural orientation
+ * of a device rotated by {@code ROTATION_90} has to be rotated by {@link #ROTATION_90} to be displayed upright.
+ */
+public enum Rotation {
+    ROTATION_0,
+    /**
+     * Same transformation as {@link com.android.ddmlib.RawImage#getRotated()}.
+     */
+    ROTATION_90,
+    ROTATION_180,
+    ROTATION_270;
+
+    private static final Rotation[] VALUES = values();
+
+    /**
+     * @param surfaceOrientation value of Android {@code Surface.ROTATION_*}
+     * @return matching rotation
+     */
+    public static Rotation ofSurfaceOrientation(int surfaceOrientation) {
+        if (surfaceOrientation < 0 || surfaceOrientation >= VALUES.length) {
+            throw new IllegalArgumentException("Unknown surface orientation: " + surfaceOrientation);
+        }
+        return VALUES[surfaceOrientation];
+    }
+
+    /**
+     * @return whether width and height of the frame are swapped by this rotation
+     */
+    public boolean isQuarterTurn() {
+        return this == ROTATION_90 || this == ROTATION_270;
+    }
+
+    /**
+     * @return rotation by one more quarter turn counter-clockwise
+     */
+    public Rotation next() {
+        return VALUES[(ordinal() + 1) % VALUES.length];
+    }
+
+    /**
+     * Index in the target raster of the first pixel of the given source row.
+     *
+     * @param row    source row
+     * @param width  source width
+     * @param height source height
+     * @return target index of pixel (0, row)
+     */
+    int rowStart(int row, int width, int height) {
+        switch (this) {
+            case ROTATION_90:
+                return (width - 1) * height + row;
+            case ROTATION_180:
+                return (height - row) * width - 1;
+            case ROTATION_270:
+                return height - 1 - row;
+            default:
+                return row * width;
+        }
+    }
+
+    /**
+     * Distance in the target raster between two neighbour pixels of one source row.
+     *
+     * @param width  source width
+     * @param height source height
+     * @return target index difference between pixels (x + 1, y) and (x, y)
+     */
+    int pixelStep(int width, int height) {
+        switch (this) {
+            case ROTATION_90:
+                return -height;
+            case ROTATION_180:
+                return -1;
+            case ROTATION_270:
+                return height;
+            default:
+                return 1;
+        }
+    }
+}
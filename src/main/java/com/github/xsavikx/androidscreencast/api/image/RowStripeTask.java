@@ -0,0 +1,62 @@
+package com.github.xsavikx.androidscreencast.api.image;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Converts a range of frame rows, splitting it into halves until the stripe is small enough to be converted by a single
+ * worker. Every row is written into its own part of the target raster, so stripes never overlap.
+ */
+final class RowStripeTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 2417562937245311740L;
+    private static final int STRIPES_PER_WORKER = 4;
+    private static final int MIN_STRIPE_ROWS = 16;
+    private final PixelLayout layout;
+    private final byte[] source;
+    private final int[] target;
+    private final int width;
+    private final int height;
+    private final int scale;
+    private final Rotation rotation;
+    private final int fromRow;
+    private final int toRow;
+    private final int stripeRows;
+
+    private RowStripeTask(PixelLayout layout, byte[] source, int[] target, int width, int height, int scale,
+                          Rotation rotation, int fromRow, int toRow, int stripeRows) {
+        this.layout = layout;
+        this.source = source;
+        this.target = target;
+        this.width = width;
+        this.height = height;
+        this.scale = scale;
+        this.rotation = rotation;
+        this.fromRow = fromRow;
+        this.toRow = toRow;
+        this.stripeRows = stripeRows;
+    }
+
+    /**
+     * Converts the whole frame using the common fork/join pool and waits for the result.
+     */
+    static void convert(PixelLayout layout, byte[] source, int[] target, int width, int height, int scale,
+                        Rotation rotation) {
+        final ForkJoinPool pool = ForkJoinPool.commonPool();
+        final int rows = height / scale;
+        final int stripeRows = Math.max(MIN_STRIPE_ROWS, rows / (pool.getParallelism() * STRIPES_PER_WORKER));
+        pool.invoke(new RowStripeTask(layout, source, target, width, height, scale, rotation, 0, rows, stripeRows));
+    }
+
+    @Override
+    protected void compute() {
+        if (toRow - fromRow <= stripeRows) {
+            layout.convertRows(source, target, width, height, scale, rotation, fromRow, toRow);
+            return;
+        }
+        final int middleRow = (fromRow + toRow) >>> 1;
+        invokeAll(
+                new RowStripeTask(layout, source, target, width, height, scale, rotation, fromRow, middleRow, stripeRows),
+                new RowStripeTask(layout, source, target, width, height, scale, rotation, middleRow, toRow, stripeRows));
+    }
+}
@@ -1,7 +1,5 @@
 package com.github.xsavikx.androidscreencast.api.image;
 
-import com.android.ddmlib.RawImage;
-
 /**
  * Modified version of ThirtyTwoBitColorModel from
  * <a href="https://android.googlesource.com/platform/tools/swt/+/master/chimpchat/src/main/java/com/android/chimpchat/adb/image/ThirtyTwoBitColorModel.java">android.chimpchat</a>
@@ -21,18 +19,18 @@ final class ThirtyTwoBitColorModel extends AbstractRawImageColorModel {
     private final int redLength;
     private final int redOffset;
 
-    ThirtyTwoBitColorModel(RawImage rawImage) {
-        redOffset = rawImage.red_offset;
-        redLength = rawImage.red_length;
+    ThirtyTwoBitColorModel(RawImageFormat format) {
+        redOffset = format.getRedOffset();
+        redLength = format.getRedLength();
         redMask = getMask(redLength);
-        greenOffset = rawImage.green_offset;
-        greenLength = rawImage.green_length;
+        greenOffset = format.getGreenOffset();
+        greenLength = format.getGreenLength();
         greenMask = getMask(greenLength);
-        blueOffset = rawImage.blue_offset;
-        blueLength = rawImage.blue_length;
+        blueOffset = format.getBlueOffset();
+        blueLength = format.getBlueLength();
         blueMask = getMask(blueLength);
-        alphaLength = rawImage.alpha_length;
-        alphaOffset = rawImage.alpha_offset;
+        alphaLength = format.getAlphaLength();
+        alphaOffset = format.getAlphaOffset();
         alphaMask = getMask(alphaLength);
     }
 
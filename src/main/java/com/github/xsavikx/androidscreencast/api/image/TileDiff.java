@@ -0,0 +1,143 @@
+package com.github.xsavikx.androidscreencast.api.image;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds regions that differ between two consecutive frames.
+ * <p>
+ * Frames are compared in square tiles. Dirty tiles are merged into horizontal runs, and runs with the same horizontal
+ * span in adjacent tile rows are merged into a single rectangle. If too many rectangles remain, their bounding box is
+ * used instead.
+ */
+public final class TileDiff {
+
+    private static final int MAX_REGIONS = 16;
+
+    // Utility class
+    private TileDiff() {
+    }
+
+    /**
+     * @param previous previously displayed frame, may be {@code null}
+     * @param current  new frame
+     * @param tileSize size of the square tile in pixels
+     * @return changed regions in image coordinates, empty if frames are identical. The whole frame is reported as
+     * changed if frames can not be compared.
+     */
+    public static List<Rectangle> diff(BufferedImage previous, BufferedImage current, int tileSize) {
+        final int width = current.getWidth();
+        final int height = current.getHeight();
+        if (previous == null || previous.getWidth() != width || previous.getHeight() != height) {
+            return wholeFrame(current);
+        }
+        final DataBuffer previousBuffer = previous.getRaster().getDataBuffer();
+        final DataBuffer currentBuffer = current.getRaster().getDataBuffer();
+        if (!(previousBuffer instanceof DataBufferInt) || !(currentBuffer instanceof DataBufferInt)) {
+            return wholeFrame(current);
+        }
+        final int[] before = ((DataBufferInt) previousBuffer).getData();
+        final int[] after = ((DataBufferInt) currentBuffer).getData();
+        final int tileColumns = (width + tileSize - 1) / tileSize;
+        final boolean[] dirtyTiles = new boolean[tileColumns];
+        final List<Rectangle> regions = new ArrayList<>();
+        List<Rectangle> previousRow = Collections.emptyList();
+        for (int top = 0; top < height; top += tileSize) {
+            final int bottom = Math.min(top + tileSize, height);
+            findDirtyTiles(before, after, width, top, bottom, tileSize, dirtyTiles);
+            final List<Rectangle> row = mergeRuns(dirtyTiles, tileSize, width, top, bottom - top, previousRow);
+            regions.addAll(row);
+            previousRow = row;
+        }
+        regions.removeIf(Rectangle::isEmpty);
+        return limit(regions);
+    }
+
+    /**
+     * @return regions of both lists, or their bounding box if there are too many of them
+     */
+    public static List<Rectangle> merge(List<Rectangle> first, List<Rectangle> second) {
+        final List<Rectangle> regions = new ArrayList<>(first.size() + second.size());
+        regions.addAll(first);
+        regions.addAll(second);
+        return limit(regions);
+    }
+
+    private static List<Rectangle> wholeFrame(BufferedImage image) {
+        return Collections.singletonList(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+    }
+
+    private static void findDirtyTiles(int[] before, int[] after, int width, int top, int bottom, int tileSize,
+                                       boolean[] dirtyTiles) {
+        for (int column = 0; column < dirtyTiles.length; column++) {
+            final int left = column * tileSize;
+            final int tileWidth = Math.min(tileSize, width - left);
+            boolean dirty = false;
+            for (int y = top; y < bottom && !dirty; y++) {
+                int index = y * width + left;
+                final int end = index + tileWidth;
+                while (index < end && before[index] == after[index]) {
+                    index++;
+                }
+                dirty = index < end;
+            }
+            dirtyTiles[column] = dirty;
+        }
+    }
+
+    /**
+     * Turns dirty tiles of a row into runs. A run with the same horizontal span as a region of the previous row grows
+     * that region instead, which is then replaced by an empty rectangle in the previous row.
+     */
+    private static List<Rectangle> mergeRuns(boolean[] dirtyTiles, int tileSize, int width, int top, int tileHeight,
+                                             List<Rectangle> previousRow) {
+        final List<Rectangle> row = new ArrayList<>();
+        int column = 0;
+        while (column < dirtyTiles.length) {
+            if (!dirtyTiles[column]) {
+                column++;
+                continue;
+            }
+            final int firstColumn = column;
+            while (column < dirtyTiles.length && dirtyTiles[column]) {
+                column++;
+            }
+            final int left = firstColumn * tileSize;
+            final int runWidth = Math.min(column * tileSize, width) - left;
+            final Rectangle above = findRegionAbove(previousRow, left, runWidth, top);
+            if (above != null) {
+                final Rectangle grown = new Rectangle(above.x, above.y, above.width, above.height + tileHeight);
+                above.setSize(0, 0);
+                row.add(grown);
+            } else {
+                row.add(new Rectangle(left, top, runWidth, tileHeight));
+            }
+        }
+        return row;
+    }
+
+    private static Rectangle findRegionAbove(List<Rectangle> previousRow, int left, int width, int top) {
+        for (Rectangle region : previousRow) {
+            if (region.x == left && region.width == width && region.y + region.height == top) {
+                return region;
+            }
+        }
+        return null;
+    }
+
+    private static List<Rectangle> limit(List<Rectangle> regions) {
+        if (regions.size() <= MAX_REGIONS) {
+            return regions;
+        }
+        final Rectangle bounds = new Rectangle(regions.get(0));
+        for (Rectangle region : regions) {
+            bounds.add(region);
+        }
+        return Collections.singletonList(bounds);
+    }
+}
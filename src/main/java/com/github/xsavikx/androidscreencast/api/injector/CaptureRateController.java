@@ -0,0 +1,237 @@
+package com.github.xsavikx.androidscreencast.api.injector;
+
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.ADB_COMMAND_TIMEOUT_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_CAPTURE_FPS_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_CAPTURE_IDLE_FPS_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_CAPTURE_IDLE_FRAMES_KEY;
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Paces the fetch stage and chooses the screenshot timeout.
+ * <p>
+ * Fetching is limited to the configured frame rate, so several devices sharing one USB bus do not saturate it. The
+ * timeout follows the observed fetch times: it is a multiple of a high percentile of recent fetches, doubled after
+ * every timeout and halved back towards the percentile-based value after every successful fetch.
+ * <p>
+ * When the screen content stays the same for a while, or the mirrored screen is not visible, the controller switches
+ * to an idle mode with a much lower frame rate. Full rate is restored on the next detected change, on user input or
+ * when the screen becomes visible again.
+ * <p>
+ * Pacing, timeout and fingerprint methods are called only by the fetch thread, wake-up methods may be called by any
+ * thread.
+ */
+@Singleton
+public final class CaptureRateController {
+
+    private static final int SAMPLE_COUNT = 64;
+    private static final double TIMEOUT_PERCENTILE = 0.95;
+    private static final int PERCENTILE_TIMEOUT_FACTOR = 4;
+    private static final long MIN_TIMEOUT_MILLIS = 500;
+    private static final int MAX_BACKOFF_FACTOR = 8;
+    private final long frameIntervalNanos;
+    private final long idleFrameIntervalNanos;
+    private final int idleAfterFrames;
+    private final long initialTimeoutMillis;
+    private final long maxTimeoutMillis;
+    private final long[] fetchMillis = new long[SAMPLE_COUNT];
+    private final long[] sortedFetchMillis = new long[SAMPLE_COUNT];
+    private int samples = 0;
+    private int nextSample = 0;
+    private long timeoutMillis;
+    private long lastFrameStartNanos;
+    private long lastFingerprint;
+    private boolean hasFingerprint = false;
+    private int unchangedFrames = 0;
+    private volatile boolean idle = false;
+    private volatile boolean screenVisible = true;
+    private final Object wakeLock = new Object();
+    private boolean wakeRequested = false;
+
+    /**
+     * @param adbCommandTimeout initial screenshot timeout, in seconds
+     * @param targetFps         maximum amount of frames fetched per second, {@code 0} disables the limit
+     * @param idleFps           amount of frames fetched per second in idle mode
+     * @param idleAfterFrames   amount of unchanged frames after which idle mode starts, {@code 0} disables it
+     */
+    @Inject
+    public CaptureRateController(@Named(ADB_COMMAND_TIMEOUT_KEY) long adbCommandTimeout,
+                                 @Named(APP_CAPTURE_FPS_KEY) int targetFps,
+                                 @Named(APP_CAPTURE_IDLE_FPS_KEY) int idleFps,
+                                 @Named(APP_CAPTURE_IDLE_FRAMES_KEY) int idleAfterFrames) {
+        checkArgument(targetFps >= 0, "Target FPS must not be negative, but was %s", targetFps);
+        checkArgument(idleFps > 0, "Idle FPS must be greater than 0, but was %s", idleFps);
+        checkArgument(idleAfterFrames >= 0, "Idle frames must not be negative, but was %s", idleAfterFrames);
+        this.frameIntervalNanos = targetFps == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / targetFps;
+        this.idleFrameIntervalNanos = TimeUnit.SECONDS.toNanos(1) / idleFps;
+        this.idleAfterFrames = idleAfterFrames;
+        this.initialTimeoutMillis = Math.max(MIN_TIMEOUT_MILLIS, TimeUnit.SECONDS.toMillis(adbCommandTimeout));
+        this.maxTimeoutMillis = initialTimeoutMillis * MAX_BACKOFF_FACTOR;
+        this.timeoutMillis = initialTimeoutMillis;
+    }
+
+    /**
+     * Waits until the next frame may be fetched according to the current frame rate. In idle mode the wait ends early
+     * once the controller is woken up.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitNextFrame() throws InterruptedException {
+        while (true) {
+            consumeWakeUp();
+            final long interval = idle ? idleFrameIntervalNanos : frameIntervalNanos;
+            final long now = System.nanoTime();
+            if (interval == 0 || lastFrameStartNanos == 0 || now - (lastFrameStartNanos + interval) >= 0) {
+                lastFrameStartNanos = now;
+                return;
+            }
+            if (!awaitWakeUp(lastFrameStartNanos + interval)) {
+                lastFrameStartNanos += interval;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Records the fingerprint of the fetched frame, entering idle mode if it did not change for long enough.
+     *
+     * @param fingerprint fingerprint of the frame
+     */
+    public void onFrameContent(final long fingerprint) {
+        if (hasFingerprint && fingerprint == lastFingerprint) {
+            if (unchangedFrames < Integer.MAX_VALUE) {
+                unchangedFrames++;
+            }
+        } else {
+            lastFingerprint = fingerprint;
+            hasFingerprint = true;
+            unchangedFrames = 0;
+        }
+        updateIdle();
+    }
+
+    /**
+     * Notifies about a change of the screen content detected outside the fetch stage.
+     */
+    public void onContentChanged() {
+        if (idle) {
+            wakeUp();
+        }
+    }
+
+    /**
+     * Restores full frame rate, e.g. on user input.
+     */
+    public void wakeUp() {
+        synchronized (wakeLock) {
+            wakeRequested = true;
+            wakeLock.notifyAll();
+        }
+    }
+
+    /**
+     * @param visible whether the mirrored screen can be seen by the user
+     */
+    public void setScreenVisible(final boolean visible) {
+        screenVisible = visible;
+        if (visible) {
+            wakeUp();
+        }
+    }
+
+    private void consumeWakeUp() {
+        synchronized (wakeLock) {
+            if (!wakeRequested) {
+                return;
+            }
+            wakeRequested = false;
+        }
+        unchangedFrames = 0;
+        updateIdle();
+    }
+
+    /**
+     * @return {@code true} if woken up before the deadline
+     */
+    private boolean awaitWakeUp(final long deadlineNanos) throws InterruptedException {
+        synchronized (wakeLock) {
+            while (!wakeRequested) {
+                final long remainingNanos = deadlineNanos - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(wakeLock, remainingNanos);
+            }
+            return true;
+        }
+    }
+
+    private void updateIdle() {
+        final boolean newIdle = !screenVisible || idleAfterFrames > 0 && unchangedFrames >= idleAfterFrames;
+        if (newIdle != idle) {
+            log().info(newIdle ? "Screen is idle, switching to idle capture rate." : "Screen is active, switching to full capture rate.");
+            idle = newIdle;
+        }
+    }
+
+    /**
+     * @return timeout for the next screenshot, in milliseconds
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Records a successful fetch and lets the timeout recover towards the observed fetch times.
+     *
+     * @param fetchNanos duration of the fetch
+     */
+    public void onFrameFetched(final long fetchNanos) {
+        fetchMillis[nextSample] = TimeUnit.NANOSECONDS.toMillis(fetchNanos);
+        nextSample = (nextSample + 1) % SAMPLE_COUNT;
+        samples = Math.min(samples + 1, SAMPLE_COUNT);
+        final long targetTimeout = Math.min(maxTimeoutMillis,
+                Math.max(MIN_TIMEOUT_MILLIS, percentile(TIMEOUT_PERCENTILE) * PERCENTILE_TIMEOUT_FACTOR));
+        timeoutMillis = timeoutMillis > targetTimeout ? Math.max(targetTimeout, timeoutMillis / 2) : targetTimeout;
+    }
+
+    /**
+     * Backs the timeout off after the fetch did not complete in time.
+     */
+    public void onTimeout() {
+        timeoutMillis = Math.min(maxTimeoutMillis, timeoutMillis * 2);
+        log().warn("Screenshot timeout happened. Timeout would be set to {} ms for the next try.", timeoutMillis);
+    }
+
+    /**
+     * @param percentile value between 0 and 1
+     * @return fetch time not exceeded by the given share of recent fetches, in milliseconds
+     */
+    long percentile(final double percentile) {
+        if (samples == 0) {
+            return initialTimeoutMillis;
+        }
+        System.arraycopy(fetchMillis, 0, sortedFetchMillis, 0, samples);
+        Arrays.sort(sortedFetchMillis, 0, samples);
+        return sortedFetchMillis[Math.min(samples - 1, (int) (samples * percentile))];
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+
+        @SuppressWarnings({"NonSerializableFieldInSerializableClass", "ImmutableEnumChecker"})
+        private final Logger value = getLogger(CaptureRateController.class);
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.xsavikx.androidscreencast.api.injector;
+
+import com.android.ddmlib.RawImage;
+
+/**
+ * Raw frame fetched from the device together with the moment it was captured.
+ */
+final class CapturedFrame {
+
+    private final RawImage rawImage;
+    private final long captureNanos;
+
+    /**
+     * @param rawImage     frame fetched from the device
+     * @param captureNanos {@link System#nanoTime()} when the device was asked for the framebuffer
+     */
+    CapturedFrame(final RawImage rawImage, final long captureNanos) {
+        this.rawImage = rawImage;
+        this.captureNanos = captureNanos;
+    }
+
+    RawImage getRawImage() {
+        return rawImage;
+    }
+
+    long getCaptureNanos() {
+        return captureNanos;
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.xsavikx.androidscreencast.api.injector;
+
+import com.github.xsavikx.androidscreencast.api.image.FrameBuffer;
+import com.github.xsavikx.androidscreencast.api.image.Rotation;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * Frame produced by the conversion stage and consumed by the display and record stages.
+ * <p>
+ * Every stage that keeps the frame must {@link #retain()} it and {@link #release()} it once the image is not used
+ * anymore, so the underlying pooled buffer can be reused.
+ */
+final class ConvertedFrame {
+
+    private final Dimension size;
+    private final FrameBuffer frameBuffer;
+    private final Rotation rotation;
+    private final List<Rectangle> dirtyRegions;
+    private final long contentVersion;
+    private final long captureNanos;
+
+    /**
+     * @param frameBuffer    converted image, possibly downscaled
+     * @param size           size of the frame on the device, used to map screen points back to device coordinates
+     * @param rotation       rotation applied to the frame
+     * @param dirtyRegions   regions changed since the previous frame, in image coordinates
+     * @param contentVersion number of content changes before this frame, frames with equal versions are identical
+     * @param captureNanos   {@link System#nanoTime()} when the frame was captured on the device
+     */
+    ConvertedFrame(final FrameBuffer frameBuffer, final Dimension size, final Rotation rotation,
+                   final List<Rectangle> dirtyRegions, final long contentVersion, final long captureNanos) {
+        this.size = size;
+        this.frameBuffer = frameBuffer;
+        this.rotation = rotation;
+        this.dirtyRegions = dirtyRegions;
+        this.contentVersion = contentVersion;
+        this.captureNanos = captureNanos;
+    }
+
+    Dimension getSize() {
+        return size;
+    }
+
+    BufferedImage getImage() {
+        return frameBuffer.getImage();
+    }
+
+    Rotation getRotation() {
+        return rotation;
+    }
+
+    List<Rectangle> getDirtyRegions() {
+        return dirtyRegions;
+    }
+
+    long getContentVersion() {
+        return contentVersion;
+    }
+
+    long getCaptureNanos() {
+        return captureNanos;
+    }
+
+    ConvertedFrame retain() {
+        frameBuffer.retain();
+        return this;
+    }
+
+    void release() {
+        frameBuffer.release();
+    }
+}
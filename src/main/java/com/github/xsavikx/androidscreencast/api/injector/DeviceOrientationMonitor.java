@@ -0,0 +1,115 @@
+package com.github.xsavikx.androidscreencast.api.injector;
+
+import com.android.ddmlib.*;
+import com.github.xsavikx.androidscreencast.api.adb.ShellSessionPool;
+import com.github.xsavikx.androidscreencast.api.image.Rotation;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_ORIENTATION_POLL_INTERVAL_KEY;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Periodically reads the current display rotation of the device from {@code dumpsys input}. Polls go through the
+ * {@link ShellSessionPool}, so they don't open a new ADB connection every time.
+ */
+@Singleton
+public final class DeviceOrientationMonitor implements Runnable {
+
+    private static final String DUMPSYS_INPUT_COMMAND = "dumpsys input";
+    private static final Pattern SURFACE_ORIENTATION_PATTERN = Pattern.compile("SurfaceOrientation:\\s*(\\d)");
+    private final ShellSessionPool shellSessionPool;
+    private final long pollInterval;
+    private volatile Rotation deviceRotation;
+    private volatile boolean isStopped = false;
+
+    @Inject
+    public DeviceOrientationMonitor(final ShellSessionPool shellSessionPool,
+                                    @Named(APP_ORIENTATION_POLL_INTERVAL_KEY) long pollInterval) {
+        this.shellSessionPool = shellSessionPool;
+        this.pollInterval = pollInterval;
+    }
+
+    @Override
+    public void run() {
+        log().info("Starting device orientation monitoring.");
+        while (!isStopped) {
+            try {
+                poll();
+                Thread.sleep(pollInterval);
+            } catch (final InterruptedException e) {
+                log().debug("Execution of thread was interrupted. Shutting down thread.", e);
+                break;
+            }
+        }
+        log().info("Stopping device orientation monitoring.");
+    }
+
+    /**
+     * @return last known display rotation of the device or {@code null} if it could not be detected
+     */
+    public Rotation getDeviceRotation() {
+        return deviceRotation;
+    }
+
+    public void stop() {
+        isStopped = true;
+    }
+
+    private void poll() {
+        final SurfaceOrientationReceiver receiver = new SurfaceOrientationReceiver();
+        try {
+            shellSessionPool.executeShellCommand(DUMPSYS_INPUT_COMMAND, receiver);
+        } catch (TimeoutException | AdbCommandRejectedException | ShellCommandUnresponsiveException | IOException e) {
+            log().warn("Unable to read device orientation.", e);
+            return;
+        }
+        if (receiver.rotation != null && receiver.rotation != deviceRotation) {
+            log().info("Device orientation changed to {}.", receiver.rotation);
+            deviceRotation = receiver.rotation;
+        }
+    }
+
+    private static final class SurfaceOrientationReceiver extends MultiLineReceiver {
+
+        private Rotation rotation;
+
+        @Override
+        public void processNewLines(String[] lines) {
+            for (String line : lines) {
+                if (rotation != null) {
+                    return;
+                }
+                final Matcher matcher = SURFACE_ORIENTATION_PATTERN.matcher(line);
+                if (matcher.find()) {
+                    final int surfaceOrientation = Integer.parseInt(matcher.group(1));
+                    if (surfaceOrientation < Rotation.values().length) {
+                        rotation = Rotation.ofSurfaceOrientation(surfaceOrientation);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+
+        @SuppressWarnings({"NonSerializableFieldInSerializableClass", "ImmutableEnumChecker"})
+        private final Logger value = getLogger(DeviceOrientationMonitor.class);
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+}
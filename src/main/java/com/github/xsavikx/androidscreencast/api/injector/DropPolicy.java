@@ -0,0 +1,19 @@
+package com.github.xsavikx.androidscreencast.api.injector;
+
+/**
+ * Describes what a {@link FrameQueue} does when a new frame arrives while the queue is full.
+ */
+public enum DropPolicy {
+    /**
+     * The oldest queued frame is dropped, so the consumer always gets the most recent one.
+     */
+    LATEST_WINS,
+    /**
+     * The incoming frame is dropped and the queued ones are kept.
+     */
+    DROP_NEWEST,
+    /**
+     * Nothing is dropped, the producer waits until the consumer frees a slot.
+     */
+    LOSSLESS
+}
@@ -0,0 +1,217 @@
+package com.github.xsavikx.androidscreencast.api.injector;
+
+import com.android.ddmlib.RawImage;
+import com.github.xsavikx.androidscreencast.api.image.FrameBuffer;
+import com.github.xsavikx.androidscreencast.api.image.FrameBufferPool;
+import com.github.xsavikx.androidscreencast.api.image.ImageUtils;
+import com.github.xsavikx.androidscreencast.api.image.ParallelConversionMode;
+import com.github.xsavikx.androidscreencast.api.image.Rotation;
+import com.github.xsavikx.androidscreencast.api.image.TileDiff;
+import com.github.xsavikx.androidscreencast.api.metrics.CaptureMetrics;
+import com.github.xsavikx.androidscreencast.api.metrics.Stage;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.awt.*;
+import java.util.List;
+
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_CONVERSION_PARALLEL_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_CONVERSION_PARALLEL_THRESHOLD_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_CONVERSION_SCALE_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_ORIENTATION_AUTO_KEY;
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Conversion stage of the capture pipeline.
+ * <p>
+ * Takes the most recent raw frame fetched from the device, converts it into a pooled frame buffer and hands it over
+ * to the display, record and replay stages. Raw frames are passed through a single-slot latest-wins queue, so fetching of the
+ * next frame overlaps with conversion of the current one and a slow conversion never blocks the fetch stage.
+ * <p>
+ * Large frames may be split into row stripes converted in parallel, see {@link ParallelConversionMode}.
+ * <p>
+ * Frames are rotated according to the device rotation reported by {@link DeviceOrientationMonitor}, unless the
+ * orientation was set manually via {@link #toggleOrientation()}.
+ * <p>
+ * Every frame is compared with the previous one tile by tile, so the display stage repaints only changed regions and
+ * skips identical frames completely, and the record stage extends the previous sample instead of encoding it again.
+ */
+@Singleton
+public final class FrameConverterRunnable implements Runnable {
+
+    private static final int TILE_SIZE = 32;
+    private final FrameQueue<CapturedFrame> rawFrames;
+    private final FrameBufferPool frameBufferPool = new FrameBufferPool();
+    private final FrameDisplayDispatcher displayDispatcher;
+    private final ScreenRecorder screenRecorder;
+    private final ReplayRecorder replayRecorder;
+    private final ParallelConversionMode parallelMode;
+    private final int parallelThreshold;
+    private final int scale;
+    private final DeviceOrientationMonitor orientationMonitor;
+    private final CaptureRateController rateController;
+    private final CaptureMetrics metrics;
+    private volatile boolean autoOrientation;
+    private volatile Rotation manualRotation = Rotation.ROTATION_0;
+    private volatile Rotation appliedRotation = Rotation.ROTATION_0;
+    private volatile boolean isStopped = false;
+    /**
+     * Whether the device framebuffer is wider than high in the natural orientation. Accessed only by the conversion
+     * thread.
+     */
+    private boolean naturalLandscape = false;
+    /**
+     * Whether the device delivers frames already rotated to the display orientation. Accessed only by the conversion
+     * thread.
+     */
+    private boolean framesFollowDisplay = true;
+    /**
+     * Last converted frame, retained to find changed regions of the next one. Accessed only by the conversion thread.
+     */
+    private ConvertedFrame previousFrame;
+    /**
+     * Number of content changes seen so far. Accessed only by the conversion thread.
+     */
+    private long contentVersion;
+
+    @Inject
+    public FrameConverterRunnable(final FrameDisplayDispatcher displayDispatcher, final ScreenRecorder screenRecorder,
+                                  final ReplayRecorder replayRecorder,
+                                  @Named(APP_CONVERSION_PARALLEL_KEY) final ParallelConversionMode parallelMode,
+                                  @Named(APP_CONVERSION_PARALLEL_THRESHOLD_KEY) final int parallelThreshold,
+                                  @Named(APP_CONVERSION_SCALE_KEY) final int scale,
+                                  final DeviceOrientationMonitor orientationMonitor,
+                                  @Named(APP_ORIENTATION_AUTO_KEY) final boolean autoOrientation,
+                                  final CaptureRateController rateController,
+                                  final CaptureMetrics metrics) {
+        checkArgument(scale > 0, "Conversion scale must be greater than 0, but was %s", scale);
+        this.rawFrames = new FrameQueue<>(1, DropPolicy.LATEST_WINS, frame -> metrics.onFrameDropped());
+        this.displayDispatcher = displayDispatcher;
+        this.screenRecorder = screenRecorder;
+        this.replayRecorder = replayRecorder;
+        this.parallelMode = parallelMode;
+        this.parallelThreshold = parallelThreshold;
+        this.scale = scale;
+        this.orientationMonitor = orientationMonitor;
+        this.autoOrientation = autoOrientation;
+        this.rateController = rateController;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void run() {
+        log().info("Starting frame conversion.");
+        while (!isStopped) {
+            try {
+                convert(rawFrames.take());
+            } catch (final InterruptedException e) {
+                log().error("Execution of thread was interrupted. Shutting down thread.", e);
+                break;
+            } catch (final IllegalStateException e) {
+                log().error("Unable to convert the raw frame.", e);
+            }
+        }
+        if (previousFrame != null) {
+            previousFrame.release();
+            previousFrame = null;
+        }
+        log().info("Stopping frame conversion. {} raw frames were skipped.", rawFrames.getDroppedFrames());
+    }
+
+    void offer(final CapturedFrame capturedFrame) throws InterruptedException {
+        rawFrames.offer(capturedFrame);
+    }
+
+    private void convert(final CapturedFrame capturedFrame) throws InterruptedException {
+        final long conversionStart = System.nanoTime();
+        final RawImage rawImage = capturedFrame.getRawImage();
+        final Rotation rotation = resolveRotation(rawImage);
+        appliedRotation = rotation;
+        final Dimension size = rotation.isQuarterTurn()
+                ? new Dimension(rawImage.height, rawImage.width)
+                : new Dimension(rawImage.width, rawImage.height);
+        final boolean parallel = isParallel(rawImage.width * rawImage.height);
+        final FrameBuffer frameBuffer = ImageUtils.convertImage(rawImage, rotation, scale, parallel, frameBufferPool);
+        final List<Rectangle> dirtyRegions = TileDiff.diff(
+                previousFrame == null ? null : previousFrame.getImage(), frameBuffer.getImage(), TILE_SIZE);
+        if (!dirtyRegions.isEmpty()) {
+            contentVersion++;
+        }
+        final ConvertedFrame frame = new ConvertedFrame(frameBuffer, size, rotation, dirtyRegions, contentVersion,
+                capturedFrame.getCaptureNanos());
+        metrics.record(Stage.CONVERT, System.nanoTime() - conversionStart);
+        if (previousFrame != null) {
+            previousFrame.release();
+        }
+        previousFrame = frame;
+        if (!dirtyRegions.isEmpty()) {
+            rateController.onContentChanged();
+            displayDispatcher.dispatch(frame);
+        }
+        screenRecorder.offer(frame);
+        replayRecorder.offer(frame);
+    }
+
+    /**
+     * Newer devices deliver frames already rotated to the display orientation, older ones always deliver them in the
+     * natural orientation. A quarter turn of the device tells which case it is: if frame dimensions are swapped
+     * compared to the natural orientation, the device has rotated the frame itself.
+     */
+    private Rotation resolveRotation(final RawImage rawImage) {
+        if (!autoOrientation) {
+            return manualRotation;
+        }
+        final Rotation deviceRotation = orientationMonitor.getDeviceRotation();
+        if (deviceRotation == null) {
+            return Rotation.ROTATION_0;
+        }
+        final boolean frameLandscape = rawImage.width > rawImage.height;
+        if (deviceRotation == Rotation.ROTATION_0) {
+            naturalLandscape = frameLandscape;
+            return Rotation.ROTATION_0;
+        }
+        if (deviceRotation.isQuarterTurn()) {
+            framesFollowDisplay = frameLandscape != naturalLandscape;
+            return framesFollowDisplay ? Rotation.ROTATION_0 : deviceRotation;
+        }
+        // dimensions of an upside down frame do not tell whether it was rotated by the device
+        return framesFollowDisplay ? Rotation.ROTATION_0 : deviceRotation;
+    }
+
+    private boolean isParallel(final int pixels) {
+        switch (parallelMode) {
+            case ON:
+                return true;
+            case OFF:
+                return false;
+            default:
+                return pixels >= parallelThreshold && Runtime.getRuntime().availableProcessors() > 1;
+        }
+    }
+
+    /**
+     * Switches to manual orientation and rotates frames by one more quarter turn.
+     */
+    public void toggleOrientation() {
+        manualRotation = appliedRotation.next();
+        autoOrientation = false;
+    }
+
+    public void stop() {
+        isStopped = true;
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+
+        @SuppressWarnings({"NonSerializableFieldInSerializableClass", "ImmutableEnumChecker"})
+        private final Logger value = getLogger(FrameConverterRunnable.class);
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.xsavikx.androidscreencast.api.injector;
+
+import com.github.xsavikx.androidscreencast.api.image.TileDiff;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Display stage of the capture pipeline.
+ * <p>
+ * Keeps a single pending frame slot: a frame submitted while the previous one is still waiting for the Event Dispatch
+ * Thread replaces it, so there is never more than one frame queued on the EDT. Changed regions of a replaced frame are
+ * merged into the pending ones, so nothing is missed by the listener. The frame currently shown by the listener is
+ * retained until the next one is delivered.
+ */
+@Singleton
+public final class FrameDisplayDispatcher {
+
+    private final Object pendingLock = new Object();
+    private volatile ScreenCaptureRunnable.ScreenCaptureListener listener;
+    private ConvertedFrame pendingFrame;
+    private List<Rectangle> pendingDirtyRegions;
+    /**
+     * Frame currently shown by the listener. Accessed only on the Event Dispatch Thread.
+     */
+    private ConvertedFrame displayedFrame;
+
+    @Inject
+    public FrameDisplayDispatcher() {
+    }
+
+    public void setListener(final ScreenCaptureRunnable.ScreenCaptureListener listener) {
+        this.listener = listener;
+    }
+
+    void dispatch(final ConvertedFrame frame) {
+        if (listener == null) {
+            return;
+        }
+        frame.retain();
+        final ConvertedFrame replacedFrame;
+        synchronized (pendingLock) {
+            replacedFrame = pendingFrame;
+            pendingFrame = frame;
+            pendingDirtyRegions = replacedFrame == null
+                    ? frame.getDirtyRegions()
+                    : TileDiff.merge(pendingDirtyRegions, frame.getDirtyRegions());
+        }
+        if (replacedFrame == null) {
+            SwingUtilities.invokeLater(this::deliver);
+        } else {
+            replacedFrame.release();
+        }
+    }
+
+    private void deliver() {
+        final ConvertedFrame frame;
+        final List<Rectangle> dirtyRegions;
+        synchronized (pendingLock) {
+            frame = pendingFrame;
+            dirtyRegions = pendingDirtyRegions;
+            pendingFrame = null;
+            pendingDirtyRegions = null;
+        }
+        final ScreenCaptureRunnable.ScreenCaptureListener currentListener = listener;
+        if (frame == null) {
+            return;
+        }
+        if (currentListener == null) {
+            frame.release();
+            return;
+        }
+        currentListener.handleNewImage(frame.getSize(), frame.getImage(), frame.getRotation(), dirtyRegions);
+        if (displayedFrame != null) {
+            displayedFrame.release();
+        }
+        displayedFrame = frame;
+    }
+}
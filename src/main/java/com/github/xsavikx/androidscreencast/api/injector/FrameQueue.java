@@ -0,0 +1,107 @@
+package com.github.xsavikx.androidscreencast.api.injector;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Bounded hand-off between two capture stages.
+ * <p>
+ * Behaviour on overflow is defined by the {@link DropPolicy} the queue was created with.
+ *
+ * @param <T> type of the frames passed between stages
+ */
+public final class FrameQueue<T> {
+
+    private final BlockingQueue<T> queue;
+    private final DropPolicy dropPolicy;
+    private final Consumer<T> dropListener;
+    private final AtomicLong droppedFrames = new AtomicLong();
+
+    public FrameQueue(final int capacity, final DropPolicy dropPolicy) {
+        this(capacity, dropPolicy, frame -> {
+        });
+    }
+
+    /**
+     * @param capacity     maximum amount of queued frames
+     * @param dropPolicy   behaviour on overflow
+     * @param dropListener notified about every frame dropped by the queue, e.g. to release pooled buffers
+     */
+    public FrameQueue(final int capacity, final DropPolicy dropPolicy, final Consumer<T> dropListener) {
+        checkArgument(capacity > 0, "Queue capacity must be greater than 0, but was %s", capacity);
+        checkNotNull(dropPolicy, "Drop policy should not be null.");
+        checkNotNull(dropListener, "Drop listener should not be null.");
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.dropPolicy = dropPolicy;
+        this.dropListener = dropListener;
+    }
+
+    /**
+     * Puts the frame into the queue according to the drop policy.
+     *
+     * @param frame frame to enqueue
+     * @return {@code true} if the frame was enqueued, {@code false} if it was dropped
+     * @throws InterruptedException if interrupted while waiting for a free slot in {@link DropPolicy#LOSSLESS} mode
+     */
+    public boolean offer(final T frame) throws InterruptedException {
+        checkNotNull(frame, "Frame should not be null.");
+        switch (dropPolicy) {
+            case LOSSLESS:
+                queue.put(frame);
+                return true;
+            case DROP_NEWEST:
+                if (queue.offer(frame)) {
+                    return true;
+                }
+                drop(frame);
+                return false;
+            case LATEST_WINS:
+                while (!queue.offer(frame)) {
+                    final T oldest = queue.poll();
+                    if (oldest != null) {
+                        drop(oldest);
+                    }
+                }
+                return true;
+            default:
+                throw new IllegalStateException("Such drop policy is not supported: " + dropPolicy);
+        }
+    }
+
+    private void drop(final T frame) {
+        droppedFrames.incrementAndGet();
+        dropListener.accept(frame);
+    }
+
+    public T take() throws InterruptedException {
+        return queue.take();
+    }
+
+    public T poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    /**
+     * Drops all queued frames.
+     */
+    public void clear() {
+        T frame;
+        while ((frame = queue.poll()) != null) {
+            drop(frame);
+        }
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+}
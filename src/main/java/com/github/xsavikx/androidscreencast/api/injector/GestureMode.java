@@ -0,0 +1,21 @@
+package com.github.xsavikx.androidscreencast.api.injector;
+
+/**
+ * Describes how dragging on the screen is passed to the device.
+ */
+public enum GestureMode {
+    /**
+     * {@link #MOTION_EVENT} if the device supports {@code input motionevent} or touches are injected by the
+     * {@link InputBackend#EVDEV} backend, {@link #SWIPE} otherwise. Gestures are sent as swipes until the Android
+     * version of the device is known.
+     */
+    AUTO,
+    /**
+     * The finger goes down on press, follows the mouse while dragging and goes up on release.
+     */
+    MOTION_EVENT,
+    /**
+     * A straight swipe from the start to the end of the drag is sent on release.
+     */
+    SWIPE
+}
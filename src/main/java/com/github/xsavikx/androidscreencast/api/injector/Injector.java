@@ -1,43 +1,133 @@
 package com.github.xsavikx.androidscreencast.api.injector;
 
+import com.github.xsavikx.androidscreencast.api.metrics.CaptureMetrics;
+
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 import java.io.File;
+import java.util.Optional;
+import java.util.function.IntConsumer;
+
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_ORIENTATION_AUTO_KEY;
 
 @Singleton
 public final class Injector {
 
     private final ScreenCaptureRunnable screenCaptureRunnable;
+    private final FrameConverterRunnable frameConverterRunnable;
+    private final FrameDisplayDispatcher frameDisplayDispatcher;
+    private final ScreenRecorder screenRecorder;
+    private final ReplayRecorder replayRecorder;
+    private final DeviceOrientationMonitor orientationMonitor;
+    private final CaptureRateController rateController;
+    private final CaptureMetrics metrics;
+    private final boolean autoOrientation;
     private final Thread screenCaptureThread;
+    private final Thread frameConverterThread;
+    private final Thread orientationMonitorThread;
+    private final Thread replayRecorderThread;
 
     @Inject
-    public Injector(final ScreenCaptureRunnable screenCaptureRunnable) {
+    public Injector(final ScreenCaptureRunnable screenCaptureRunnable,
+                    final FrameConverterRunnable frameConverterRunnable,
+                    final FrameDisplayDispatcher frameDisplayDispatcher,
+                    final ScreenRecorder screenRecorder,
+                    final ReplayRecorder replayRecorder,
+                    final DeviceOrientationMonitor orientationMonitor,
+                    @Named(APP_ORIENTATION_AUTO_KEY) final boolean autoOrientation,
+                    final CaptureRateController rateController,
+                    final CaptureMetrics metrics) {
         this.screenCaptureRunnable = screenCaptureRunnable;
+        this.frameConverterRunnable = frameConverterRunnable;
+        this.frameDisplayDispatcher = frameDisplayDispatcher;
+        this.screenRecorder = screenRecorder;
+        this.replayRecorder = replayRecorder;
+        this.orientationMonitor = orientationMonitor;
+        this.autoOrientation = autoOrientation;
+        this.rateController = rateController;
+        this.metrics = metrics;
         this.screenCaptureThread = new Thread(screenCaptureRunnable, "Screen Capturer");
         this.screenCaptureThread.setDaemon(true);
+        this.frameConverterThread = new Thread(frameConverterRunnable, "Frame Converter");
+        this.frameConverterThread.setDaemon(true);
+        this.orientationMonitorThread = new Thread(orientationMonitor, "Orientation Monitor");
+        this.orientationMonitorThread.setDaemon(true);
+        this.replayRecorderThread = new Thread(replayRecorder, "Replay Recorder");
+        this.replayRecorderThread.setDaemon(true);
     }
 
     public void stop() {
         screenCaptureRunnable.stop();
+        frameConverterRunnable.stop();
+        frameConverterThread.interrupt();
+        orientationMonitor.stop();
+        orientationMonitorThread.interrupt();
+        replayRecorder.stop();
+        replayRecorderThread.interrupt();
+        metrics.unregister();
     }
 
     public void start() {
+        metrics.register();
+        if (autoOrientation) {
+            orientationMonitorThread.start();
+        }
+        if (replayRecorder.isEnabled()) {
+            replayRecorderThread.start();
+        }
+        frameConverterThread.start();
         screenCaptureThread.start();
     }
 
     public void setScreenCaptureListener(final ScreenCaptureRunnable.ScreenCaptureListener listener) {
-        this.screenCaptureRunnable.setListener(listener);
+        this.frameDisplayDispatcher.setListener(listener);
     }
 
     public void startRecording(final File file) {
-        screenCaptureRunnable.startRecording(file);
+        screenRecorder.startRecording(file);
+    }
+
+    /**
+     * @return spool file to {@link #transcodeRecording(File, File, IntConsumer) transcode} if recording is deferred
+     */
+    public Optional<File> stopRecording() throws InterruptedException {
+        return screenRecorder.stopRecording();
+    }
+
+    public void transcodeRecording(final File spoolFile, final File file, final IntConsumer progress)
+            throws InterruptedException {
+        screenRecorder.transcode(spoolFile, file, progress);
     }
 
-    public void stopRecording() {
-        screenCaptureRunnable.stopRecording();
+    public boolean isReplayEnabled() {
+        return replayRecorder.isEnabled();
+    }
+
+    /**
+     * Writes the last seconds of the screen into a movie.
+     *
+     * @return amount of written frames, nothing is written if there are no frames yet
+     */
+    public int saveReplay(final File file) {
+        return replayRecorder.save(file);
     }
 
     public void toggleOrientation() {
-        screenCaptureRunnable.toggleOrientation();
+        frameConverterRunnable.toggleOrientation();
+    }
+
+    /**
+     * Restores full capture rate after user interaction with the device.
+     */
+    public void onUserInput() {
+        rateController.wakeUp();
+    }
+
+    /**
+     * @param visible whether the mirrored screen can be seen by the user; hidden screen is captured at idle rate
+     */
+    public void setScreenVisible(final boolean visible) {
+        rateController.setScreenVisible(visible);
     }
 }
@@ -0,0 +1,15 @@
+package com.github.xsavikx.androidscreencast.api.injector;
+
+/**
+ * Describes how input is passed to the device.
+ */
+public enum InputBackend {
+    /**
+     * Every command is executed by the {@code input} shell tool.
+     */
+    SHELL,
+    /**
+     * Touches are written straight into the touchscreen device node, other commands are executed by {@code input}.
+     */
+    EVDEV
+}
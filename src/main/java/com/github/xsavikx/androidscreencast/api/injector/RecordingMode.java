@@ -0,0 +1,16 @@
+package com.github.xsavikx.androidscreencast.api.injector;
+
+/**
+ * Describes when frames of a recording are encoded into the movie.
+ */
+public enum RecordingMode {
+    /**
+     * Frames are encoded while recording, the movie is ready as soon as recording is stopped.
+     */
+    LIVE,
+    /**
+     * Frames are spooled uncompressed while recording and encoded once recording is stopped, so encoding never slows
+     * down capturing.
+     */
+    DEFERRED
+}
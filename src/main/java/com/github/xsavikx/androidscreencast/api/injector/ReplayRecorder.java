@@ -0,0 +1,132 @@
+package com.github.xsavikx.androidscreencast.api.injector;
+
+import com.github.xsavikx.androidscreencast.api.recording.QuickTimeOutputStream;
+import com.github.xsavikx.androidscreencast.api.recording.ReplayBuffer;
+import com.github.xsavikx.androidscreencast.exception.IORuntimeException;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_RECORDING_FORMAT_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_REPLAY_MEMORY_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_REPLAY_SECONDS_KEY;
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Instant replay stage of the capture pipeline.
+ * <p>
+ * Keeps the last seconds of the screen in a {@link ReplayBuffer}, so they can be saved as a movie without recording all
+ * the time. Frames are encoded by a dedicated thread taking only the most recent frame, so replay never slows down
+ * conversion. Frames with the same content as the previous one are not encoded at all.
+ * <p>
+ * Replay is disabled if its duration is 0, no thread is started and no memory is allocated then.
+ */
+@Singleton
+public final class ReplayRecorder implements Runnable {
+
+    /**
+     * Time units per second, samples are timed with millisecond precision.
+     */
+    private static final int MOV_TIME_SCALE = 1000;
+    /**
+     * Slightly lossy frames let the buffer keep several times more seconds than lossless ones.
+     */
+    private static final float REPLAY_COMPRESSION_QUALITY = 0.8f;
+    private static final long BYTES_IN_MEGABYTE = 1024 * 1024;
+    private final FrameQueue<ConvertedFrame> frames;
+    private final ReplayBuffer replayBuffer;
+    private volatile boolean isStopped = false;
+    /**
+     * Content version of the last buffered frame. Accessed only by the replay thread.
+     */
+    private long lastContentVersion = -1;
+
+    @Inject
+    public ReplayRecorder(@Named(APP_REPLAY_SECONDS_KEY) int seconds,
+                          @Named(APP_REPLAY_MEMORY_KEY) int memoryMegabytes,
+                          @Named(APP_RECORDING_FORMAT_KEY) QuickTimeOutputStream.VideoFormat videoFormat) {
+        checkArgument(seconds >= 0, "Replay duration must not be negative, but was %s", seconds);
+        checkArgument(memoryMegabytes > 0 && memoryMegabytes * BYTES_IN_MEGABYTE <= Integer.MAX_VALUE,
+                "Replay memory must be between 1 and 2047 megabytes, but was %s", memoryMegabytes);
+        this.frames = new FrameQueue<>(1, DropPolicy.LATEST_WINS, ConvertedFrame::release);
+        this.replayBuffer = seconds > 0
+                ? new ReplayBuffer(videoFormat, TimeUnit.SECONDS.toNanos(seconds),
+                (int) (memoryMegabytes * BYTES_IN_MEGABYTE), REPLAY_COMPRESSION_QUALITY)
+                : null;
+    }
+
+    public boolean isEnabled() {
+        return replayBuffer != null;
+    }
+
+    @Override
+    public void run() {
+        log().info("Starting instant replay.");
+        while (!isStopped) {
+            try {
+                append(frames.take());
+            } catch (final InterruptedException e) {
+                log().error("Execution of thread was interrupted. Shutting down thread.", e);
+                break;
+            }
+        }
+        frames.clear();
+        log().info("Stopping instant replay.");
+    }
+
+    public void stop() {
+        isStopped = true;
+    }
+
+    /**
+     * Writes the kept frames into a movie.
+     *
+     * @return amount of written frames, nothing is written if there are no frames yet
+     */
+    public int save(final File file) {
+        if (replayBuffer == null) {
+            return 0;
+        }
+        return replayBuffer.writeTo(file, MOV_TIME_SCALE);
+    }
+
+    void offer(final ConvertedFrame frame) throws InterruptedException {
+        if (replayBuffer != null && !isStopped) {
+            frames.offer(frame.retain());
+        }
+    }
+
+    private void append(final ConvertedFrame frame) {
+        try {
+            if (frame.getContentVersion() == lastContentVersion) {
+                return;
+            }
+            if (replayBuffer.append(frame.getImage(), frame.getCaptureNanos())) {
+                lastContentVersion = frame.getContentVersion();
+            } else {
+                // appended again with the next frame, so a static screen is not lost
+                log().debug("Frame was dropped from the replay buffer.");
+            }
+        } catch (final IORuntimeException e) {
+            log().error("IO exception happened during encoding the replay frame.", e);
+        } finally {
+            frame.release();
+        }
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+
+        @SuppressWarnings({"NonSerializableFieldInSerializableClass", "ImmutableEnumChecker"})
+        private final Logger value = getLogger(ReplayRecorder.class);
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+}
@@ -4,46 +4,47 @@ import com.android.ddmlib.AdbCommandRejectedException;
 import com.android.ddmlib.IDevice;
 import com.android.ddmlib.RawImage;
 import com.android.ddmlib.TimeoutException;
-import com.github.xsavikx.androidscreencast.api.image.ImageUtils;
-import com.github.xsavikx.androidscreencast.api.recording.QuickTimeOutputStream;
-import com.github.xsavikx.androidscreencast.exception.IORuntimeException;
+import com.github.xsavikx.androidscreencast.api.image.RawImageFingerprint;
+import com.github.xsavikx.androidscreencast.api.image.Rotation;
+import com.github.xsavikx.androidscreencast.api.metrics.CaptureMetrics;
+import com.github.xsavikx.androidscreencast.api.metrics.Stage;
 import org.slf4j.Logger;
 
 import javax.inject.Inject;
-import javax.inject.Named;
 import javax.inject.Singleton;
-import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
 import java.nio.channels.ClosedByInterruptException;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
-import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.ADB_COMMAND_TIMEOUT_KEY;
 import static org.slf4j.LoggerFactory.getLogger;
 
+/**
+ * Fetch stage of the capture pipeline.
+ * <p>
+ * Pulls raw frames from the device at the rate allowed by the {@link CaptureRateController} and passes them to the
+ * {@link FrameConverterRunnable}.
+ */
 @Singleton
 public final class ScreenCaptureRunnable implements Runnable {
 
-    private static final int MOV_FPS = 30;
-    private static final float MOV_COMPRESSION_RATE = 1f;
-    private static final int FRAME_DURATION = 10;
     private final IDevice device;
-    private final long defaultAdbCommandTimeout;
-    private Dimension size;
-    private QuickTimeOutputStream qos = null;
-    private boolean landscape = false;
-    private ScreenCaptureListener listener = null;
-    private long currentAdbCommandTimeout;
-    private boolean isStopped = false;
+    private final FrameConverterRunnable frameConverter;
+    private final CaptureRateController rateController;
+    private final CaptureMetrics metrics;
+    private volatile boolean isStopped = false;
 
     @Inject
-    public ScreenCaptureRunnable(final IDevice device, @Named(ADB_COMMAND_TIMEOUT_KEY) long adbCommandTimeout) {
-        this.size = new Dimension();
+    public ScreenCaptureRunnable(final IDevice device,
+                                 final FrameConverterRunnable frameConverter,
+                                 final CaptureRateController rateController,
+                                 final CaptureMetrics metrics) {
         this.device = device;
-        this.defaultAdbCommandTimeout = adbCommandTimeout;
-        this.currentAdbCommandTimeout = defaultAdbCommandTimeout;
+        this.frameConverter = frameConverter;
+        this.rateController = rateController;
+        this.metrics = metrics;
     }
 
     @Override
@@ -51,9 +52,11 @@ public final class ScreenCaptureRunnable implements Runnable {
         log().info("Starting screen capturing.");
         while (!isStopped) {
             try {
-                final RawImage screenshot = getScreenshot();
+                rateController.awaitNextFrame();
+                final CapturedFrame screenshot = getScreenshot();
                 if (screenshot != null) {
-                    display(screenshot);
+                    rateController.onFrameContent(RawImageFingerprint.of(screenshot.getRawImage()));
+                    frameConverter.offer(screenshot);
                 } else {
                     log().info("Failed to get device screenshot.");
                 }
@@ -68,16 +71,23 @@ public final class ScreenCaptureRunnable implements Runnable {
         log().info("Stopping screen capturing.");
     }
 
-    private RawImage getScreenshot() throws InterruptedException, ClosedByInterruptException {
+    private CapturedFrame getScreenshot() throws InterruptedException, ClosedByInterruptException {
         RawImage rawImage = null;
+        long fetchStart = 0;
         try {
+            fetchStart = System.nanoTime();
             synchronized (device) {
-                rawImage = device.getScreenshot(currentAdbCommandTimeout, TimeUnit.SECONDS);
+                rawImage = device.getScreenshot(rateController.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+            }
+            final long fetchNanos = System.nanoTime() - fetchStart;
+            rateController.onFrameFetched(fetchNanos);
+            if (rawImage != null) {
+                metrics.record(Stage.FETCH, fetchNanos);
+                metrics.onFrameCaptured(rawImage.data.length);
             }
-            currentAdbCommandTimeout = defaultAdbCommandTimeout;
         } catch (TimeoutException e) {
-            currentAdbCommandTimeout++;
-            log().warn("Adb command timeout happened. Timeout would be set to {} for the next try.", currentAdbCommandTimeout, e);
+            log().debug("Screenshot was not fetched in time.", e);
+            rateController.onTimeout();
         } catch (AdbCommandRejectedException e) {
             log().warn("ADB Command was rejected. Will try again in 100 ms.", e);
             Thread.sleep(100);
@@ -87,50 +97,7 @@ public final class ScreenCaptureRunnable implements Runnable {
             log().warn("IO Exception happened while getting device screenshot. Will try again in 100 ms.", e);
             Thread.sleep(100);
         }
-        return rawImage;
-    }
-
-    private void display(final RawImage rawImage) {
-        final RawImage imageToProcess = landscape ? rawImage.getRotated() : rawImage;
-        final BufferedImage image = ImageUtils.convertImage(imageToProcess);
-        size.setSize(image.getWidth(), image.getHeight());
-        if (listener != null) {
-            SwingUtilities.invokeLater(() -> listener.handleNewImage(size, image, landscape));
-        }
-        if (qos != null) {
-            SwingUtilities.invokeLater(() -> {
-                try {
-                    qos.writeFrame(image, FRAME_DURATION);
-                } catch (IORuntimeException e) {
-                    log().error("IO exception happened during writing the video frame: {}.", image, e);
-                }
-            });
-        }
-    }
-
-    public void setListener(final ScreenCaptureListener listener) {
-        this.listener = listener;
-    }
-
-
-    public void startRecording(final File file) {
-        try {
-            qos = new QuickTimeOutputStream(file, QuickTimeOutputStream.VideoFormat.JPG);
-            qos.setVideoCompressionQuality(MOV_COMPRESSION_RATE);
-            qos.setTimeScale(MOV_FPS);
-        } catch (final IOException e) {
-            throw new IORuntimeException(e);
-        }
-    }
-
-    public void stopRecording() {
-        QuickTimeOutputStream o = qos;
-        qos = null;
-        o.close();
-    }
-
-    public void toggleOrientation() {
-        landscape = !landscape;
+        return rawImage == null ? null : new CapturedFrame(rawImage, fetchStart);
     }
 
     public void stop() {
@@ -138,7 +105,13 @@ public final class ScreenCaptureRunnable implements Runnable {
     }
 
     public interface ScreenCaptureListener {
-        void handleNewImage(Dimension size, BufferedImage image, boolean landscape);
+        /**
+         * @param size         size of the device screen
+         * @param image        new frame
+         * @param rotation     rotation applied to the frame
+         * @param dirtyRegions regions of the image changed since the previously delivered frame
+         */
+        void handleNewImage(Dimension size, BufferedImage image, Rotation rotation, List<Rectangle> dirtyRegions);
     }
 
     private enum LogSingleton {
@@ -0,0 +1,552 @@
+package com.github.xsavikx.androidscreencast.api.injector;
+
+import com.github.xsavikx.androidscreencast.api.metrics.CaptureMetrics;
+import com.github.xsavikx.androidscreencast.api.metrics.Stage;
+import com.github.xsavikx.androidscreencast.api.recording.EncodedFrame;
+import com.github.xsavikx.androidscreencast.api.recording.FrameSpool;
+import com.github.xsavikx.androidscreencast.api.recording.MovieTimeline;
+import com.github.xsavikx.androidscreencast.api.recording.QuickTimeOutputStream;
+import com.github.xsavikx.androidscreencast.exception.IORuntimeException;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_RECORDING_ENCODER_THREADS_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_RECORDING_FORMAT_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_RECORDING_FRAGMENT_FRAMES_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_RECORDING_MODE_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_RECORDING_QUEUE_POLICY_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_RECORDING_QUEUE_SIZE_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_RECORDING_SPOOL_COMPRESSION_KEY;
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Record stage of the capture pipeline.
+ * <p>
+ * Frames are handed over through a bounded queue to a dedicated writer thread, so encoding never runs on the
+ * conversion thread or on the Event Dispatch Thread. The writer passes frames to a pool of encoder threads compressing
+ * them in parallel and appends finished samples to the movie strictly in capture order. A frame with the same content
+ * as the previous one is not encoded at all, the previous sample is extended instead.
+ * <p>
+ * Durations of samples are derived from capture timestamps of the frames, so the movie is played back at the speed the
+ * device screen actually changed.
+ * <p>
+ * Unless disabled, the movie is written in fragments, so an interrupted recording can still be played. Formats with
+ * delta frames get a key frame at the start of every fragment, so fragments can be decoded on their own.
+ * <p>
+ * In {@link RecordingMode#DEFERRED deferred} mode frames are only copied to a spool file while recording, the movie is
+ * encoded from the spool by {@link #transcode(File, File, IntConsumer)} once recording is stopped.
+ */
+@Singleton
+public final class ScreenRecorder {
+
+    /**
+     * Time units per second, samples are timed with millisecond precision.
+     */
+    private static final int MOV_TIME_SCALE = 1000;
+    private static final float MOV_COMPRESSION_RATE = 1f;
+    /**
+     * Frames between key frames of formats with delta frames if the movie is not fragmented.
+     */
+    private static final int DEFAULT_KEY_FRAME_INTERVAL = 30;
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+    private final int queueSize;
+    private final DropPolicy dropPolicy;
+    private final int encoderThreads;
+    private final int fragmentFrames;
+    private final QuickTimeOutputStream.VideoFormat videoFormat;
+    private final RecordingMode mode;
+    private final boolean spoolCompression;
+    private final CaptureMetrics metrics;
+    private volatile RecordingSession session;
+
+    @Inject
+    public ScreenRecorder(@Named(APP_RECORDING_QUEUE_SIZE_KEY) int queueSize,
+                          @Named(APP_RECORDING_QUEUE_POLICY_KEY) DropPolicy dropPolicy,
+                          @Named(APP_RECORDING_ENCODER_THREADS_KEY) int encoderThreads,
+                          @Named(APP_RECORDING_FRAGMENT_FRAMES_KEY) int fragmentFrames,
+                          @Named(APP_RECORDING_FORMAT_KEY) QuickTimeOutputStream.VideoFormat videoFormat,
+                          @Named(APP_RECORDING_MODE_KEY) RecordingMode mode,
+                          @Named(APP_RECORDING_SPOOL_COMPRESSION_KEY) boolean spoolCompression,
+                          CaptureMetrics metrics) {
+        checkArgument(encoderThreads >= 0, "Amount of encoder threads must not be negative, but was %s", encoderThreads);
+        checkArgument(fragmentFrames >= 0, "Amount of frames in a fragment must not be negative, but was %s", fragmentFrames);
+        this.queueSize = queueSize;
+        this.dropPolicy = dropPolicy;
+        this.encoderThreads = encoderThreads > 0
+                ? encoderThreads
+                : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        this.fragmentFrames = fragmentFrames;
+        this.videoFormat = videoFormat;
+        this.mode = mode;
+        this.spoolCompression = spoolCompression;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts recording into the given movie file. In deferred mode frames are spooled into a file next to it.
+     */
+    public void startRecording(final File file) {
+        final FrameQueue<ConvertedFrame> frames = new FrameQueue<>(queueSize, dropPolicy, frame -> {
+            metrics.onRecordingFrameDropped();
+            frame.release();
+        });
+        final RecordingSession newSession;
+        if (mode == RecordingMode.DEFERRED) {
+            final File spoolFile = new File(file.getPath() + ".spool");
+            try {
+                newSession = new SpoolingSession(FrameSpool.create(spoolFile, spoolCompression), spoolFile, frames);
+            } catch (final IOException e) {
+                throw new IORuntimeException(e);
+            }
+        } else {
+            newSession = new EncodingSession(openMovie(file), frames, encoderThreads, getKeyFrameInterval(), metrics);
+        }
+        final Thread recorderThread = new Thread(newSession, "Screen Recorder");
+        recorderThread.setDaemon(true);
+        newSession.thread = recorderThread;
+        session = newSession;
+        recorderThread.start();
+    }
+
+    /**
+     * Stops accepting new frames, waits until all queued frames are written and closes the movie or the spool file.
+     *
+     * @return spool file to {@link #transcode(File, File, IntConsumer) transcode} into the movie in deferred mode, or
+     * empty if the movie is complete
+     * @throws InterruptedException if interrupted while waiting, the recording is still being completed then
+     */
+    public Optional<File> stopRecording() throws InterruptedException {
+        final RecordingSession currentSession = session;
+        session = null;
+        if (currentSession == null) {
+            return Optional.empty();
+        }
+        currentSession.finish();
+        return currentSession instanceof SpoolingSession
+                ? Optional.of(((SpoolingSession) currentSession).spoolFile)
+                : Optional.empty();
+    }
+
+    /**
+     * Encodes frames of a spool file into a movie, using the same video format and timing as live recording.
+     *
+     * @param spoolFile spool file returned by {@link #stopRecording()}
+     * @param file      movie file to write
+     * @param progress  receives the part of the spool transcoded so far, in percent
+     * @throws InterruptedException if the calling thread was interrupted, the movie is left incomplete then
+     */
+    public void transcode(final File spoolFile, final File file, final IntConsumer progress) throws InterruptedException {
+        log().info("Transcoding recording from {}.", spoolFile);
+        final QuickTimeOutputStream qos = openMovie(file);
+        final boolean deltaFrames = qos.getVideoFormat().hasDeltaFrames();
+        final int keyFrameInterval = getKeyFrameInterval();
+        try (FrameSpool.Reader reader = FrameSpool.open(spoolFile)) {
+            final MovieTimeline timeline = new MovieTimeline(qos);
+            BufferedImage reference = null;
+            int framesSinceKeyFrame = 0;
+            int reportedProgress = -1;
+            while (reader.next()) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("Transcoding of the recording was cancelled.");
+                }
+                if (reader.isRepeat()) {
+                    timeline.advanceTo(reader.getCaptureNanos());
+                } else {
+                    final BufferedImage image = reader.readImage();
+                    if (!deltaFrames || framesSinceKeyFrame >= keyFrameInterval) {
+                        reference = null;
+                    }
+                    framesSinceKeyFrame = reference == null ? 1 : framesSinceKeyFrame + 1;
+                    final long encodeStart = System.nanoTime();
+                    final EncodedFrame encodedFrame = qos.encodeFrame(image, reference);
+                    metrics.record(Stage.ENCODE, System.nanoTime() - encodeStart);
+                    timeline.writeFrame(encodedFrame, reader.getCaptureNanos(), reader.getFingerprint());
+                    reference = image;
+                }
+                final int currentProgress = reader.getProgress();
+                if (currentProgress != reportedProgress) {
+                    reportedProgress = currentProgress;
+                    progress.accept(currentProgress);
+                }
+            }
+        } catch (final IOException e) {
+            throw new IORuntimeException(e);
+        } finally {
+            qos.close();
+        }
+        log().info("Recording was transcoded into {}.", file);
+    }
+
+    void offer(final ConvertedFrame frame) throws InterruptedException {
+        final RecordingSession currentSession = session;
+        if (currentSession != null && !currentSession.frames.offer(frame.retain())) {
+            log().debug("Recording queue is full, frame was dropped.");
+        }
+    }
+
+    private QuickTimeOutputStream openMovie(final File file) {
+        try {
+            final QuickTimeOutputStream qos = new QuickTimeOutputStream(file, videoFormat);
+            qos.setVideoCompressionQuality(MOV_COMPRESSION_RATE);
+            qos.setTimeScale(MOV_TIME_SCALE);
+            qos.setFragmentLength(fragmentFrames);
+            return qos;
+        } catch (final IOException e) {
+            throw new IORuntimeException(e);
+        }
+    }
+
+    private int getKeyFrameInterval() {
+        return fragmentFrames > 0 ? fragmentFrames : DEFAULT_KEY_FRAME_INTERVAL;
+    }
+
+    /**
+     * Writer thread of a recording, taking frames from the queue until recording is stopped and all queued frames are
+     * handled.
+     */
+    private abstract static class RecordingSession implements Runnable {
+
+        final FrameQueue<ConvertedFrame> frames;
+        volatile long stopNanos;
+        private volatile boolean isStopped = false;
+        private Thread thread;
+
+        RecordingSession(final FrameQueue<ConvertedFrame> frames) {
+            this.frames = frames;
+        }
+
+        @Override
+        public final void run() {
+            log().info("Starting screen recording.");
+            try {
+                while (!isStopped || !frames.isEmpty()) {
+                    onFrame(frames.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+                }
+                onStop();
+            } catch (final InterruptedException e) {
+                log().error("Execution of thread was interrupted. Shutting down thread.", e);
+            } finally {
+                frames.clear();
+                close();
+            }
+            log().info("Stopping screen recording. {} frames were dropped.", frames.getDroppedFrames());
+        }
+
+        /**
+         * @param frame next frame, or {@code null} if no frame arrived within the poll timeout
+         */
+        abstract void onFrame(ConvertedFrame frame);
+
+        /**
+         * Called once all queued frames are handled.
+         */
+        abstract void onStop();
+
+        abstract void close();
+
+        private void finish() throws InterruptedException {
+            stopNanos = System.nanoTime();
+            isStopped = true;
+            thread.join();
+        }
+    }
+
+    /**
+     * Copies frames to a spool file, the movie is encoded after recording.
+     */
+    private static final class SpoolingSession extends RecordingSession {
+
+        private final FrameSpool spool;
+        private final File spoolFile;
+        /**
+         * Content version of the last spooled frame. Accessed only by the writer thread.
+         */
+        private long lastContentVersion = -1;
+
+        private SpoolingSession(final FrameSpool spool, final File spoolFile, final FrameQueue<ConvertedFrame> frames) {
+            super(frames);
+            this.spool = spool;
+            this.spoolFile = spoolFile;
+        }
+
+        @Override
+        void onFrame(final ConvertedFrame frame) {
+            if (frame == null) {
+                return;
+            }
+            try {
+                final long contentVersion = frame.getContentVersion();
+                if (contentVersion == lastContentVersion) {
+                    spool.appendRepeat(frame.getCaptureNanos());
+                } else {
+                    spool.appendFrame(frame.getImage(), frame.getCaptureNanos(), contentVersion);
+                    lastContentVersion = contentVersion;
+                }
+            } catch (final IORuntimeException e) {
+                log().error("IO exception happened during spooling the video frame.", e);
+            } finally {
+                frame.release();
+            }
+        }
+
+        @Override
+        void onStop() {
+            spool.appendRepeat(stopNanos);
+            log().info("{} frames were spooled into {}.", spool.getFrameCount(), spoolFile);
+        }
+
+        @Override
+        void close() {
+            try {
+                spool.close();
+            } catch (final IOException e) {
+                log().error("IO exception happened during closing the spool file.", e);
+            }
+        }
+    }
+
+    /**
+     * Encodes frames while recording.
+     */
+    private static final class EncodingSession extends RecordingSession {
+
+        private final QuickTimeOutputStream qos;
+        private final MovieTimeline timeline;
+        private final CaptureMetrics metrics;
+        private final ExecutorService encoders;
+        private final int maxPendingFrames;
+        private final int keyFrameInterval;
+        /**
+         * Frames being encoded, in capture order. Accessed only by the writer thread.
+         */
+        private final Deque<PendingFrame> pendingFrames = new ArrayDeque<>();
+        /**
+         * Content version of the last frame passed to the encoders. Accessed only by the writer thread.
+         */
+        private long lastContentVersion = -1;
+        /**
+         * Last frame passed to the encoders, kept as the reference of the next delta frame. Accessed only by the writer
+         * thread.
+         */
+        private ConvertedFrame referenceFrame;
+        /**
+         * Frames passed to the encoders since the last key frame. Accessed only by the writer thread.
+         */
+        private int framesSinceKeyFrame;
+        /**
+         * Whether a frame failed to be written, so delta frames are skipped until the next key frame. Accessed only by
+         * the writer thread.
+         */
+        private boolean isAwaitingKeyFrame = false;
+
+        private EncodingSession(final QuickTimeOutputStream qos, final FrameQueue<ConvertedFrame> frames,
+                                final int encoderThreads, final int keyFrameInterval, final CaptureMetrics metrics) {
+            super(frames);
+            this.qos = qos;
+            this.timeline = new MovieTimeline(qos);
+            this.metrics = metrics;
+            this.encoders = Executors.newFixedThreadPool(encoderThreads, new EncoderThreadFactory());
+            this.maxPendingFrames = encoderThreads * 2;
+            this.keyFrameInterval = keyFrameInterval;
+        }
+
+        @Override
+        void onFrame(final ConvertedFrame frame) {
+            if (frame != null) {
+                pendingFrames.addLast(submit(frame));
+            }
+            writeEncodedFrames(pendingFrames.size() >= maxPendingFrames);
+        }
+
+        @Override
+        void onStop() {
+            while (!pendingFrames.isEmpty()) {
+                writeEncodedFrames(true);
+            }
+            timeline.advanceTo(stopNanos);
+        }
+
+        @Override
+        void close() {
+            if (referenceFrame != null) {
+                referenceFrame.release();
+                referenceFrame = null;
+            }
+            encoders.shutdown();
+            qos.close();
+        }
+
+        private PendingFrame submit(final ConvertedFrame frame) {
+            final long contentVersion = frame.getContentVersion();
+            if (contentVersion == lastContentVersion) {
+                frame.release();
+                return new PendingFrame(contentVersion, frame.getCaptureNanos(), null);
+            }
+            lastContentVersion = contentVersion;
+            final ConvertedFrame reference = nextReference(frame);
+            return new PendingFrame(contentVersion, frame.getCaptureNanos(),
+                    CompletableFuture.supplyAsync(() -> encode(frame, reference), encoders));
+        }
+
+        /**
+         * Keeps the frame as the reference of the next delta frame and returns the reference of the given frame. The
+         * writer's hold on the previous reference is handed over to the encoder.
+         *
+         * @return previous frame, or {@code null} if the frame has to be encoded as a key frame
+         */
+        private ConvertedFrame nextReference(final ConvertedFrame frame) {
+            if (!qos.getVideoFormat().hasDeltaFrames()) {
+                return null;
+            }
+            ConvertedFrame reference = referenceFrame;
+            if (reference != null && framesSinceKeyFrame >= keyFrameInterval) {
+                reference.release();
+                reference = null;
+            }
+            framesSinceKeyFrame = reference == null ? 1 : framesSinceKeyFrame + 1;
+            referenceFrame = frame.retain();
+            return reference;
+        }
+
+        private EncodedFrame encode(final ConvertedFrame frame, final ConvertedFrame reference) {
+            try {
+                final long encodeStart = System.nanoTime();
+                final EncodedFrame encodedFrame = qos.encodeFrame(frame.getImage(),
+                        reference == null ? null : reference.getImage());
+                metrics.record(Stage.ENCODE, System.nanoTime() - encodeStart);
+                return encodedFrame;
+            } finally {
+                frame.release();
+                if (reference != null) {
+                    reference.release();
+                }
+            }
+        }
+
+        /**
+         * Appends frames from the head of the pending queue which are already encoded.
+         *
+         * @param waitForHead whether to wait for the oldest frame to be encoded, so the queue shrinks by at least one
+         */
+        private void writeEncodedFrames(final boolean waitForHead) {
+            PendingFrame head = pendingFrames.peekFirst();
+            if (head != null && waitForHead) {
+                writeFrame(pendingFrames.removeFirst());
+                head = pendingFrames.peekFirst();
+            }
+            while (head != null && head.isDone()) {
+                writeFrame(pendingFrames.removeFirst());
+                head = pendingFrames.peekFirst();
+            }
+        }
+
+        /**
+         * Writes the frame with zero duration after extending the previous sample up to the capture time of the frame.
+         * A frame repeating the previous one is only accounted for in the duration of the previous sample.
+         * <p>
+         * Delta frames following a frame which failed to be written are skipped up to the next key frame, as they
+         * depend on the missing frame. They are accounted for in the duration of the previous sample.
+         */
+        private void writeFrame(final PendingFrame pendingFrame) {
+            try {
+                if (pendingFrame.encodedFrame == null) {
+                    timeline.advanceTo(pendingFrame.captureNanos);
+                    return;
+                }
+                final EncodedFrame encodedFrame = pendingFrame.encodedFrame.join();
+                if (isAwaitingKeyFrame && !encodedFrame.isKeyFrame()) {
+                    timeline.advanceTo(pendingFrame.captureNanos);
+                    return;
+                }
+                isAwaitingKeyFrame = false;
+                timeline.writeFrame(encodedFrame, pendingFrame.captureNanos, pendingFrame.contentVersion);
+            } catch (final CompletionException e) {
+                log().error("Exception happened during encoding the video frame.", e.getCause());
+                onFailedFrame();
+            } catch (final IORuntimeException e) {
+                log().error("IO exception happened during writing the video frame.", e);
+                onFailedFrame();
+            }
+        }
+
+        /**
+         * Makes the next frame encoded even if its content did not change, so the content of the failed frame is shown
+         * again. With delta frames, the frames already passed to the encoders are skipped up to the next key frame and
+         * the next frame is encoded as a key frame.
+         */
+        private void onFailedFrame() {
+            lastContentVersion = -1;
+            if (!qos.getVideoFormat().hasDeltaFrames()) {
+                return;
+            }
+            isAwaitingKeyFrame = true;
+            if (referenceFrame != null) {
+                referenceFrame.release();
+                referenceFrame = null;
+            }
+            framesSinceKeyFrame = 0;
+        }
+    }
+
+    private static final class PendingFrame {
+
+        private final long contentVersion;
+        private final long captureNanos;
+        /**
+         * Frame being encoded, {@code null} if the frame repeats the previous one.
+         */
+        private final CompletableFuture<EncodedFrame> encodedFrame;
+
+        private PendingFrame(final long contentVersion, final long captureNanos,
+                             final CompletableFuture<EncodedFrame> encodedFrame) {
+            this.contentVersion = contentVersion;
+            this.captureNanos = captureNanos;
+            this.encodedFrame = encodedFrame;
+        }
+
+        private boolean isDone() {
+            return encodedFrame == null || encodedFrame.isDone();
+        }
+    }
+
+    private static final class EncoderThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "Recording Encoder-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+
+        @SuppressWarnings({"NonSerializableFieldInSerializableClass", "ImmutableEnumChecker"})
+        private final Logger value = getLogger(ScreenRecorder.class);
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+}
@@ -0,0 +1,197 @@
+package com.github.xsavikx.androidscreencast.api.metrics;
+
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Latency histograms of every {@link Stage} together with frame and byte counters.
+ * <p>
+ * All recording methods are lock-free and may be called from any thread. Metrics are exposed as the
+ * {@value #OBJECT_NAME} MBean once {@link #register()} is called.
+ */
+@Singleton
+public final class CaptureMetrics implements CaptureMetricsMXBean {
+
+    private static final String OBJECT_NAME = "com.github.xsavikx.androidscreencast:type=CaptureMetrics";
+    private static final double P50 = 0.5;
+    private static final double P99 = 0.99;
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private final LongAdder framesCaptured = new LongAdder();
+    private final LongAdder framesDropped = new LongAdder();
+    private final LongAdder recordingFramesDropped = new LongAdder();
+    private final LongAdder bytesCaptured = new LongAdder();
+    private volatile Map<Stage, HistogramSnapshot> resetSnapshots;
+
+    @Inject
+    public CaptureMetrics() {
+        for (Stage stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+        resetSnapshots = snapshot();
+    }
+
+    public void register() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (final JMException e) {
+            log().warn("Unable to register capture metrics MBean.", e);
+        }
+    }
+
+    public void unregister() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (final JMException e) {
+            log().warn("Unable to unregister capture metrics MBean.", e);
+        }
+    }
+
+    public void record(final Stage stage, final long nanos) {
+        histograms.get(stage).record(nanos);
+    }
+
+    public void onFrameCaptured(final int bytes) {
+        framesCaptured.increment();
+        bytesCaptured.add(bytes);
+    }
+
+    /**
+     * Counts a frame that was captured but never converted.
+     */
+    public void onFrameDropped() {
+        framesDropped.increment();
+    }
+
+    /**
+     * Counts a frame that was converted but not written to the movie.
+     */
+    public void onRecordingFrameDropped() {
+        recordingFramesDropped.increment();
+    }
+
+    /**
+     * @return current state of all histograms; subtract an earlier result to get recent latencies
+     */
+    public Map<Stage, HistogramSnapshot> snapshot() {
+        final Map<Stage, HistogramSnapshot> snapshots = new EnumMap<>(Stage.class);
+        for (Map.Entry<Stage, LatencyHistogram> entry : histograms.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return snapshots;
+    }
+
+    @Override
+    public long getFramesCaptured() {
+        return framesCaptured.sum();
+    }
+
+    @Override
+    public long getFramesDropped() {
+        return framesDropped.sum();
+    }
+
+    @Override
+    public long getRecordingFramesDropped() {
+        return recordingFramesDropped.sum();
+    }
+
+    @Override
+    public long getBytesCaptured() {
+        return bytesCaptured.sum();
+    }
+
+    @Override
+    public long getFetchP50Micros() {
+        return percentileMicros(Stage.FETCH, P50);
+    }
+
+    @Override
+    public long getFetchP99Micros() {
+        return percentileMicros(Stage.FETCH, P99);
+    }
+
+    @Override
+    public long getConvertP50Micros() {
+        return percentileMicros(Stage.CONVERT, P50);
+    }
+
+    @Override
+    public long getConvertP99Micros() {
+        return percentileMicros(Stage.CONVERT, P99);
+    }
+
+    @Override
+    public long getPaintP50Micros() {
+        return percentileMicros(Stage.PAINT, P50);
+    }
+
+    @Override
+    public long getPaintP99Micros() {
+        return percentileMicros(Stage.PAINT, P99);
+    }
+
+    @Override
+    public long getEncodeP50Micros() {
+        return percentileMicros(Stage.ENCODE, P50);
+    }
+
+    @Override
+    public long getEncodeP99Micros() {
+        return percentileMicros(Stage.ENCODE, P99);
+    }
+
+    @Override
+    public long getShellP50Micros() {
+        return percentileMicros(Stage.SHELL, P50);
+    }
+
+    @Override
+    public long getShellP99Micros() {
+        return percentileMicros(Stage.SHELL, P99);
+    }
+
+    /**
+     * Restarts latency percentiles reported through JMX. Counters and snapshots used by other consumers are not
+     * affected.
+     */
+    @Override
+    public void reset() {
+        resetSnapshots = snapshot();
+    }
+
+    private long percentileMicros(final Stage stage, final double percentile) {
+        final HistogramSnapshot sinceReset = histograms.get(stage).snapshot().minus(resetSnapshots.get(stage));
+        return TimeUnit.NANOSECONDS.toMicros(sinceReset.getPercentileNanos(percentile));
+    }
+
+    private enum LogSingleton {
+        INSTANCE;
+
+        @SuppressWarnings({"NonSerializableFieldInSerializableClass", "ImmutableEnumChecker"})
+        private final Logger value = getLogger(CaptureMetrics.class);
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.xsavikx.androidscreencast.api.metrics;
+
+/**
+ * Management interface of {@link CaptureMetrics}. Latencies are reported in microseconds since the start or the last
+ * {@link #reset()}.
+ */
+public interface CaptureMetricsMXBean {
+
+    long getFramesCaptured();
+
+    long getFramesDropped();
+
+    long getRecordingFramesDropped();
+
+    long getBytesCaptured();
+
+    long getFetchP50Micros();
+
+    long getFetchP99Micros();
+
+    long getConvertP50Micros();
+
+    long getConvertP99Micros();
+
+    long getPaintP50Micros();
+
+    long getPaintP99Micros();
+
+    long getEncodeP50Micros();
+
+    long getEncodeP99Micros();
+
+    long getShellP50Micros();
+
+    long getShellP99Micros();
+
+    void reset();
+}
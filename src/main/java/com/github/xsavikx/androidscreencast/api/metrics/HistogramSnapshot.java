@@ -0,0 +1,62 @@
+package com.github.xsavikx.androidscreencast.api.metrics;
+
+/**
+ * Immutable copy of a {@link LatencyHistogram}.
+ * <p>
+ * Snapshots taken at different moments can be subtracted to get the distribution of values recorded in between.
+ */
+public final class HistogramSnapshot {
+
+    private final long[] counts;
+    private final long totalNanos;
+    private final long count;
+
+    HistogramSnapshot(final long[] counts, final long totalNanos) {
+        this.counts = counts;
+        this.totalNanos = totalNanos;
+        long sum = 0;
+        for (long bucketCount : counts) {
+            sum += bucketCount;
+        }
+        this.count = sum;
+    }
+
+    /**
+     * @param earlier snapshot of the same histogram taken before this one
+     * @return distribution of values recorded between both snapshots
+     */
+    public HistogramSnapshot minus(final HistogramSnapshot earlier) {
+        final long[] difference = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            difference[i] = counts[i] - earlier.counts[i];
+        }
+        return new HistogramSnapshot(difference, totalNanos - earlier.totalNanos);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMeanNanos() {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * @param percentile value between 0 and 1
+     * @return value not exceeded by the given share of recorded values, {@code 0} if nothing was recorded
+     */
+    public long getPercentileNanos(final double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(count * percentile));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return LatencyHistogram.upperBoundOf(i);
+            }
+        }
+        return LatencyHistogram.upperBoundOf(counts.length - 1);
+    }
+}
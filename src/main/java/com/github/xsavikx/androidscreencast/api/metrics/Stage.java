@@ -0,0 +1,27 @@
+package com.github.xsavikx.androidscreencast.api.metrics;
+
+/**
+ * Measured steps of capturing, showing and recording the device screen and of sending input to it.
+ */
+public enum Stage {
+    /**
+     * Fetching a raw frame from the device.
+     */
+    FETCH,
+    /**
+     * Converting and comparing a raw frame.
+     */
+    CONVERT,
+    /**
+     * Painting the frame on the screen panel.
+     */
+    PAINT,
+    /**
+     * Encoding and writing a frame to the movie.
+     */
+    ENCODE,
+    /**
+     * Round trip of a shell command sent to the device.
+     */
+    SHELL
+}
@@ -0,0 +1,184 @@
+package com.github.xsavikx.androidscreencast.api.recording;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.IOException;
+
+/**
+ * Encoder of the QuickTime Animation ('rle ') codec with 24-bit depth.
+ * <p>
+ * A key frame holds all scanlines of the image. A delta frame holds only the range of scanlines which differ from the
+ * previous frame, and unchanged pixels inside of these scanlines are skipped. Changed pixels are stored as runs of a
+ * repeated color or as literal colors.
+ * <p>
+ * Sample layout: 32-bit sample size, 16-bit header (0x0008 if the scanline range follows), optional 16-bit start line,
+ * 16-bit reserved, 16-bit line count and 16-bit reserved, then every scanline as a skip byte followed by codes and the
+ * -1 terminator, and a trailing zero byte.
+ */
+final class AnimationEncoder {
+
+    private static final int PARTIAL_FRAME_HEADER = 0x0008;
+    private static final int MAX_SKIP = 254;
+    private static final int MAX_RUN = 128;
+    private static final int MAX_LITERAL = 127;
+    private static final int END_OF_LINE = -1;
+    private int[] currentRow = new int[0];
+    private int[] previousRow = new int[0];
+
+    /**
+     * @param image    frame to encode
+     * @param previous previously encoded frame of the same size, {@code null} to encode a key frame
+     * @param out      output, written from the current position
+     */
+    void encode(final BufferedImage image, final BufferedImage previous, final ByteArrayImageOutputStream out)
+            throws IOException {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        if (currentRow.length < width) {
+            currentRow = new int[width];
+            previousRow = new int[width];
+        }
+        int startLine = 0;
+        int endLine = height;
+        if (previous != null) {
+            while (startLine < height && rowsEqual(image, previous, startLine, width)) {
+                startLine++;
+            }
+            while (endLine > startLine && rowsEqual(image, previous, endLine - 1, width)) {
+                endLine--;
+            }
+        }
+        final long sampleStart = out.getStreamPosition();
+        out.writeInt(0); // sample size, patched when the sample is complete
+        if (startLine == 0 && endLine == height) {
+            out.writeShort(0);
+        } else {
+            out.writeShort(PARTIAL_FRAME_HEADER);
+            out.writeShort(startLine);
+            out.writeShort(0);
+            out.writeShort(endLine - startLine);
+            out.writeShort(0);
+        }
+        for (int y = startLine; y < endLine; y++) {
+            final int[] current = row(image, y, width, currentRow);
+            final int[] before = previous == null ? null : row(previous, y, width, previousRow);
+            encodeLine(current, before, width, out);
+        }
+        out.write(0);
+        final long sampleEnd = out.getStreamPosition();
+        out.seek(sampleStart);
+        out.writeInt((int) (sampleEnd - sampleStart));
+        out.seek(sampleEnd);
+    }
+
+    private boolean rowsEqual(final BufferedImage image, final BufferedImage previous, final int y, final int width) {
+        final int[] current = row(image, y, width, currentRow);
+        final int[] before = row(previous, y, width, previousRow);
+        for (int x = 0; x < width; x++) {
+            if (((current[x] ^ before[x]) & 0xFFFFFF) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void encodeLine(final int[] current, final int[] previous, final int width,
+                                   final ByteArrayImageOutputStream out) throws IOException {
+        int x = 0;
+        int skip = unchangedPixels(current, previous, 0, width);
+        // the first skip of a line has no code, further skips are written after a zero code
+        out.write(Math.min(skip, MAX_SKIP) + 1);
+        x += Math.min(skip, MAX_SKIP);
+        skip -= Math.min(skip, MAX_SKIP);
+        while (x < width) {
+            if (skip == 0) {
+                skip = unchangedPixels(current, previous, x, width);
+            }
+            if (skip > 0) {
+                if (x + skip == width) {
+                    break;
+                }
+                final int chunk = Math.min(skip, MAX_SKIP);
+                out.write(0);
+                out.write(chunk + 1);
+                x += chunk;
+                skip -= chunk;
+                continue;
+            }
+            final int run = runLength(current, x, width);
+            if (run >= 2) {
+                out.write(-run);
+                writePixel(current[x], out);
+                x += run;
+                continue;
+            }
+            int literal = 1;
+            while (x + literal < width && literal < MAX_LITERAL
+                    && unchangedPixels(current, previous, x + literal, x + literal + 1) == 0
+                    && runLength(current, x + literal, width) < 2) {
+                literal++;
+            }
+            out.write(literal);
+            for (int i = 0; i < literal; i++) {
+                writePixel(current[x + i], out);
+            }
+            x += literal;
+        }
+        out.write(END_OF_LINE);
+    }
+
+    /**
+     * @return amount of pixels starting at {@code from} which did not change since the previous frame
+     */
+    private static int unchangedPixels(final int[] current, final int[] previous, final int from, final int to) {
+        if (previous == null) {
+            return 0;
+        }
+        int x = from;
+        while (x < to && ((current[x] ^ previous[x]) & 0xFFFFFF) == 0) {
+            x++;
+        }
+        return x - from;
+    }
+
+    /**
+     * @return amount of pixels starting at {@code from} with the same color, at most {@link #MAX_RUN}
+     */
+    private static int runLength(final int[] current, final int from, final int width) {
+        final int color = current[from] & 0xFFFFFF;
+        final int to = Math.min(width, from + MAX_RUN);
+        int x = from + 1;
+        while (x < to && (current[x] & 0xFFFFFF) == color) {
+            x++;
+        }
+        return x - from;
+    }
+
+    private static void writePixel(final int rgb, final ByteArrayImageOutputStream out) throws IOException {
+        out.write(rgb >> 16);
+        out.write(rgb >> 8);
+        out.write(rgb);
+    }
+
+    /**
+     * Returns pixels of a scanline, directly from the image buffer for packed integer images.
+     */
+    private static int[] row(final BufferedImage image, final int y, final int width, final int[] buffer) {
+        final Raster raster = image.getRaster();
+        if (raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0) {
+            final SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+            final DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+            if (sampleModel.getScanlineStride() == width && dataBuffer.getOffset() == 0
+                    && dataBuffer.getNumBanks() == 1 && image.getType() == BufferedImage.TYPE_INT_RGB) {
+                System.arraycopy(dataBuffer.getData(), y * width, buffer, 0, width);
+                return buffer;
+            }
+        }
+        image.getRGB(0, y, width, 1, buffer, 0, width);
+        return buffer;
+    }
+}
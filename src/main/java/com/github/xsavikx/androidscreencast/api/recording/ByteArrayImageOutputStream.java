@@ -0,0 +1,88 @@
+package com.github.xsavikx.androidscreencast.api.recording;
+
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Seekable in-memory image output stream which keeps its buffer between uses.
+ * <p>
+ * Unlike {@link javax.imageio.stream.MemoryCacheImageOutputStream} it does not need an underlying stream and may be
+ * {@link #reset() reset} to encode the next image into the same buffer.
+ */
+final class ByteArrayImageOutputStream extends ImageOutputStreamImpl {
+
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int count;
+
+    @Override
+    public int read() {
+        bitOffset = 0;
+        if (streamPos >= count) {
+            return -1;
+        }
+        return buffer[(int) streamPos++] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) {
+        bitOffset = 0;
+        if (streamPos >= count) {
+            return -1;
+        }
+        final int n = Math.min(len, count - (int) streamPos);
+        System.arraycopy(buffer, (int) streamPos, b, off, n);
+        streamPos += n;
+        return n;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        flushBits();
+        ensureCapacity(streamPos + 1);
+        buffer[(int) streamPos++] = (byte) b;
+        count = Math.max(count, (int) streamPos);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        flushBits();
+        ensureCapacity(streamPos + len);
+        System.arraycopy(b, off, buffer, (int) streamPos, len);
+        streamPos += len;
+        count = Math.max(count, (int) streamPos);
+    }
+
+    @Override
+    public long length() {
+        return count;
+    }
+
+    /**
+     * Discards written data, keeping the allocated buffer.
+     */
+    @Override
+    public void reset() {
+        count = 0;
+        streamPos = 0;
+        bitOffset = 0;
+        flushedPos = 0;
+    }
+
+    /**
+     * @return copy of the written data
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+
+    private void ensureCapacity(final long capacity) {
+        if (capacity > Integer.MAX_VALUE - 8) {
+            throw new OutOfMemoryError("Encoded image is too large: " + capacity + " bytes");
+        }
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, (int) Math.max(capacity, buffer.length * 2L));
+        }
+    }
+}
@@ -65,6 +65,20 @@ public final class DataAtomOutputStream extends FilterOutputStream {
         incCount(len);
     }
 
+    /**
+     * Counts bytes written directly to the underlying file at the current position of this stream, bypassing the stream. The caller is responsible for
+     * moving the position of the underlying stream past the written bytes.
+     *
+     * @param len the number of bytes written.
+     */
+    public void countWrittenDirectly(long len) {
+        long temp = written + len;
+        if (temp < 0) {
+            temp = Long.MAX_VALUE;
+        }
+        written = temp;
+    }
+
     /**
      * Writes the specified byte (the low eight bits of the argument <code>b</code>) to the underlying output stream. If no exception is thrown, the
      * counter <code>written</code> is incremented by <code>1</code> .
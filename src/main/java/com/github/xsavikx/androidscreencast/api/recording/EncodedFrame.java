@@ -0,0 +1,56 @@
+package com.github.xsavikx.androidscreencast.api.recording;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Video frame compressed by {@link QuickTimeOutputStream#encodeFrame(java.awt.image.BufferedImage)} and ready to be
+ * appended to the movie.
+ */
+public final class EncodedFrame {
+
+    private final int width;
+    private final int height;
+    private final ByteBuffer data;
+    private final boolean keyFrame;
+
+    EncodedFrame(int width, int height, byte[] data, boolean keyFrame) {
+        this(width, height, ByteBuffer.wrap(data), keyFrame);
+    }
+
+    /**
+     * @param data sample data between its position and limit, which must stay unchanged until the stream the frame is
+     *             written to is finished, as samples of movie fragments are written later
+     */
+    EncodedFrame(int width, int height, ByteBuffer data, boolean keyFrame) {
+        this.width = width;
+        this.height = height;
+        this.data = data.slice();
+        this.keyFrame = keyFrame;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return sample data in the video format of the stream that encoded the frame
+     */
+    ByteBuffer getData() {
+        return data.duplicate();
+    }
+
+    /**
+     * @return whether the frame can be decoded without the previous frame
+     */
+    public boolean isKeyFrame() {
+        return keyFrame;
+    }
+
+    public int getLength() {
+        return data.remaining();
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.xsavikx.androidscreencast.api.recording;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+
+/**
+ * Encoder state of a single thread: image writer, its parameters and output buffers are created once and reused for
+ * every frame.
+ */
+final class FrameEncoder {
+
+    private final QuickTimeOutputStream.VideoFormat videoFormat;
+    private final ImageWriter imageWriter;
+    private final ImageWriteParam writeParam;
+    private final ByteArrayImageOutputStream output = new ByteArrayImageOutputStream();
+    private final AnimationEncoder animationEncoder = new AnimationEncoder();
+    /**
+     * Scanline of raw image data with 3 channels of 32 bit data, used for images which are not packed integer RGB.
+     */
+    private int[] rawScanline = new int[0];
+
+    FrameEncoder(final QuickTimeOutputStream.VideoFormat videoFormat) {
+        this.videoFormat = videoFormat;
+        switch (videoFormat) {
+            case JPG:
+                imageWriter = ImageIO.getImageWritersByMIMEType("image/jpeg").next();
+                writeParam = imageWriter.getDefaultWriteParam();
+                writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                break;
+            case PNG:
+                imageWriter = ImageIO.getImageWritersByMIMEType("image/png").next();
+                writeParam = imageWriter.getDefaultWriteParam();
+                break;
+            default:
+                imageWriter = null;
+                writeParam = null;
+                break;
+        }
+    }
+
+    /**
+     * @param image    frame to encode
+     * @param previous previously encoded frame, used only by formats with delta frames, {@code null} for a key frame
+     * @param quality  compression quality of JPEG frames
+     */
+    EncodedFrame encode(final BufferedImage image, final BufferedImage previous, final float quality)
+            throws IOException {
+        output.reset();
+        boolean keyFrame = true;
+        if (videoFormat == QuickTimeOutputStream.VideoFormat.RLE) {
+            final boolean delta = previous != null
+                    && previous.getWidth() == image.getWidth() && previous.getHeight() == image.getHeight();
+            animationEncoder.encode(image, delta ? previous : null, output);
+            keyFrame = !delta;
+        } else if (imageWriter == null) {
+            return new EncodedFrame(image.getWidth(), image.getHeight(), encodeRaw(image), true);
+        } else {
+            if (videoFormat == QuickTimeOutputStream.VideoFormat.JPG) {
+                writeParam.setCompressionQuality(quality);
+            }
+            imageWriter.setOutput(output);
+            imageWriter.write(null, new IIOImage(image, null, null), writeParam);
+        }
+        return new EncodedFrame(image.getWidth(), image.getHeight(), output.toByteArray(), keyFrame);
+    }
+
+    /**
+     * Packs pixels into 8-bit RGB triplets. Pixels of packed integer RGB images are read directly from the data buffer.
+     */
+    private byte[] encodeRaw(final BufferedImage image) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final byte[] data = new byte[width * height * 3];
+        final WritableRaster raster = image.getRaster();
+        if (image.getType() == BufferedImage.TYPE_INT_RGB && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0) {
+            final int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+            final int pixelOffset = raster.getDataBuffer().getOffset();
+            final int scanlineStride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+            int k = 0;
+            for (int y = 0; y < height; y++) {
+                final int rowStart = pixelOffset + y * scanlineStride;
+                for (int x = rowStart; x < rowStart + width; x++) {
+                    final int rgb = pixels[x];
+                    data[k++] = (byte) (rgb >> 16);
+                    data[k++] = (byte) (rgb >> 8);
+                    data[k++] = (byte) rgb;
+                }
+            }
+            return data;
+        }
+        final int n = width * 3;
+        if (rawScanline.length != n) {
+            rawScanline = new int[n];
+        }
+        for (int y = 0; y < height; y++) {
+            raster.getPixels(0, y, width, 1, rawScanline);
+            for (int k = 0; k < n; k++) {
+                data[y * n + k] = (byte) rawScanline[k];
+            }
+        }
+        return data;
+    }
+
+    void dispose() {
+        if (imageWriter != null) {
+            imageWriter.dispose();
+        }
+    }
+}
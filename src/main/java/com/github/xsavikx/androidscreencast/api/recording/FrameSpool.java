@@ -0,0 +1,434 @@
+package com.github.xsavikx.androidscreencast.api.recording;
+
+import com.github.xsavikx.androidscreencast.exception.IORuntimeException;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Spool file keeping captured frames uncompressed until they are encoded into a movie.
+ * <p>
+ * Appending a frame is a plain memory copy into a memory-mapped window of the file, so frames can be spooled at capture
+ * speed whatever the video format of the movie is. The spool is transcoded once the recording is stopped, see
+ * {@link Reader}. Optionally pixels are deflated with the fastest compression level, which trades some CPU time for
+ * several times smaller spool files.
+ * <p>
+ * The file starts with a header of 12 bytes: magic number, version and flags. Every record then has a header of 32
+ * bytes: type, capture time, content fingerprint, width, height and length of the pixel data following the header.
+ * Pixels are stored as big-endian {@code xRGB} integers, or as deflated {@code RGB} triplets if compression is enabled.
+ */
+public final class FrameSpool implements Closeable {
+
+    private static final int MAGIC = 0x53504f4c;
+    private static final int VERSION = 1;
+    private static final int FLAG_COMPRESSED = 1;
+    private static final int FILE_HEADER_SIZE = 12;
+    private static final int RECORD_HEADER_SIZE = 32;
+    /**
+     * Size of the file region mapped at once. Records never span two regions.
+     */
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    /**
+     * Type of the zero-filled space after the last record.
+     */
+    private static final int RECORD_END = 0;
+    private static final int RECORD_FRAME = 1;
+    private static final int RECORD_REPEAT = 2;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final boolean compressed;
+    private final Deflater deflater;
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private int[] row = new int[0];
+    private byte[] rgb = new byte[0];
+    private byte[] deflated = new byte[0];
+    private int frameCount;
+    private boolean closed;
+
+    private FrameSpool(File file, boolean compressed) throws IOException {
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        this.compressed = compressed;
+        this.deflater = compressed ? new Deflater(Deflater.BEST_SPEED) : null;
+        try {
+            channel.truncate(0);
+            ensureCapacity(FILE_HEADER_SIZE);
+            segment.putInt(MAGIC).putInt(VERSION).putInt(compressed ? FLAG_COMPRESSED : 0);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a new spool file, replacing the content of an existing file.
+     *
+     * @param file       the spool file
+     * @param compressed whether pixels are deflated
+     * @return spool ready to append frames
+     * @throws IOException if the file can't be created
+     */
+    public static FrameSpool create(File file, boolean compressed) throws IOException {
+        return new FrameSpool(file, compressed);
+    }
+
+    /**
+     * Opens a spool file for transcoding.
+     *
+     * @param file the spool file
+     * @return reader positioned before the first record
+     * @throws IOException if the file can't be opened or is not a spool file
+     */
+    public static Reader open(File file) throws IOException {
+        return new Reader(file);
+    }
+
+    /**
+     * Appends a frame.
+     *
+     * @param image        the frame image, copied before the method returns
+     * @param captureNanos {@link System#nanoTime()} when the frame was captured
+     * @param fingerprint  value identifying the frame content
+     * @throws IORuntimeException if the spool file can't be extended
+     */
+    public void appendFrame(BufferedImage image, long captureNanos, long fingerprint) {
+        checkState(!closed, "Spool is closed.");
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        if (compressed) {
+            final int length = deflate(image);
+            writeRecordHeader(RECORD_FRAME, captureNanos, fingerprint, width, height, length);
+            segment.put(deflated, 0, length);
+        } else {
+            writeRecordHeader(RECORD_FRAME, captureNanos, fingerprint, width, height, width * height * 4);
+            final IntBuffer pixels = segment.asIntBuffer();
+            final WritableRaster raster = image.getRaster();
+            if (isPackedRgb(image)) {
+                final int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+                final int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+                int rowStart = raster.getDataBuffer().getOffset();
+                for (int y = 0; y < height; y++, rowStart += stride) {
+                    pixels.put(data, rowStart, width);
+                }
+            } else {
+                ensureRow(width);
+                for (int y = 0; y < height; y++) {
+                    image.getRGB(0, y, width, 1, row, 0, width);
+                    pixels.put(row, 0, width);
+                }
+            }
+            segment.position(segment.position() + width * height * 4);
+        }
+        frameCount++;
+    }
+
+    /**
+     * Appends a frame which repeats the content of the previous one, only its capture time is stored.
+     *
+     * @param captureNanos {@link System#nanoTime()} when the frame was captured
+     * @throws IORuntimeException if the spool file can't be extended
+     */
+    public void appendRepeat(long captureNanos) {
+        checkState(!closed, "Spool is closed.");
+        writeRecordHeader(RECORD_REPEAT, captureNanos, 0, 0, 0, 0);
+    }
+
+    /**
+     * @return amount of frames with content appended so far, repeated frames are not counted
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Cuts the file after the last record and closes it.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (deflater != null) {
+            deflater.end();
+        }
+        final long length = segmentStart + segment.position();
+        segment = null;
+        try {
+            channel.truncate(length);
+        } catch (IOException e) {
+            // Some platforms don't allow to truncate mapped files, the zero-filled tail reads as the end of records.
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void writeRecordHeader(int type, long captureNanos, long fingerprint, int width, int height, int length) {
+        try {
+            ensureCapacity(RECORD_HEADER_SIZE + (long) length);
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+        segment.putInt(type).putLong(captureNanos).putLong(fingerprint).putInt(width).putInt(height).putInt(length);
+    }
+
+    /**
+     * Maps a new region of the file starting at the current position if the current one can't hold the given amount of
+     * bytes.
+     */
+    private void ensureCapacity(long size) throws IOException {
+        if (segment != null && segment.remaining() >= size) {
+            return;
+        }
+        final long position = segment == null ? 0 : segmentStart + segment.position();
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(SEGMENT_SIZE, size));
+        segmentStart = position;
+    }
+
+    private int deflate(BufferedImage image) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int size = width * height * 3;
+        if (rgb.length < size) {
+            rgb = new byte[size];
+            // Incompressible input grows by a few bytes per 16 KiB block.
+            deflated = new byte[size + size / 1000 + 64];
+        }
+        ensureRow(width);
+        int k = 0;
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                final int pixel = row[x];
+                rgb[k++] = (byte) (pixel >>> 16);
+                rgb[k++] = (byte) (pixel >>> 8);
+                rgb[k++] = (byte) pixel;
+            }
+        }
+        deflater.reset();
+        deflater.setInput(rgb, 0, size);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == deflated.length) {
+                deflated = Arrays.copyOf(deflated, deflated.length * 2);
+            }
+            length += deflater.deflate(deflated, length, deflated.length - length);
+        }
+        return length;
+    }
+
+    private void ensureRow(int width) {
+        if (row.length < width) {
+            row = new int[width];
+        }
+    }
+
+    private static boolean isPackedRgb(BufferedImage image) {
+        final WritableRaster raster = image.getRaster();
+        return image.getType() == BufferedImage.TYPE_INT_RGB && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+    }
+
+    /**
+     * Sequential reader of a spool file.
+     * <p>
+     * Images are decoded into two alternating buffers, so the image returned by the previous call of
+     * {@link #readImage()} stays intact and can serve as the reference of a delta frame.
+     */
+    public static final class Reader implements Closeable {
+
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+        private final long fileLength;
+        private final boolean compressed;
+        private final Inflater inflater;
+        private final BufferedImage[] images = new BufferedImage[2];
+        private MappedByteBuffer segment;
+        private long segmentStart;
+        private int type;
+        private long captureNanos;
+        private long fingerprint;
+        private int width;
+        private int height;
+        private int length;
+        private boolean dataRead = true;
+        private int nextImage;
+        private byte[] input = new byte[0];
+        private byte[] rgb = new byte[0];
+
+        private Reader(File file) throws IOException {
+            this.raf = new RandomAccessFile(file, "r");
+            this.channel = raf.getChannel();
+            try {
+                this.fileLength = channel.size();
+                if (fileLength < FILE_HEADER_SIZE) {
+                    throw new IOException("Spool file is too short: " + file);
+                }
+                ensureAvailable(FILE_HEADER_SIZE);
+                final int magic = segment.getInt();
+                final int version = segment.getInt();
+                if (magic != MAGIC || version != VERSION) {
+                    throw new IOException("Not a spool file: " + file);
+                }
+                this.compressed = (segment.getInt() & FLAG_COMPRESSED) != 0;
+            } catch (IOException e) {
+                raf.close();
+                throw e;
+            }
+            this.inflater = compressed ? new Inflater() : null;
+        }
+
+        /**
+         * Moves to the next record, skipping pixels of the current one if they were not read.
+         *
+         * @return {@code false} if there are no more records
+         * @throws IOException if the file can't be read
+         */
+        public boolean next() throws IOException {
+            if (!dataRead) {
+                segment.position(segment.position() + length);
+                dataRead = true;
+            }
+            if (!ensureAvailable(RECORD_HEADER_SIZE)) {
+                return false;
+            }
+            type = segment.getInt();
+            if (type == RECORD_END) {
+                return false;
+            }
+            captureNanos = segment.getLong();
+            fingerprint = segment.getLong();
+            width = segment.getInt();
+            height = segment.getInt();
+            length = segment.getInt();
+            if (length < 0 || !ensureAvailable(length)) {
+                throw new IOException("Spool record is truncated.");
+            }
+            dataRead = type != RECORD_FRAME;
+            return true;
+        }
+
+        /**
+         * @return {@code true} if the current record repeats the content of the previous frame and has no image
+         */
+        public boolean isRepeat() {
+            return type == RECORD_REPEAT;
+        }
+
+        public long getCaptureNanos() {
+            return captureNanos;
+        }
+
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * Decodes the image of the current record.
+         *
+         * @return the frame image, valid until the next but one call of this method
+         * @throws IOException if the pixel data is corrupted
+         */
+        public BufferedImage readImage() throws IOException {
+            checkState(type == RECORD_FRAME && !dataRead, "Current record has no image to read.");
+            checkArgument(width > 0 && height > 0, "Invalid frame size %sx%s", width, height);
+            BufferedImage image = images[nextImage];
+            if (image == null || image.getWidth() != width || image.getHeight() != height) {
+                image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                images[nextImage] = image;
+            }
+            nextImage ^= 1;
+            final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            if (compressed) {
+                inflate(pixels);
+            } else {
+                if (length != width * height * 4) {
+                    throw new IOException("Unexpected length of frame pixels: " + length);
+                }
+                segment.asIntBuffer().get(pixels, 0, width * height);
+                segment.position(segment.position() + length);
+            }
+            dataRead = true;
+            return image;
+        }
+
+        /**
+         * @return part of the file read so far, in percent
+         */
+        public int getProgress() {
+            final long position = segment == null ? 0 : segmentStart + segment.position();
+            return (int) (position * 100 / fileLength);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (inflater != null) {
+                inflater.end();
+            }
+            segment = null;
+            raf.close();
+        }
+
+        private void inflate(int[] pixels) throws IOException {
+            final int size = width * height * 3;
+            if (input.length < length) {
+                input = new byte[length];
+            }
+            if (rgb.length < size) {
+                rgb = new byte[size];
+            }
+            segment.get(input, 0, length);
+            inflater.reset();
+            inflater.setInput(input, 0, length);
+            try {
+                if (inflater.inflate(rgb, 0, size) != size || !inflater.finished()) {
+                    throw new IOException("Unexpected length of frame pixels.");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Frame pixels are corrupted.", e);
+            }
+            for (int i = 0, k = 0; i < width * height; i++, k += 3) {
+                pixels[i] = (rgb[k] & 0xff) << 16 | (rgb[k + 1] & 0xff) << 8 | rgb[k + 2] & 0xff;
+            }
+        }
+
+        /**
+         * Maps a new region of the file starting at the current position if the current one has less than the given
+         * amount of bytes left.
+         *
+         * @return {@code false} if the file ends earlier
+         */
+        private boolean ensureAvailable(long size) throws IOException {
+            if (segment != null && segment.remaining() >= size) {
+                return true;
+            }
+            final long position = segment == null ? 0 : segmentStart + segment.position();
+            if (fileLength - position < size) {
+                return false;
+            }
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(fileLength - position, Math.max(SEGMENT_SIZE, size)));
+            segmentStart = position;
+            return true;
+        }
+    }
+}
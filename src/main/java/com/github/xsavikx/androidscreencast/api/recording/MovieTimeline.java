@@ -0,0 +1,57 @@
+package com.github.xsavikx.androidscreencast.api.recording;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Places frames on the time line of a movie by their capture timestamps.
+ * <p>
+ * Every frame is written with zero duration, the previous sample is extended up to the capture time of the next frame
+ * instead. A sample lasts at least one time unit even if the next frame was captured earlier, the difference is taken
+ * from the next sample. Time line starts at the capture time of the first written frame.
+ */
+public final class MovieTimeline {
+
+    private final QuickTimeOutputStream qos;
+    private long firstCaptureNanos;
+    /**
+     * End of the last written sample in time scale units, {@code -1} until the first frame is written.
+     */
+    private long trackDuration = -1;
+
+    public MovieTimeline(QuickTimeOutputStream qos) {
+        this.qos = qos;
+    }
+
+    /**
+     * Extends the previous sample up to the capture time of the frame and appends the frame.
+     *
+     * @param frame        The frame encoded by the stream.
+     * @param captureNanos {@link System#nanoTime()} when the frame was captured.
+     * @param fingerprint  Value identifying the frame content.
+     */
+    public void writeFrame(EncodedFrame frame, long captureNanos, long fingerprint) {
+        advanceTo(captureNanos);
+        qos.writeFrame(frame, 0, fingerprint);
+        if (trackDuration < 0) {
+            firstCaptureNanos = captureNanos;
+            trackDuration = 0;
+        }
+    }
+
+    /**
+     * Extends the last written sample up to the given moment. Does nothing until the first frame is written.
+     *
+     * @param nanos {@link System#nanoTime()} of the moment, for example the capture time of a frame repeating the
+     *              previous one or the end of the recording.
+     */
+    public void advanceTo(long nanos) {
+        if (trackDuration < 0) {
+            return;
+        }
+        final long position = Math.round(
+                (nanos - firstCaptureNanos) * (double) qos.getTimeScale() / TimeUnit.SECONDS.toNanos(1));
+        final long duration = Math.max(1, position - trackDuration);
+        qos.extendLastFrame((int) duration);
+        trackDuration += duration;
+    }
+}
@@ -6,24 +6,21 @@ import com.github.xsavikx.androidscreencast.api.recording.atom.DataAtom;
 import com.github.xsavikx.androidscreencast.api.recording.atom.WideDataAtom;
 import com.github.xsavikx.androidscreencast.api.recording.exception.OutputStreamAlreadyClosedException;
 import com.github.xsavikx.androidscreencast.exception.IORuntimeException;
+import com.google.common.io.ByteStreams;
 
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
 import javax.imageio.stream.FileImageOutputStream;
 import javax.imageio.stream.ImageOutputStream;
-import javax.imageio.stream.MemoryCacheImageOutputStream;
 import java.awt.image.BufferedImage;
-import java.awt.image.WritableRaster;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.util.Date;
-import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import static com.github.xsavikx.androidscreencast.api.recording.atom.AtomType.*;
 import static com.google.common.base.Preconditions.*;
-import static com.google.common.collect.Lists.newLinkedList;
 
 /**
  * Implementation of QuickTime video encoder.
@@ -34,11 +31,30 @@ public final class QuickTimeOutputStream {
     private static final int UNSPECIFIED = -1;
     private static final float DEFAULT_QUALITY = 0.9f;
     private static final int DEFAULT_TIME_SCALE = 600;
+    private static final int SYNC_SAMPLE_FLAGS = 0x02000000;
+    private static final int NON_SYNC_SAMPLE_FLAGS = 0x01010000;
+    /**
+     * Size of a movie fragment atom without its track run table: headers of the movie fragment (8), movie fragment header (16), track fragment (8),
+     * track fragment header (16) and track fragment run (20) atoms.
+     */
+    private static final long MOVIE_FRAGMENT_FIXED_SIZE = 68;
+    /**
+     * Size of the header of a media data atom, including the preceding 'wide' atom or the extended size.
+     */
+    private static final long MEDIA_DATA_HEADER_SIZE = 16;
 
     /**
      * Output stream of the QuickTimeOutputStream.
      */
     private final ImageOutputStream out;
+    /**
+     * Channel of the output file, used to write sample data in bulk.
+     */
+    private final FileChannel channel;
+    /**
+     * Reusable buffer passing sample data to the channel, grown to fit the largest sample.
+     */
+    private ByteBuffer sampleBuffer = ByteBuffer.allocateDirect(0);
     /**
      * Current video format.
      */
@@ -69,13 +85,54 @@ public final class QuickTimeOutputStream {
      */
     private States state = States.FINISHED;
     /**
-     * List of video frames.
+     * Sample table of the video track.
      */
-    private LinkedList<Sample> videoFrames;
+    private final SampleTable videoFrames = new SampleTable();
     /**
      * This atom holds the movie frames.
      */
     private WideDataAtom mdatAtom;
+    /**
+     * Amount of samples in a movie fragment. The value 0 disables fragmentation.
+     */
+    private int fragmentLength;
+    /**
+     * Offset of the space reserved for the movie fragment atom of the current fragment.
+     */
+    private long fragmentOffset;
+    /**
+     * Media data atom receiving the samples of the current fragment, {@code null} if no fragment is started.
+     */
+    private WideDataAtom fragmentDataAtom;
+    /**
+     * Sequence number of the last written movie fragment.
+     */
+    private int fragmentSequenceNumber;
+    /**
+     * Whether the movie atom of a fragmented movie has been written.
+     */
+    private boolean movieWritten;
+    /**
+     * Position of the fragment duration field in the movie extends header atom.
+     */
+    private long fragmentDurationPosition;
+    /**
+     * Duration of all written movie fragments in time scale units.
+     */
+    private long fragmentedDuration;
+    /**
+     * Content fingerprint of the last written sample, valid if {@link #hasLastFingerprint} is set.
+     */
+    private long lastFingerprint;
+    private boolean hasLastFingerprint;
+    /**
+     * Encoders of all threads which have encoded frames, disposed when the stream is closed.
+     */
+    private final Queue<FrameEncoder> createdFrameEncoders = new ConcurrentLinkedQueue<>();
+    /**
+     * Encoder state of the current thread.
+     */
+    private final ThreadLocal<FrameEncoder> frameEncoders = ThreadLocal.withInitial(this::createFrameEncoder);
 
     /**
      * Creates a new output stream with the specified image videoFormat and framerate.
@@ -88,9 +145,16 @@ public final class QuickTimeOutputStream {
         checkNotNull(file, "Result file should not be null.");
         checkNotNull(format, "Video format must not be null.");
         Files.deleteIfExists(file.toPath());
-        out = new FileImageOutputStream(file);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        out = new FileImageOutputStream(raf);
+        channel = raf.getChannel();
         this.videoFormat = format;
-        this.videoFrames = newLinkedList();
+    }
+
+    private FrameEncoder createFrameEncoder() {
+        final FrameEncoder frameEncoder = new FrameEncoder(videoFormat);
+        createdFrameEncoders.add(frameEncoder);
+        return frameEncoder;
     }
 
     /**
@@ -107,6 +171,10 @@ public final class QuickTimeOutputStream {
                 throw new IORuntimeException(e);
             }
             state = States.CLOSED;
+            FrameEncoder frameEncoder;
+            while ((frameEncoder = createdFrameEncoders.poll()) != null) {
+                frameEncoder.dispose();
+            }
         }
     }
 
@@ -128,11 +196,17 @@ public final class QuickTimeOutputStream {
         if (state != States.STARTED) {
             creationTime = new Date();
             writeProlog();
-            mdatAtom = new WideDataAtom(MEDIA_DATA, out);
+            if (!isFragmented()) {
+                mdatAtom = new WideDataAtom(MEDIA_DATA, out);
+            }
             state = States.STARTED;
         }
     }
 
+    private boolean isFragmented() {
+        return fragmentLength > 0;
+    }
+
     /**
      * Finishes writing the contents of the QuickTime output stream without closing the underlying stream. Use this method when applying multiple
      * filters in succession to the same output stream.
@@ -144,13 +218,33 @@ public final class QuickTimeOutputStream {
         if (state != States.FINISHED) {
             checkState(imgWidth != UNSPECIFIED && imgHeight != UNSPECIFIED,
                     "Image width and height must be specified, but were: width=%s, height=%s", imgWidth, imgHeight);
-            mdatAtom.finish();
-            writeEpilog();
+            if (isFragmented()) {
+                if (!movieWritten) {
+                    writeMovie();
+                }
+                writeFragment();
+                movieWritten = false;
+                fragmentSequenceNumber = 0;
+                fragmentedDuration = 0;
+            } else {
+                mdatAtom.finish();
+                writeEpilog();
+            }
             state = States.FINISHED;
             imgWidth = imgHeight = UNSPECIFIED;
+            hasLastFingerprint = false;
         }
     }
 
+    /**
+     * Returns the video format of this stream.
+     *
+     * @return video format
+     */
+    public VideoFormat getVideoFormat() {
+        return videoFormat;
+    }
+
     /**
      * Returns the time scale of this media.
      *
@@ -199,6 +293,38 @@ public final class QuickTimeOutputStream {
         this.quality = quality;
     }
 
+    /**
+     * Returns the amount of samples in a movie fragment.
+     *
+     * @return fragment length, 0 if the movie is not fragmented
+     */
+    public int getFragmentLength() {
+        return fragmentLength;
+    }
+
+    /**
+     * Sets the amount of samples in a movie fragment.
+     * <p>
+     * A non-fragmented movie keeps the whole sample table in memory and writes the movie atom when the stream is finished, so it cannot be played if
+     * writing is interrupted. A fragmented movie writes the movie atom before the first sample and then appends movie fragments ('moof' and 'mdat'
+     * atoms) holding the given amount of samples each. Sample data is written as it arrives into the media data atom of the fragment. Space for the
+     * movie fragment atom is reserved ahead of it and filled in once the fragment is complete, so only the sample table of the current fragment is
+     * kept in memory, and an interrupted recording loses at most one fragment.
+     * <p>
+     * With formats with delta frames a full fragment is extended up to the next key frame, so every fragment starts with a key frame and can be
+     * decoded on its own. Writing a key frame at least every fragment length samples keeps fragments at the given length. A fragment is extended up
+     * to twice the given length at most.
+     * <p>
+     * The value can only be changed before the first frame is written. The default value is 0, which disables fragmentation.
+     *
+     * @param fragmentLength amount of samples in a fragment, 0 to disable fragmentation
+     */
+    public void setFragmentLength(int fragmentLength) {
+        checkArgument(fragmentLength >= 0, "fragmentLength must not be negative, but was %s", fragmentLength);
+        checkState(state != States.STARTED, "Fragment length can not be changed after the first frame was written.");
+        this.fragmentLength = fragmentLength;
+    }
+
     /**
      * Sets the dimension of the video track.
      * <p>
@@ -217,22 +343,275 @@ public final class QuickTimeOutputStream {
     }
 
     private void writeEpilog() {
+        writeMovie();
+    }
+
+    /**
+     * Writes the movie atom describing the samples of the sample table. The movie atom of a fragmented movie is written before the first fragment,
+     * so it describes no samples and declares that the movie is extended by fragments.
+     */
+    private void writeMovie() {
         try {
             Date modificationTime = new Date();
-            int duration = 0;
-            for (Sample s : videoFrames) {
-                duration += s.duration;
-            }
+            // durations are unsigned 32-bit values in the movie atoms
+            int duration = (int) videoFrames.getTotalDuration();
             /* Movie Atom */
             CompositeAtom movieAtom = new CompositeAtom(MOVIE, out);
             movieAtom.add(createMovieHeaderAtom(modificationTime, duration, out));
             movieAtom.add(createTrackAtom(modificationTime, duration, out));
+            if (isFragmented()) {
+                movieAtom.add(createMovieExtendsAtom(out));
+                movieWritten = true;
+            }
             movieAtom.finish();
         } catch (IOException e) {
             throw new IORuntimeException(e);
         }
     }
 
+    /**
+     * Movie Extends Atom
+     * Warns readers that the movie may contain movie fragments, and sets up default values of the track fragments.
+     *
+     * @param out ImageOutputStream for this data atom
+     * @return filled Movie Extends Atom
+     * @throws IOException if any write operation fails
+     */
+    private CompositeAtom createMovieExtendsAtom(ImageOutputStream out) throws IOException {
+        CompositeAtom movieExtendsAtom = new CompositeAtom(MOVIE_EXTENDS, out);
+        movieExtendsAtom.add(createMovieExtendsHeaderAtom(out));
+        movieExtendsAtom.add(createTrackExtendsAtom(out));
+        return movieExtendsAtom;
+    }
+
+    /**
+     * Movie Extends Header Atom
+     * Holds the overall duration of the fragmented movie. The duration is updated after every written fragment.
+     *
+     * @param out ImageOutputStream for this data atom
+     * @return filled Movie Extends Header Atom
+     * @throws IOException if any write operation fails
+     */
+    private DataAtom createMovieExtendsHeaderAtom(ImageOutputStream out) throws IOException {
+        DataAtom movieExtendsHeaderAtom = new DataAtom(MOVIE_EXTENDS_HEADER, out);
+
+        /*
+         * typedef struct { byte version; byte[3] flags; int fragmentDuration; } movieExtendsHeaderAtom;
+         */
+        DataAtomOutputStream d = movieExtendsHeaderAtom.getOutputStream();
+        d.write(0); // version
+        d.write(0); // flag[0]
+        d.write(0); // flag[1]
+        d.write(0); // flag[2]
+
+        fragmentDurationPosition = out.getStreamPosition();
+        d.writeInt(0); // fragmentDuration
+        // Duration of the longest track including all fragments, in movie
+        // time scale units.
+        return movieExtendsHeaderAtom;
+    }
+
+    /**
+     * Track Extends Atom
+     *
+     * @param out ImageOutputStream for this data atom
+     * @return filled Track Extends Atom
+     * @throws IOException if any write operation fails
+     */
+    private DataAtom createTrackExtendsAtom(ImageOutputStream out) throws IOException {
+        DataAtom trackExtendsAtom = new DataAtom(TRACK_EXTENDS, out);
+
+        /*
+         * typedef struct { byte version; byte[3] flags; int trackId; int defaultSampleDescriptionIndex; int defaultSampleDuration; int
+         * defaultSampleSize; int defaultSampleFlags; } trackExtendsAtom;
+         */
+        DataAtomOutputStream d = trackExtendsAtom.getOutputStream();
+        d.write(0); // version
+        d.write(0); // flag[0]
+        d.write(0); // flag[1]
+        d.write(0); // flag[2]
+
+        d.writeInt(1); // trackId
+        d.writeInt(1); // defaultSampleDescriptionIndex
+        d.writeInt(0); // defaultSampleDuration
+        d.writeInt(0); // defaultSampleSize
+        // Duration and size are given for every sample in the track fragment
+        // runs.
+
+        d.writeInt(0); // defaultSampleFlags
+        // Samples without flags are sync samples. Formats with delta frames
+        // give the flags of every sample in the track fragment runs, which
+        // override this default.
+        return trackExtendsAtom;
+    }
+
+    /**
+     * @return maximum amount of samples in a fragment, fragments of formats with delta frames may be extended up to the next key frame
+     */
+    private long getFragmentCapacity() {
+        return videoFormat.hasDeltaFrames() ? 2L * fragmentLength : fragmentLength;
+    }
+
+    /**
+     * Starts a fragment by reserving space for its movie fragment atom, sized for a fragment of the maximum length, and starting its media data atom.
+     */
+    private void startFragment() throws IOException {
+        fragmentOffset = out.getStreamPosition();
+        writeFreeAtom(fragmentOffset + getMovieFragmentSize(getFragmentCapacity()));
+        fragmentDataAtom = new WideDataAtom(MEDIA_DATA, out);
+    }
+
+    /**
+     * @return size of the movie fragment atom of a fragment with the given amount of samples
+     */
+    private long getMovieFragmentSize(long sampleCount) {
+        return MOVIE_FRAGMENT_FIXED_SIZE + (videoFormat.hasDeltaFrames() ? 12L : 8L) * sampleCount;
+    }
+
+    /**
+     * Writes a free space atom from the current position up to the given position.
+     */
+    private void writeFreeAtom(long end) throws IOException {
+        DataAtom freeAtom = new DataAtom(FREE, out);
+        DataAtomOutputStream d = freeAtom.getOutputStream();
+        byte[] zeros = new byte[(int) Math.min(end - out.getStreamPosition(), 4096)];
+        long remaining;
+        while ((remaining = end - out.getStreamPosition()) > 0) {
+            d.write(zeros, 0, (int) Math.min(zeros.length, remaining));
+        }
+        freeAtom.finish();
+    }
+
+    /**
+     * Finishes the media data atom of the current fragment, writes the movie fragment atom describing its samples into the reserved space followed by a
+     * free space atom covering the rest of it, and updates the fragment duration in the movie atom.
+     */
+    private void writeFragment() {
+        if (fragmentDataAtom == null) {
+            return;
+        }
+        try {
+            fragmentDataAtom.finish();
+            long pointer = out.getStreamPosition();
+            long dataOffset = fragmentDataAtom.getOffset() + MEDIA_DATA_HEADER_SIZE - fragmentOffset;
+
+            /* Movie Fragment Atom */
+            out.seek(fragmentOffset);
+            CompositeAtom fragmentAtom = new CompositeAtom(MOVIE_FRAGMENT, out);
+            fragmentAtom.add(createMovieFragmentHeaderAtom(out));
+            CompositeAtom trackFragmentAtom = new CompositeAtom(TRACK_FRAGMENT, out);
+            fragmentAtom.add(trackFragmentAtom);
+            trackFragmentAtom.add(createTrackFragmentHeaderAtom(out));
+            trackFragmentAtom.add(createTrackFragmentRunAtom(dataOffset, out));
+            fragmentAtom.finish();
+            // The reserved space is smaller by a multiple of the 8 or 12 byte
+            // run table entries, so a free space atom fits into the rest.
+            if (out.getStreamPosition() < fragmentDataAtom.getOffset()) {
+                writeFreeAtom(fragmentDataAtom.getOffset());
+            }
+
+            fragmentedDuration += videoFrames.getTotalDuration();
+            out.seek(fragmentDurationPosition);
+            // durations are unsigned 32-bit values in the movie atoms
+            out.writeInt((int) fragmentedDuration);
+            out.seek(pointer);
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        } finally {
+            fragmentDataAtom = null;
+            videoFrames.clear();
+        }
+    }
+
+    /**
+     * Movie Fragment Header Atom
+     *
+     * @param out ImageOutputStream for this data atom
+     * @return filled Movie Fragment Header Atom
+     * @throws IOException if any write operation fails
+     */
+    private DataAtom createMovieFragmentHeaderAtom(ImageOutputStream out) throws IOException {
+        DataAtom fragmentHeaderAtom = new DataAtom(MOVIE_FRAGMENT_HEADER, out);
+
+        /*
+         * typedef struct { byte version; byte[3] flags; int sequenceNumber; } movieFragmentHeaderAtom;
+         */
+        DataAtomOutputStream d = fragmentHeaderAtom.getOutputStream();
+        d.write(0); // version
+        d.write(0); // flag[0]
+        d.write(0); // flag[1]
+        d.write(0); // flag[2]
+
+        d.writeInt(++fragmentSequenceNumber); // sequenceNumber
+        // Ordinal number of the fragment, increasing in the order the
+        // fragments appear in the file.
+        return fragmentHeaderAtom;
+    }
+
+    /**
+     * Track Fragment Header Atom
+     *
+     * @param out ImageOutputStream for this data atom
+     * @return filled Track Fragment Header Atom
+     * @throws IOException if any write operation fails
+     */
+    private DataAtom createTrackFragmentHeaderAtom(ImageOutputStream out) throws IOException {
+        DataAtom trackFragmentHeaderAtom = new DataAtom(TRACK_FRAGMENT_HEADER, out);
+
+        /*
+         * typedef struct { byte version; byte[3] flags; int trackId; } trackFragmentHeaderAtom;
+         */
+        DataAtomOutputStream d = trackFragmentHeaderAtom.getOutputStream();
+        d.write(0); // version
+        d.write(0x02); // flag[0]
+        d.write(0); // flag[1]
+        d.write(0); // flag[2]
+        // Flag 0x020000 (default-base-is-moof) makes data offsets of the track
+        // fragment runs relative to the start of the movie fragment atom.
+
+        d.writeInt(1); // trackId
+        return trackFragmentHeaderAtom;
+    }
+
+    /**
+     * Track Fragment Run Atom
+     *
+     * @param dataOffset offset of the first sample relative to the start of the enclosing movie fragment atom
+     * @param out        ImageOutputStream for this data atom
+     * @return filled Track Fragment Run Atom
+     * @throws IOException if any write operation fails
+     */
+    private DataAtom createTrackFragmentRunAtom(long dataOffset, ImageOutputStream out) throws IOException {
+        DataAtom trackFragmentRunAtom = new DataAtom(TRACK_FRAGMENT_RUN, out);
+
+        /*
+         * typedef struct { byte version; byte[3] flags; int sampleCount; int dataOffset; trackRunTable trackRunTable[sampleCount]; }
+         * trackFragmentRunAtom;
+         *
+         * typedef struct { int sampleDuration; int sampleSize; int sampleFlags; } trackRunTable;
+         */
+        boolean writeFlags = videoFormat.hasDeltaFrames();
+        DataAtomOutputStream d = trackFragmentRunAtom.getOutputStream();
+        d.write(0); // version
+        d.write(0); // flag[0]
+        d.write(writeFlags ? 0x07 : 0x03); // flag[1]
+        d.write(0x01); // flag[2]
+        // Flags 0x000001 (data-offset-present), 0x000100
+        // (sample-duration-present), 0x000200 (sample-size-present) and, for
+        // formats with delta frames, 0x000400 (sample-flags-present).
+
+        d.writeInt(videoFrames.size()); // sampleCount
+
+        d.writeInt((int) dataOffset); // dataOffset
+        // Sample data follows the header of the media data atom, behind the
+        // space reserved for the movie fragment atom.
+
+        videoFrames.writeFragmentRun(d, writeFlags, SYNC_SAMPLE_FLAGS, NON_SYNC_SAMPLE_FLAGS); // trackRunTable
+        // Key frames do not depend on other samples (0x02000000), delta frames
+        // depend on the previous sample and are not sync samples (0x01010000).
+        return trackFragmentRunAtom;
+    }
+
     /**
      * Track Atom
      *
@@ -659,6 +1038,9 @@ public final class QuickTimeOutputStream {
         CompositeAtom sampleTableAtom = new CompositeAtom(SAMPLE_TABLE, out);
         sampleTableAtom.add(createSampleDescriptionAtom(out));
         sampleTableAtom.add(createTimeToSampleAtom(out));
+        if (videoFrames.hasNonSyncSamples()) {
+            sampleTableAtom.add(createSyncSampleAtom(out));
+        }
         sampleTableAtom.add(createSamplesToChunksMappingAtom(out));
         sampleTableAtom.add(createSamplesSizeAtom(out));
         sampleTableAtom.add(createChunkOffsetTableAtom(out));
@@ -720,6 +1102,10 @@ public final class QuickTimeOutputStream {
                 writePngSampleDescriptionAtomData(d);
                 break;
             }
+            case RLE: {
+                writeAnimationSampleDescriptionAtomData(d);
+                break;
+            }
             default:
                 throw new IllegalStateException("Such video format is not supported: " + videoFormat);
         }
@@ -986,6 +1372,92 @@ public final class QuickTimeOutputStream {
         // color table.
     }
 
+    private void writeAnimationSampleDescriptionAtomData(DataAtomOutputStream d) throws IOException {
+        d.writeInt(86); // sampleDescriptionTable[0].size
+        d.writeType(ANIMATION); // sampleDescriptionTable[0].type
+        // A 32-bit integer indicating the format of the stored data.
+        // This depends on the media type, but is usually either the
+        // compression format or the media type.
+
+        d.write(new byte[6]); // sampleDescriptionTable[0].reserved
+        // Six bytes that must be set to 0.
+
+        d.writeShort(1); // sampleDescriptionTable[0].dataReferenceIndex
+        // A 16-bit integer that contains the index of the data
+        // reference to use to retrieve data associated with samples
+        // that use this sample description. Data references are stored
+        // in data reference atoms.
+
+        // Video Sample Description
+        // ------------------------
+        // The format of the following fields is described here:
+        // http://developer.apple.com/documentation/QuickTime/QTFF/QTFFChap3/chapter_4_section_2.html#//apple_ref/doc/uid/TP40000939-CH205-BBCGICBJ
+
+        d.writeShort(0); // sampleDescriptionTable.videoSampleDescription.version
+        // A 16-bit integer indicating the version number of the
+        // compressed data. This is set to 0, unless a compressor has
+        // changed its data format.
+
+        d.writeShort(0); // sampleDescriptionTable.videoSampleDescription.revisionLevel
+        // A 16-bit integer that must be set to 0.
+
+        d.writeType(JAVA); // sampleDescriptionTable.videoSampleDescription.manufacturer
+        // A 32-bit integer that specifies the developer of the
+        // compressor that generated the compressed data. Often this
+        // field contains 'appl' to indicate Apple Computer, Inc.
+
+        d.writeInt(0); // sampleDescriptionTable.videoSampleDescription.temporalQuality
+        // A 32-bit integer containing a value from 0 to 1023 indicating
+        // the degree of temporal compression.
+
+        d.writeInt(1024); // sampleDescriptionTable.videoSampleDescription.spatialQuality
+        // A 32-bit integer containing a value from 0 to 1024 indicating
+        // the degree of spatial compression.
+
+        d.writeUShort(imgWidth); // sampleDescriptionTable.videoSampleDescription.width
+        // A 16-bit integer that specifies the width of the source image
+        // in pixels.
+
+        d.writeUShort(imgHeight); // sampleDescriptionTable.videoSampleDescription.height
+        // A 16-bit integer that specifies the height of the source image in
+        // pixels.
+
+        d.writeFixed16D16(72.0); // sampleDescriptionTable.videoSampleDescription.horizontalResolution
+        // A 32-bit fixed-point number containing the horizontal
+        // resolution of the image in pixels per inch.
+
+        d.writeFixed16D16(72.0); // sampleDescriptionTable.videoSampleDescription.verticalResolution
+        // A 32-bit fixed-point number containing the vertical
+        // resolution of the image in pixels per inch.
+
+        d.writeInt(0); // sampleDescriptionTable.videoSampleDescription.dataSize
+        // A 32-bit integer that must be set to 0.
+
+        d.writeShort(1); // sampleDescriptionTable.videoSampleDescription.frameCount
+        // A 16-bit integer that indicates how many frames of compressed
+        // data are stored in each sample. Usually set to 1.
+
+        d.writePString("Animation", 32); // sampleDescriptionTable.videoSampleDescription.compressorName
+        // A 32-byte Pascal string containing the name of the compressor
+        // that created the image, such as "jpeg".
+
+        d.writeShort(24); // sampleDescriptionTable.videoSampleDescription.depth
+        // A 16-bit integer that indicates the pixel depth of the
+        // compressed image. Values of 1, 2, 4, 8 ,16, 24, and 32
+        // indicate the depth of color images. The value 32 should be
+        // used only if the image contains an alpha channel. Values of
+        // 34, 36, and 40 indicate 2-, 4-, and 8-bit grayscale,
+        // respectively, for grayscale images.
+
+        d.writeShort(-1); // sampleDescriptionTable.videoSampleDescription.colorTableID
+        // A 16-bit integer that identifies which color table to use.
+        // If this field is set to -1, the default color table should be
+        // used for the specified depth. For all depths below 16 bits
+        // per pixel, this indicates a standard Macintosh color table
+        // for the specified depth. Depths of 16, 24, and 32 have no
+        // color table.
+    }
+
     /**
      * sample size atom
      * The sample size atom contains the sample count and a table giving the
@@ -1026,13 +1498,11 @@ public final class QuickTimeOutputStream {
         // A 32-bit integer containing the count of entries in the sample size
         // table.
 
-        for (Sample s : videoFrames) {
-            d.writeUInt(s.length); // sample size
-            // The size field contains the size, in bytes, of the sample in
-            // question. The table is indexed by sample number-the first entry
-            // corresponds to the first sample, the second entry is for the
-            // second sample, and so on.
-        }
+        videoFrames.writeSizes(d); // sample size
+        // The size field contains the size, in bytes, of the sample in
+        // question. The table is indexed by sample number-the first entry
+        // corresponds to the first sample, the second entry is for the
+        // second sample, and so on.
         return samplesSizeAtom;
     }
 
@@ -1049,7 +1519,7 @@ public final class QuickTimeOutputStream {
      * @throws IOException if any write operation fails
      */
     private DataAtom createChunkOffsetTableAtom(ImageOutputStream out) throws IOException {
-        if (videoFrames.size() == 0 || videoFrames.getLast().offset <= 0xffffffffL) {
+        if (!videoFrames.requiresWideOffsets()) {
             return create32BitChunkOffsetTableAtom(out);
         }
         return create64BitChunkOffsetTableAtom(out);
@@ -1084,13 +1554,11 @@ public final class QuickTimeOutputStream {
         // A 32-bit integer containing the count of entries in the chunk
         // offset table.
 
-        for (Sample s : videoFrames) {
-            d.writeUInt(s.offset); // offset
-            // The offset contains the byte offset from the beginning of the
-            // data stream to the chunk. The table is indexed by chunk
-            // number-the first table entry corresponds to the first chunk,
-            // the second table entry is for the second chunk, and so on.
-        }
+        videoFrames.writeOffsets(d, false); // offset
+        // The offset contains the byte offset from the beginning of the
+        // data stream to the chunk. The table is indexed by chunk
+        // number-the first table entry corresponds to the first chunk,
+        // the second table entry is for the second chunk, and so on.
         return chunkOffsetAtom;
     }
 
@@ -1123,16 +1591,43 @@ public final class QuickTimeOutputStream {
         // A 32-bit integer containing the count of entries in the chunk
         // offset table.
 
-        for (Sample s : videoFrames) {
-            d.writeLong(s.offset); // offset
-            // The offset contains the byte offset from the beginning of the
-            // data stream to the chunk. The table is indexed by chunk
-            // number-the first table entry corresponds to the first chunk,
-            // the second table entry is for the second chunk, and so on.
-        }
+        videoFrames.writeOffsets(d, true); // offset
+        // The offset contains the byte offset from the beginning of the
+        // data stream to the chunk. The table is indexed by chunk
+        // number-the first table entry corresponds to the first chunk,
+        // the second table entry is for the second chunk, and so on.
         return chunkOffsetAtom;
     }
 
+    /**
+     * Sync sample atom
+     * The sync sample atom identifies the key frames in the media. If this
+     * atom is not present, every sample is a key frame.
+     *
+     * @param out ImageOutputStream for this data atom
+     * @return filled Sync Sample Atom
+     * @throws IOException if any write operation fails
+     */
+    private DataAtom createSyncSampleAtom(ImageOutputStream out) throws IOException {
+        DataAtom syncSampleAtom = new DataAtom(SYNC_SAMPLE, out);
+
+        /*
+         * typedef struct { byte version; byte[3] flags; int numberOfEntries; int syncSampleTable[numberOfEntries]; } syncSampleAtom;
+         */
+        DataAtomOutputStream d = syncSampleAtom.getOutputStream();
+        d.write(0); // version
+        d.write(0); // flag[0]
+        d.write(0); // flag[1]
+        d.write(0); // flag[2]
+
+        d.writeUInt(videoFrames.getSyncSampleCount()); // number of entries
+
+        videoFrames.writeSyncSamples(d); // syncSampleTable
+        // Sample numbers of the key frames in increasing order, the first
+        // sample is number 1.
+        return syncSampleAtom;
+    }
+
     /**
      * Sample to chunk atom
      * The sample-to-chunk atom contains a table that maps samples to chunks
@@ -1161,6 +1656,13 @@ public final class QuickTimeOutputStream {
         d.write(0); // flag[2]
         // A 3-byte space for time-to-sample flags. Set this field to 0.
 
+        if (videoFrames.size() == 0) {
+            d.writeInt(0); // number of entries
+            // There are no chunks in an empty track or in the movie atom of a
+            // fragmented movie.
+            return samplesToChunksMappingAtom;
+        }
+
         d.writeInt(1); // number of entries
         // A 32-bit integer containing the count of entries in the
         // sample-to-chunk table.
@@ -1208,47 +1710,14 @@ public final class QuickTimeOutputStream {
         d.write(0); // flag[2]
         // A 3-byte space for time-to-sample flags. Set this field to 0.
 
-        // count runs of video frame durations
-        int runCount = 1;
-        int prevDuration = videoFrames.size() == 0 ? 0 : videoFrames.get(0).duration;
-        for (Sample s : videoFrames) {
-            if (s.duration != prevDuration) {
-                runCount++;
-                prevDuration = s.duration;
-            }
-        }
-        d.writeInt(runCount); // numberOfEntries
+        d.writeInt(videoFrames.getRunCount()); // numberOfEntries
         // A 32-bit integer containing the count of entries in the
         // time-to-sample table.
 
-        int runLength = 0;
-        prevDuration = videoFrames.size() == 0 ? 0 : videoFrames.get(0).duration;
-        for (Sample s : videoFrames) {
-            if (s.duration != prevDuration) {
-                if (runLength > 0) {
-                    d.writeInt(runLength); // timeToSampleTable[0].sampleCount
-                    // A 32-bit integer that specifies the number of consecutive
-                    // samples that have the same duration.
-
-                    d.writeInt(prevDuration); // timeToSampleTable[0].sampleDuration
-                    // A 32-bit integer that specifies the duration of each
-                    // sample.
-                }
-                prevDuration = s.duration;
-                runLength = 1;
-            } else {
-                runLength++;
-            }
-        }
-        if (runLength > 0) {
-            d.writeInt(runLength); // timeToSampleTable[0].sampleCount
-            // A 32-bit integer that specifies the number of consecutive
-            // samples that have the same duration.
-
-            d.writeInt(prevDuration); // timeToSampleTable[0].sampleDuration
-            // A 32-bit integer that specifies the duration of each
-            // sample.
-        }
+        videoFrames.writeTimeToSample(d); // timeToSampleTable
+        // Every entry holds a 32-bit integer that specifies the number of
+        // consecutive samples that have the same duration, followed by a
+        // 32-bit integer that specifies the duration of each sample.
         return timeToSampleAtom;
     }
 
@@ -1358,73 +1827,207 @@ public final class QuickTimeOutputStream {
      * If the dimension of the video track has not been specified yet, it is derived from the first buffered image added to the QuickTimeOutputStream.
      *
      * @param image    The frame image.
-     * @param duration The duration of the frame in time scale units.
-     * @throws IllegalArgumentException if the duration is less than 1, or if the dimension of the frame does not match the dimension of the video track.
+     * @param duration The duration of the frame in time scale units, 0 if it is set later by {@link #extendLastFrame(int)}.
+     * @throws IllegalArgumentException if the duration is negative, or if the dimension of the frame does not match the dimension of the video track.
      * @throws IORuntimeException       if writing the image failed.
      */
     public void writeFrame(BufferedImage image, int duration) {
-        checkArgument(duration >= 0, "duration should be greater than 0, but was %s", duration);
+        writeFrame(encodeFrame(image), duration);
+    }
+
+    /**
+     * Writes a frame to the video track, unless its content is the same as the content of the previous frame.
+     * <p>
+     * If the fingerprint matches the fingerprint of the previously written frame, the frame is neither encoded nor written, the duration of the
+     * previous sample is extended instead.
+     *
+     * @param image       The frame image.
+     * @param duration    The duration of the frame in time scale units, 0 if it is set later by {@link #extendLastFrame(int)}.
+     * @param fingerprint Value identifying the frame content. Frames with equal fingerprints must have equal content.
+     * @throws IllegalArgumentException if the duration is negative, or if the dimension of the frame does not match the dimension of the video track.
+     * @throws IORuntimeException       if writing the image failed.
+     */
+    public void writeFrame(BufferedImage image, int duration, long fingerprint) {
+        if (!extendLastFrame(fingerprint, duration)) {
+            writeFrame(encodeFrame(image), duration, fingerprint);
+        }
+    }
+
+    /**
+     * Extends the duration of the last written sample if its content fingerprint matches the given one.
+     *
+     * @param fingerprint Value identifying the frame content.
+     * @param duration    The duration to add in time scale units.
+     * @return {@code true} if the last sample was extended, {@code false} if the frame has to be written.
+     * @throws IllegalArgumentException if the duration is negative.
+     */
+    public boolean extendLastFrame(long fingerprint, int duration) {
+        checkArgument(duration >= 0, "duration must not be negative, but was %s", duration);
+        ensureOpen();
+        if (state != States.STARTED || !hasLastFingerprint || lastFingerprint != fingerprint || videoFrames.size() == 0) {
+            return false;
+        }
+        videoFrames.extendLast(duration);
+        return true;
+    }
+
+    /**
+     * Extends the duration of the last written sample.
+     * <p>
+     * Together with samples written with zero duration this allows to write frames as soon as they arrive, and to set their durations once the next
+     * frame arrives.
+     *
+     * @param duration The duration to add in time scale units.
+     * @throws IllegalArgumentException if the duration is negative.
+     * @throws IllegalStateException    if no sample has been written yet.
+     */
+    public void extendLastFrame(int duration) {
+        checkArgument(duration >= 0, "duration must not be negative, but was %s", duration);
+        ensureOpen();
+        checkState(state == States.STARTED && videoFrames.size() > 0, "There is no frame to extend.");
+        videoFrames.extendLast(duration);
+    }
+
+    /**
+     * Compresses a frame in the video format of this stream without writing it.
+     * <p>
+     * This method does not change the state of the stream, so several frames may be encoded concurrently by different threads. Encoded frames are then
+     * appended in the desired order by {@link #writeFrame(EncodedFrame, int)}. Image writers and buffers are created once per encoding thread and
+     * reused for subsequent frames.
+     *
+     * @param image The frame image.
+     * @return the encoded frame.
+     * @throws IORuntimeException if encoding the image failed.
+     */
+    public EncodedFrame encodeFrame(BufferedImage image) {
+        return encodeFrame(image, null);
+    }
+
+    /**
+     * Compresses a frame in the video format of this stream without writing it, see {@link #encodeFrame(BufferedImage)}.
+     * <p>
+     * Formats with delta frames store only the difference to the previous frame, which must be the frame appended right before this one. Other formats
+     * ignore the previous frame.
+     *
+     * @param image    The frame image.
+     * @param previous The previous frame image, or {@code null} to encode a key frame.
+     * @return the encoded frame.
+     * @throws IORuntimeException if encoding the image failed.
+     */
+    public EncodedFrame encodeFrame(BufferedImage image, BufferedImage previous) {
+        try {
+            return frameEncoders.get().encode(image, previous, quality);
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+    }
+
+    /**
+     * Appends an encoded frame to the video track and remembers its content fingerprint, see {@link #extendLastFrame(long, int)}.
+     *
+     * @param frame       The frame encoded by this stream.
+     * @param duration    The duration of the frame in time scale units, 0 if it is set later by {@link #extendLastFrame(int)}.
+     * @param fingerprint Value identifying the frame content.
+     * @throws IllegalArgumentException if the duration is negative, or if the dimension of the frame does not match the dimension of the video track.
+     * @throws IORuntimeException       if writing the frame failed.
+     */
+    public void writeFrame(EncodedFrame frame, int duration, long fingerprint) {
+        writeFrame(frame, duration);
+        lastFingerprint = fingerprint;
+        hasLastFingerprint = true;
+    }
+
+    /**
+     * Appends an encoded frame to the video track.
+     * <p>
+     * If the dimension of the video track has not been specified yet, it is derived from the first frame.
+     *
+     * @param frame    The frame encoded by this stream.
+     * @param duration The duration of the frame in time scale units, 0 if it is set later by {@link #extendLastFrame(int)}.
+     * @throws IllegalArgumentException if the duration is negative, or if the dimension of the frame does not match the dimension of the video track.
+     * @throws IORuntimeException       if writing the frame failed.
+     */
+    public void writeFrame(EncodedFrame frame, int duration) {
+        checkArgument(duration >= 0, "duration must not be negative, but was %s", duration);
         ensureOpen();
         ensureStarted();
 
-        // Get the dimensions of the first image
+        // Get the dimensions of the first frame
         if (imgWidth == UNSPECIFIED) {
-            imgWidth = image.getWidth();
-            imgHeight = image.getHeight();
+            imgWidth = frame.getWidth();
+            imgHeight = frame.getHeight();
         } else {
-            // The dimension of the image must match the dimension of the video
+            // The dimension of the frame must match the dimension of the video
             // track
-            checkState(imgWidth == image.getWidth() && imgHeight == image.getHeight(),
+            checkState(imgWidth == frame.getWidth() && imgHeight == frame.getHeight(),
                     "Dimensions of image[%s] (width=%s, height=%s) differs from image[0] (width=%s, height=%s",
-                    videoFrames.size(), image.getWidth(), image.getHeight(), imgWidth, imgHeight);
+                    videoFrames.size(), frame.getWidth(), frame.getHeight(), imgWidth, imgHeight);
+        }
+        hasLastFingerprint = false;
+        if (isFragmented()) {
+            addToFragment(frame.getData(), duration, frame.isKeyFrame());
+            return;
         }
         try {
             long offset = out.getStreamPosition();
-            switch (videoFormat) {
-                case RAW: {
-                    WritableRaster raster = image.getRaster();
-                    int[] raw = new int[imgWidth * 3]; // holds a scanline of raw image
-                    // data with 3 channels of 32
-                    // bit data
-                    byte[] bytes = new byte[imgWidth * 3]; // holds a scanline of raw
-                    // image data with 3
-                    // channels of 8 bit data
-                    int n = imgWidth * 3;
-                    for (int y = 0; y < imgHeight; y++) {
-                        raster.getPixels(0, y, imgWidth, 1, raw);
-                        for (int k = 0; k < n; k++) {
-                            bytes[k] = (byte) raw[k];
-                        }
-                        mdatAtom.getOutputStream().write(bytes);
-                    }
-                    break;
-                }
-                case JPG: {
-                    ImageWriter iw = ImageIO.getImageWritersByMIMEType("image/jpeg").next();
-                    ImageWriteParam iwParam = iw.getDefaultWriteParam();
-                    iwParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-                    iwParam.setCompressionQuality(quality);
-                    MemoryCacheImageOutputStream imgOut = new MemoryCacheImageOutputStream(mdatAtom.getOutputStream());
-                    iw.setOutput(imgOut);
-                    IIOImage img = new IIOImage(image, null, null);
-                    iw.write(null, img, iwParam);
-                    iw.dispose();
-                    break;
-                }
-                case PNG:
-                default: {
-                    ImageWriter iw = ImageIO.getImageWritersByMIMEType("image/png").next();
-                    ImageWriteParam iwParam = iw.getDefaultWriteParam();
-                    MemoryCacheImageOutputStream imgOut = new MemoryCacheImageOutputStream(mdatAtom.getOutputStream());
-                    iw.setOutput(imgOut);
-                    IIOImage img = new IIOImage(image, null, null);
-                    iw.write(null, img, iwParam);
-                    iw.dispose();
-                    break;
-                }
-            }
+            writeSampleData(frame.getData(), mdatAtom.getOutputStream());
             long length = out.getStreamPosition() - offset;
-            videoFrames.add(new Sample(duration, offset, length));
+            videoFrames.add(offset, length, duration, frame.isKeyFrame());
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes sample data at the current position with a single channel write, bypassing the per-byte checks of the image output stream. Heap data is
+     * copied into a reused direct buffer first, direct data is written as it is.
+     *
+     * @param data       sample data between its position and limit
+     * @param atomStream stream of the media data atom the sample belongs to
+     * @throws IOException if writing failed
+     */
+    private void writeSampleData(ByteBuffer data, DataAtomOutputStream atomStream) throws IOException {
+        final int length = data.remaining();
+        ByteBuffer source = data.duplicate();
+        if (!source.isDirect()) {
+            if (sampleBuffer.capacity() < length) {
+                sampleBuffer = ByteBuffer.allocateDirect(length);
+            }
+            sampleBuffer.clear();
+            sampleBuffer.put(source);
+            sampleBuffer.flip();
+            source = sampleBuffer;
+        }
+        long position = out.getStreamPosition();
+        while (source.hasRemaining()) {
+            position += channel.write(source, position);
+        }
+        out.seek(position);
+        atomStream.countWrittenDirectly(length);
+    }
+
+    /**
+     * Writes a sample into the current movie fragment. The movie fragment atom of a full fragment is written when the next sample arrives, so the
+     * duration of the last sample can still be extended. The movie atom is written before the first sample.
+     */
+    private void addToFragment(ByteBuffer data, int duration, boolean keyFrame) {
+        if (!movieWritten) {
+            checkState(imgWidth != UNSPECIFIED && imgHeight != UNSPECIFIED,
+                    "Image width and height must be specified before the first frame of a fragmented movie, but were: width=%s, height=%s",
+                    imgWidth, imgHeight);
+            writeMovie();
+        }
+        try {
+            if (videoFrames.size() >= getFragmentCapacity()
+                    || videoFrames.size() >= fragmentLength && (keyFrame || !videoFormat.hasDeltaFrames())) {
+                writeFragment();
+            }
+            if (fragmentDataAtom == null) {
+                startFragment();
+            }
+            long offset = out.getStreamPosition();
+            writeSampleData(data, fragmentDataAtom.getOutputStream());
+            videoFrames.add(offset, out.getStreamPosition() - offset, duration, keyFrame);
         } catch (IOException e) {
             throw new IORuntimeException(e);
         }
@@ -1440,9 +2043,9 @@ public final class QuickTimeOutputStream {
      * or stop().
      *
      * @param file     The file which holds the image data.
-     * @param duration The duration of the frame in time scale units.
-     * @throws IllegalStateException if the duration is less than 1.
-     * @throws IORuntimeException    if writing the image failed.
+     * @param duration The duration of the frame in time scale units, 0 if it is set later by {@link #extendLastFrame(int)}.
+     * @throws IllegalArgumentException if the duration is negative.
+     * @throws IORuntimeException       if writing the image failed.
      */
     public void writeFrame(File file, int duration) {
         try (FileInputStream in = new FileInputStream(file)) {
@@ -1462,14 +2065,23 @@ public final class QuickTimeOutputStream {
      * or stop().
      *
      * @param in       The input stream which holds the image data.
-     * @param duration The duration of the frame in time scale units.
-     * @throws IllegalArgumentException if the duration is less than 1.
+     * @param duration The duration of the frame in time scale units, 0 if it is set later by {@link #extendLastFrame(int)}.
+     * @throws IllegalArgumentException if the duration is negative.
      * @throws IORuntimeException       if writing the image failed.
      */
     private void writeFrame(InputStream in, int duration) {
-        checkArgument(duration >= 0, "duration should be greater than 0, but was %s", duration);
+        checkArgument(duration >= 0, "duration must not be negative, but was %s", duration);
         ensureOpen();
         ensureStarted();
+        hasLastFingerprint = false;
+        if (isFragmented()) {
+            try {
+                addToFragment(ByteBuffer.wrap(ByteStreams.toByteArray(in)), duration, true);
+            } catch (IOException e) {
+                throw new IORuntimeException(e);
+            }
+            return;
+        }
         try {
             long offset = out.getStreamPosition();
             try (OutputStream mdatOut = mdatAtom.getOutputStream()) {
@@ -1479,7 +2091,7 @@ public final class QuickTimeOutputStream {
                     mdatOut.write(buf, 0, len);
                 }
                 long length = out.getStreamPosition() - offset;
-                videoFrames.add(new Sample(duration, offset, length));
+                videoFrames.add(offset, length, duration, true);
             }
         } catch (IOException e) {
             throw new IORuntimeException(e);
@@ -1520,38 +2132,17 @@ public final class QuickTimeOutputStream {
      * Supported video formats.
      */
     public enum VideoFormat {
-        RAW, JPG, PNG
-    }
-
-    /**
-     * QuickTime stores media data in samples. A sample is a single element in a sequence of time-ordered data. Samples are stored in the mdat atom.
-     */
-    private static class Sample {
-
+        RAW, JPG, PNG,
         /**
-         * Offset of the sample relative to the start of the QuickTime file.
+         * QuickTime Animation codec, lossless run-length encoding of the scanlines changed since the previous frame.
          */
-        private long offset;
-        /**
-         * Data length of the sample.
-         */
-        private long length;
-        /**
-         * The duration of the sample in time scale units.
-         */
-        private int duration;
+        RLE;
 
         /**
-         * Creates a new sample.
-         *
-         * @param duration The duration of the sample in time scale units.
-         * @param offset   Offset of the sample relative to the start of the QuickTime file.
-         * @param length   Data length of the sample.
+         * @return whether frames of this format may depend on the previous frame
          */
-        Sample(int duration, long offset, long length) {
-            this.duration = duration;
-            this.offset = offset;
-            this.length = length;
+        public boolean hasDeltaFrames() {
+            return this == RLE;
         }
     }
 }
@@ -0,0 +1,238 @@
+package com.github.xsavikx.androidscreencast.api.recording;
+
+import com.github.xsavikx.androidscreencast.exception.IORuntimeException;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Ring of the most recent encoded frames, which can be written into a movie at any moment.
+ * <p>
+ * Frames are encoded as key frames, so the oldest ones can be dropped without breaking the remaining ones. Sample data
+ * is kept in a direct buffer allocated on the first frame, which never grows: once it is full, the oldest frames are
+ * overwritten. Frames older than the replay duration are dropped as well, except the one shown at the start of the
+ * replay.
+ * <p>
+ * Frames are appended by a single thread, the replay can be written by any other thread. The replay is written straight
+ * from the buffer, so frames which would overwrite a part of it are dropped while it is being written.
+ */
+public final class ReplayBuffer {
+
+    private final QuickTimeOutputStream.VideoFormat videoFormat;
+    private final long durationNanos;
+    private final int capacity;
+    private final float quality;
+    private final FrameEncoder frameEncoder;
+    /**
+     * Frames in capture order, the oldest one first. Guarded by this.
+     */
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    /**
+     * Sample data of the frames, {@code null} until the first frame is appended. Guarded by this.
+     */
+    private ByteBuffer data;
+    /**
+     * Offset in {@link #data} where the next frame is stored. Guarded by this.
+     */
+    private int writePosition;
+    /**
+     * Frames being written into a replay, their data must not be overwritten. Guarded by this.
+     */
+    private List<Entry> pinnedEntries = Collections.emptyList();
+    /**
+     * Lets a single replay be written at a time.
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * @param videoFormat   format of the frames, formats with delta frames store key frames only
+     * @param durationNanos how long the frames are kept
+     * @param capacity      size of sample data kept at most, in bytes
+     * @param quality       compression quality of JPEG frames
+     */
+    public ReplayBuffer(QuickTimeOutputStream.VideoFormat videoFormat, long durationNanos, int capacity, float quality) {
+        checkArgument(durationNanos > 0, "Replay duration must be greater than 0, but was %s", durationNanos);
+        checkArgument(capacity > 0, "Replay buffer capacity must be greater than 0, but was %s", capacity);
+        this.videoFormat = videoFormat;
+        this.durationNanos = durationNanos;
+        this.capacity = capacity;
+        this.quality = quality;
+        this.frameEncoder = new FrameEncoder(videoFormat);
+    }
+
+    /**
+     * Encodes the frame and appends it, dropping the oldest frames if needed. Must be called by a single thread.
+     *
+     * @param image        the frame image
+     * @param captureNanos {@link System#nanoTime()} when the frame was captured
+     * @return {@code false} if the frame was dropped, because it is larger than the whole buffer or its place is
+     * occupied by a replay being written
+     * @throws IORuntimeException if encoding the image failed
+     */
+    public boolean append(BufferedImage image, long captureNanos) {
+        final EncodedFrame frame;
+        try {
+            frame = frameEncoder.encode(image, null, quality);
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+        final int length = frame.getLength();
+        if (length > capacity) {
+            return false;
+        }
+        synchronized (this) {
+            if (data == null) {
+                data = ByteBuffer.allocateDirect(capacity);
+            }
+            final int start = writePosition + length > capacity ? 0 : writePosition;
+            if (isPinned(start, start + length) || start != writePosition && isPinned(writePosition, capacity)) {
+                return false;
+            }
+            if (start == writePosition) {
+                evictOverlapping(start, start + length);
+            } else {
+                evictOverlapping(writePosition, capacity);
+                evictOverlapping(0, length);
+            }
+            final ByteBuffer target = data.duplicate();
+            target.position(start);
+            target.put(frame.getData());
+            writePosition = start + length;
+            entries.addLast(new Entry(start, length, frame.getWidth(), frame.getHeight(), captureNanos));
+            evictExpired(captureNanos);
+        }
+        return true;
+    }
+
+    /**
+     * Writes frames kept at the moment of the call into a movie. The last frame lasts until the moment of the call, the
+     * movie covers the replay duration at most: the first frame, captured before it, is shown from its start.
+     * Frames preceding the last change of the frame size are skipped.
+     *
+     * @param file      movie file to write
+     * @param timeScale time units per second of the movie
+     * @return amount of written frames, nothing is written if there are no frames
+     * @throws IORuntimeException if writing the movie failed
+     */
+    public int writeTo(File file, int timeScale) {
+        synchronized (writeLock) {
+            final long endNanos = System.nanoTime();
+            final long startNanos = endNanos - durationNanos;
+            final List<Entry> snapshot;
+            final ByteBuffer source;
+            synchronized (this) {
+                snapshot = new ArrayList<>(entries);
+                // The video track has a single size, so the replay starts after the last change of the screen size.
+                final Entry newest = entries.peekLast();
+                int first = snapshot.size();
+                while (first > 0 && snapshot.get(first - 1).width == newest.width
+                        && snapshot.get(first - 1).height == newest.height) {
+                    first--;
+                }
+                // Frames replaced before the start of the replay are not shown at all.
+                while (first < snapshot.size() - 1 && snapshot.get(first + 1).captureNanos <= startNanos) {
+                    first++;
+                }
+                snapshot.subList(0, first).clear();
+                pinnedEntries = snapshot;
+                source = data;
+            }
+            try {
+                return write(file, timeScale, snapshot, source, startNanos, endNanos);
+            } finally {
+                synchronized (this) {
+                    pinnedEntries = Collections.emptyList();
+                }
+            }
+        }
+    }
+
+    private int write(File file, int timeScale, List<Entry> snapshot, ByteBuffer source, long startNanos,
+                      long endNanos) {
+        if (snapshot.isEmpty()) {
+            return 0;
+        }
+        final QuickTimeOutputStream qos;
+        try {
+            qos = new QuickTimeOutputStream(file, videoFormat);
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+        try {
+            qos.setTimeScale(timeScale);
+            final MovieTimeline timeline = new MovieTimeline(qos);
+            for (int i = 0; i < snapshot.size(); i++) {
+                final Entry entry = snapshot.get(i);
+                final ByteBuffer sample = source.duplicate();
+                sample.limit(entry.offset + entry.length);
+                sample.position(entry.offset);
+                timeline.writeFrame(new EncodedFrame(entry.width, entry.height, sample, true),
+                        Math.max(entry.captureNanos, startNanos), i);
+            }
+            timeline.advanceTo(endNanos);
+        } finally {
+            qos.close();
+        }
+        return snapshot.size();
+    }
+
+    private boolean isPinned(int from, int to) {
+        for (Entry entry : pinnedEntries) {
+            if (entry.offset < to && entry.offset + entry.length > from) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops the oldest frames while they occupy a part of the given range of the buffer.
+     */
+    private void evictOverlapping(int from, int to) {
+        Entry oldest = entries.peekFirst();
+        while (oldest != null && oldest.offset < to && oldest.offset + oldest.length > from) {
+            entries.removeFirst();
+            oldest = entries.peekFirst();
+        }
+    }
+
+    /**
+     * Drops frames replaced by a frame captured earlier than the replay duration before the given moment.
+     */
+    private void evictExpired(long newestCaptureNanos) {
+        while (entries.size() > 1) {
+            final Entry oldest = entries.removeFirst();
+            final Entry next = entries.peekFirst();
+            if (newestCaptureNanos - next.captureNanos < durationNanos) {
+                entries.addFirst(oldest);
+                return;
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final int offset;
+        private final int length;
+        private final int width;
+        private final int height;
+        private final long captureNanos;
+
+        private Entry(int offset, int length, int width, int height, long captureNanos) {
+            this.offset = offset;
+            this.length = length;
+            this.width = width;
+            this.height = height;
+            this.captureNanos = captureNanos;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.github.xsavikx.androidscreencast.api.recording;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Sample table of the video track.
+ * <p>
+ * Offsets and sizes of samples are kept in growable primitive arrays, durations are run-length compressed, so a
+ * sample takes 12 bytes of heap. Key frames are listed only if some samples depend on previous ones. Tables are
+ * written to atoms in big-endian blocks rather than value by value.
+ */
+final class SampleTable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long MAX_32_BIT_VALUE = 0xffffffffL;
+    private long[] offsets = new long[INITIAL_CAPACITY];
+    private int[] sizes = new int[INITIAL_CAPACITY];
+    private int sampleCount;
+    /**
+     * Amount of consecutive samples in every run of equal durations.
+     */
+    private int[] runLengths = new int[16];
+    /**
+     * Duration of samples in every run.
+     */
+    private int[] runDurations = new int[16];
+    private int runCount;
+    private long totalDuration;
+    /**
+     * One-based numbers of key frame samples.
+     */
+    private int[] syncSamples = new int[16];
+    private int syncCount;
+
+    /**
+     * @param offset   offset of the sample relative to the start of the QuickTime file
+     * @param size     data length of the sample
+     * @param duration duration of the sample in time scale units
+     * @param keyFrame whether the sample can be decoded without previous samples
+     */
+    void add(final long offset, final long size, final int duration, final boolean keyFrame) {
+        checkArgument(size <= MAX_32_BIT_VALUE, "Sample size should fit into 32 bits, but was %s", size);
+        if (sampleCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, sampleCount * 2);
+            sizes = Arrays.copyOf(sizes, sampleCount * 2);
+        }
+        offsets[sampleCount] = offset;
+        sizes[sampleCount] = (int) size;
+        sampleCount++;
+        if (keyFrame) {
+            if (syncCount == syncSamples.length) {
+                syncSamples = Arrays.copyOf(syncSamples, syncCount * 2);
+            }
+            syncSamples[syncCount++] = sampleCount;
+        }
+        if (runCount > 0 && runDurations[runCount - 1] == duration) {
+            runLengths[runCount - 1]++;
+        } else {
+            if (runCount == runLengths.length) {
+                runLengths = Arrays.copyOf(runLengths, runCount * 2);
+                runDurations = Arrays.copyOf(runDurations, runCount * 2);
+            }
+            runLengths[runCount] = 1;
+            runDurations[runCount] = duration;
+            runCount++;
+        }
+        totalDuration += duration;
+    }
+
+    /**
+     * Extends the duration of the last sample.
+     *
+     * @param duration duration to add in time scale units
+     */
+    void extendLast(final int duration) {
+        checkState(sampleCount > 0, "There is no sample to extend.");
+        final int last = runCount - 1;
+        final int extendedDuration = runDurations[last] + duration;
+        if (runLengths[last] == 1) {
+            if (last > 0 && runDurations[last - 1] == extendedDuration) {
+                runLengths[last - 1]++;
+                runCount--;
+            } else {
+                runDurations[last] = extendedDuration;
+            }
+        } else {
+            runLengths[last]--;
+            if (runCount == runLengths.length) {
+                runLengths = Arrays.copyOf(runLengths, runCount * 2);
+                runDurations = Arrays.copyOf(runDurations, runCount * 2);
+            }
+            runLengths[runCount] = 1;
+            runDurations[runCount] = extendedDuration;
+            runCount++;
+        }
+        totalDuration += duration;
+    }
+
+    int size() {
+        return sampleCount;
+    }
+
+    long getTotalDuration() {
+        return totalDuration;
+    }
+
+    /**
+     * @return whether some samples are not key frames, so a sync sample table is required
+     */
+    boolean hasNonSyncSamples() {
+        return syncCount < sampleCount;
+    }
+
+    int getSyncSampleCount() {
+        return syncCount;
+    }
+
+    int getRunCount() {
+        return runCount;
+    }
+
+    /**
+     * @return whether some sample offset does not fit into 32 bits, so a 64-bit chunk offset table is required
+     */
+    boolean requiresWideOffsets() {
+        return sampleCount > 0 && offsets[sampleCount - 1] > MAX_32_BIT_VALUE;
+    }
+
+    /**
+     * Writes the size of every sample as a 32-bit unsigned integer.
+     */
+    void writeSizes(final OutputStream out) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        for (int i = 0; i < sampleCount; i++) {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush(buffer, out);
+            }
+            buffer.putInt(sizes[i]);
+        }
+        flush(buffer, out);
+    }
+
+    /**
+     * Writes the offset of every sample as a 32-bit or 64-bit unsigned integer.
+     */
+    void writeOffsets(final OutputStream out, final boolean wide) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        for (int i = 0; i < sampleCount; i++) {
+            if (buffer.remaining() < Long.BYTES) {
+                flush(buffer, out);
+            }
+            if (wide) {
+                buffer.putLong(offsets[i]);
+            } else {
+                buffer.putInt((int) offsets[i]);
+            }
+        }
+        flush(buffer, out);
+    }
+
+    /**
+     * Writes sample count and sample duration of every run of equal durations.
+     */
+    void writeTimeToSample(final OutputStream out) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        for (int i = 0; i < runCount; i++) {
+            if (buffer.remaining() < 2 * Integer.BYTES) {
+                flush(buffer, out);
+            }
+            buffer.putInt(runLengths[i]);
+            buffer.putInt(runDurations[i]);
+        }
+        flush(buffer, out);
+    }
+
+    /**
+     * Writes the one-based number of every key frame sample.
+     */
+    void writeSyncSamples(final OutputStream out) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        for (int i = 0; i < syncCount; i++) {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush(buffer, out);
+            }
+            buffer.putInt(syncSamples[i]);
+        }
+        flush(buffer, out);
+    }
+
+    /**
+     * Writes duration and size of every sample, as required by a track fragment run.
+     *
+     * @param syncFlags    sample flags of key frames, written only if {@code writeFlags} is set
+     * @param nonSyncFlags sample flags of other samples, written only if {@code writeFlags} is set
+     */
+    void writeFragmentRun(final OutputStream out, final boolean writeFlags, final int syncFlags,
+                          final int nonSyncFlags) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        int sample = 0;
+        int nextSync = 0;
+        for (int i = 0; i < runCount; i++) {
+            for (int j = 0; j < runLengths[i]; j++) {
+                if (buffer.remaining() < 3 * Integer.BYTES) {
+                    flush(buffer, out);
+                }
+                buffer.putInt(runDurations[i]);
+                buffer.putInt(sizes[sample++]);
+                if (writeFlags) {
+                    final boolean sync = nextSync < syncCount && syncSamples[nextSync] == sample;
+                    if (sync) {
+                        nextSync++;
+                    }
+                    buffer.putInt(sync ? syncFlags : nonSyncFlags);
+                }
+            }
+        }
+        flush(buffer, out);
+    }
+
+    /**
+     * Removes all samples, keeping the allocated arrays.
+     */
+    void clear() {
+        sampleCount = 0;
+        runCount = 0;
+        totalDuration = 0;
+        syncCount = 0;
+    }
+
+    private static void flush(final ByteBuffer buffer, final OutputStream out) throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+}
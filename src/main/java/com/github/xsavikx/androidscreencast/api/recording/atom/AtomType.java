@@ -26,15 +26,26 @@ public enum AtomType {
     JAVA("java"),
     JPEG("jpeg"),
     PNG("png "),
+    ANIMATION("rle "),
     TIME_TO_SAMPLE_MAPPING("stts"),
     SAMPLE_TO_CHUNK_MAPPING("stsc"),
     SAMPLE_SIZE("stsz"),
+    SYNC_SAMPLE("stss"),
     STANDARD_CHUNK_OFFSET_TABLE("stco"),
     WIDE_CHUNK_OFFSET_TABLE("co64"),
     FILE_TYPE("ftyp"),
     QUICK_TIME("qt  "),
     WIDE("wide"),
-    DATA_HANDLER("dhlr");
+    DATA_HANDLER("dhlr"),
+    MOVIE_EXTENDS("mvex"),
+    MOVIE_EXTENDS_HEADER("mehd"),
+    TRACK_EXTENDS("trex"),
+    MOVIE_FRAGMENT("moof"),
+    MOVIE_FRAGMENT_HEADER("mfhd"),
+    TRACK_FRAGMENT("traf"),
+    TRACK_FRAGMENT_HEADER("tfhd"),
+    TRACK_FRAGMENT_RUN("trun"),
+    FREE("free");
     /**
      * String representation of AtomType that must have exactly 4 characters
      */
@@ -2,6 +2,7 @@ package com.github.xsavikx.androidscreencast.app;
 
 import com.android.ddmlib.IDevice;
 import com.github.xsavikx.androidscreencast.api.adb.AndroidDebugBridgeWrapper;
+import com.github.xsavikx.androidscreencast.api.adb.ShellSessionPool;
 import com.github.xsavikx.androidscreencast.api.injector.Injector;
 import com.github.xsavikx.androidscreencast.configuration.ApplicationConfiguration;
 import com.github.xsavikx.androidscreencast.ui.JFrameMain;
@@ -21,16 +22,19 @@ public final class AndroidScreencastApplication extends SwingApplication {
     private final Injector injector;
     private final IDevice iDevice;
     private final AndroidDebugBridgeWrapper wrapper;
+    private final ShellSessionPool shellSessionPool;
     private transient boolean isStopped = false;
 
     @Inject
     public AndroidScreencastApplication(final Injector injector, final IDevice iDevice, final JFrameMain jFrameMain,
-                                        final ApplicationConfiguration applicationConfiguration, AndroidDebugBridgeWrapper wrapper) {
+                                        final ApplicationConfiguration applicationConfiguration, AndroidDebugBridgeWrapper wrapper,
+                                        final ShellSessionPool shellSessionPool) {
         super(applicationConfiguration);
         this.injector = injector;
         this.iDevice = iDevice;
         this.jFrameMain = jFrameMain;
         this.wrapper = wrapper;
+        this.shellSessionPool = shellSessionPool;
     }
 
     @Override
@@ -41,6 +45,7 @@ public final class AndroidScreencastApplication extends SwingApplication {
             return;
         }
         injector.stop();
+        shellSessionPool.close();
         wrapper.stop();
         for (final Frame frame : Frame.getFrames()) {
             frame.dispose();
@@ -6,10 +6,34 @@ public enum ApplicationConfigurationProperty {
     ADB_PATH(ADB_PATH_KEY, ""),
     ADB_DEVICE_TIMEOUT(ADB_DEVICE_TIMEOUT_KEY, "30"),
     ADB_COMMAND_TIMEOUT(ADB_COMMAND_TIMEOUT_KEY, "5"),
+    ADB_SHELL_SESSIONS(ADB_SHELL_SESSIONS_KEY, "2"),
     APP_WINDOW_WIDTH(APP_WINDOW_WIDTH_KEY, "1024"),
     APP_WINDOW_HEIGHT(APP_WINDOW_HEIGHT_KEY, "768"),
     APP_NATIVE_LOOK(APP_NATIVE_LOOK_KEY, "true"),
-    APP_DEBUG_ENABLED(APP_DEBUG_ENABLED_KEY, "false");
+    APP_DEBUG_ENABLED(APP_DEBUG_ENABLED_KEY, "false"),
+    APP_RECORDING_QUEUE_SIZE(APP_RECORDING_QUEUE_SIZE_KEY, "8"),
+    APP_RECORDING_QUEUE_POLICY(APP_RECORDING_QUEUE_POLICY_KEY, "DROP_NEWEST"),
+    APP_RECORDING_ENCODER_THREADS(APP_RECORDING_ENCODER_THREADS_KEY, "0"),
+    APP_RECORDING_FRAGMENT_FRAMES(APP_RECORDING_FRAGMENT_FRAMES_KEY, "30"),
+    APP_RECORDING_FORMAT(APP_RECORDING_FORMAT_KEY, "JPG"),
+    APP_RECORDING_MODE(APP_RECORDING_MODE_KEY, "LIVE"),
+    APP_RECORDING_SPOOL_COMPRESSION(APP_RECORDING_SPOOL_COMPRESSION_KEY, "false"),
+    APP_REPLAY_SECONDS(APP_REPLAY_SECONDS_KEY, "0"),
+    APP_REPLAY_MEMORY(APP_REPLAY_MEMORY_KEY, "64"),
+    APP_CONVERSION_PARALLEL(APP_CONVERSION_PARALLEL_KEY, "AUTO"),
+    APP_CONVERSION_PARALLEL_THRESHOLD(APP_CONVERSION_PARALLEL_THRESHOLD_KEY, "2073600"),
+    APP_CONVERSION_SCALE(APP_CONVERSION_SCALE_KEY, "1"),
+    APP_ORIENTATION_AUTO(APP_ORIENTATION_AUTO_KEY, "true"),
+    APP_ORIENTATION_POLL_INTERVAL(APP_ORIENTATION_POLL_INTERVAL_KEY, "1000"),
+    APP_CAPTURE_FPS(APP_CAPTURE_FPS_KEY, "30"),
+    APP_CAPTURE_IDLE_FPS(APP_CAPTURE_IDLE_FPS_KEY, "2"),
+    APP_CAPTURE_IDLE_FRAMES(APP_CAPTURE_IDLE_FRAMES_KEY, "30"),
+    APP_HUD_ENABLED(APP_HUD_ENABLED_KEY, "false"),
+    APP_INPUT_QUEUE_SIZE(APP_INPUT_QUEUE_SIZE_KEY, "32"),
+    APP_INPUT_QUEUE_POLICY(APP_INPUT_QUEUE_POLICY_KEY, "DROP_NEWEST"),
+    APP_INPUT_TEXT_WINDOW(APP_INPUT_TEXT_WINDOW_KEY, "50"),
+    APP_INPUT_GESTURES(APP_INPUT_GESTURES_KEY, "AUTO"),
+    APP_INPUT_BACKEND(APP_INPUT_BACKEND_KEY, "SHELL");
     private final String propertyKey;
     private final String defaultValue;
 
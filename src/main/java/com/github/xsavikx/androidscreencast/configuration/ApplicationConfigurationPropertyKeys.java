@@ -4,10 +4,34 @@ public final class ApplicationConfigurationPropertyKeys {
     public static final String ADB_PATH_KEY = "adb.path";
     public static final String ADB_DEVICE_TIMEOUT_KEY = "adb.device.timeout";
     public static final String ADB_COMMAND_TIMEOUT_KEY = "adb.command.timeout";
+    public static final String ADB_SHELL_SESSIONS_KEY = "adb.shell.sessions";
     public static final String APP_WINDOW_WIDTH_KEY = "app.window.width";
     public static final String APP_WINDOW_HEIGHT_KEY = "app.window.height";
     public static final String APP_NATIVE_LOOK_KEY = "app.native.look";
     public static final String APP_DEBUG_ENABLED_KEY = "app.debug.enabled";
+    public static final String APP_RECORDING_QUEUE_SIZE_KEY = "app.recording.queue.size";
+    public static final String APP_RECORDING_QUEUE_POLICY_KEY = "app.recording.queue.policy";
+    public static final String APP_RECORDING_ENCODER_THREADS_KEY = "app.recording.encoder.threads";
+    public static final String APP_RECORDING_FRAGMENT_FRAMES_KEY = "app.recording.fragment.frames";
+    public static final String APP_RECORDING_FORMAT_KEY = "app.recording.format";
+    public static final String APP_RECORDING_MODE_KEY = "app.recording.mode";
+    public static final String APP_RECORDING_SPOOL_COMPRESSION_KEY = "app.recording.spool.compression";
+    public static final String APP_REPLAY_SECONDS_KEY = "app.replay.seconds";
+    public static final String APP_REPLAY_MEMORY_KEY = "app.replay.memory";
+    public static final String APP_CONVERSION_PARALLEL_KEY = "app.conversion.parallel";
+    public static final String APP_CONVERSION_PARALLEL_THRESHOLD_KEY = "app.conversion.parallel.threshold";
+    public static final String APP_CONVERSION_SCALE_KEY = "app.conversion.scale";
+    public static final String APP_ORIENTATION_AUTO_KEY = "app.orientation.auto";
+    public static final String APP_ORIENTATION_POLL_INTERVAL_KEY = "app.orientation.poll.interval";
+    public static final String APP_CAPTURE_FPS_KEY = "app.capture.fps";
+    public static final String APP_CAPTURE_IDLE_FPS_KEY = "app.capture.idle.fps";
+    public static final String APP_CAPTURE_IDLE_FRAMES_KEY = "app.capture.idle.frames";
+    public static final String APP_HUD_ENABLED_KEY = "app.hud.enabled";
+    public static final String APP_INPUT_QUEUE_SIZE_KEY = "app.input.queue.size";
+    public static final String APP_INPUT_QUEUE_POLICY_KEY = "app.input.queue.policy";
+    public static final String APP_INPUT_TEXT_WINDOW_KEY = "app.input.text.window";
+    public static final String APP_INPUT_GESTURES_KEY = "app.input.gestures";
+    public static final String APP_INPUT_BACKEND_KEY = "app.input.backend";
 
     private ApplicationConfigurationPropertyKeys() {
         //
@@ -5,16 +5,26 @@ import com.android.ddmlib.NullOutputReceiver;
 import com.github.xsavikx.androidscreencast.api.AndroidDevice;
 import com.github.xsavikx.androidscreencast.api.AndroidDeviceImpl;
 import com.github.xsavikx.androidscreencast.api.command.executor.CommandExecutor;
+import com.github.xsavikx.androidscreencast.api.command.executor.EvdevCommandExecutor;
+import com.github.xsavikx.androidscreencast.api.command.executor.QueuedCommandExecutor;
 import com.github.xsavikx.androidscreencast.api.command.executor.ShellCommandExecutor;
 import com.github.xsavikx.androidscreencast.api.command.factory.AdbInputCommandFactory;
 import com.github.xsavikx.androidscreencast.api.command.factory.InputCommandFactory;
+import com.github.xsavikx.androidscreencast.api.image.ParallelConversionMode;
+import com.github.xsavikx.androidscreencast.api.injector.DropPolicy;
+import com.github.xsavikx.androidscreencast.api.injector.GestureMode;
+import com.github.xsavikx.androidscreencast.api.injector.InputBackend;
 import com.github.xsavikx.androidscreencast.api.injector.MultiLineReceiverPrinter;
+import com.github.xsavikx.androidscreencast.api.injector.RecordingMode;
+import com.github.xsavikx.androidscreencast.api.recording.QuickTimeOutputStream;
 import com.github.xsavikx.androidscreencast.configuration.ApplicationConfiguration;
 import dagger.Module;
 import dagger.Provides;
 
 import javax.inject.Named;
+import javax.inject.Provider;
 import javax.inject.Singleton;
+import java.util.Locale;
 
 import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationProperty.*;
 import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.*;
@@ -28,6 +38,13 @@ public class ApiModule {
         return Long.valueOf(applicationConfiguration.getProperty(ADB_COMMAND_TIMEOUT));
     }
 
+    @Singleton
+    @Named(ADB_SHELL_SESSIONS_KEY)
+    @Provides
+    public static int adbShellSessions(ApplicationConfiguration applicationConfiguration) {
+        return Integer.valueOf(applicationConfiguration.getProperty(ADB_SHELL_SESSIONS));
+    }
+
     @Singleton
     @Named(ADB_DEVICE_TIMEOUT_KEY)
     @Provides
@@ -44,8 +61,48 @@ public class ApiModule {
 
     @Singleton
     @Provides
-    public static CommandExecutor commandExecutor(ShellCommandExecutor shellCommandExecutor) {
-        return shellCommandExecutor;
+    public static CommandExecutor commandExecutor(QueuedCommandExecutor queuedCommandExecutor) {
+        return queuedCommandExecutor;
+    }
+
+    @Singleton
+    @Named(APP_INPUT_QUEUE_SIZE_KEY)
+    @Provides
+    public static int inputQueueSize(ApplicationConfiguration applicationConfiguration) {
+        return Integer.valueOf(applicationConfiguration.getProperty(APP_INPUT_QUEUE_SIZE));
+    }
+
+    @Singleton
+    @Named(APP_INPUT_QUEUE_POLICY_KEY)
+    @Provides
+    public static DropPolicy inputQueuePolicy(ApplicationConfiguration applicationConfiguration) {
+        return DropPolicy.valueOf(applicationConfiguration.getProperty(APP_INPUT_QUEUE_POLICY).trim().toUpperCase(Locale.ENGLISH));
+    }
+
+    @Singleton
+    @Named(APP_INPUT_GESTURES_KEY)
+    @Provides
+    public static GestureMode inputGestures(ApplicationConfiguration applicationConfiguration) {
+        return GestureMode.valueOf(applicationConfiguration.getProperty(APP_INPUT_GESTURES).trim().toUpperCase(Locale.ENGLISH));
+    }
+
+    @Singleton
+    @Named(APP_INPUT_BACKEND_KEY)
+    @Provides
+    public static InputBackend inputBackend(ApplicationConfiguration applicationConfiguration) {
+        return InputBackend.valueOf(applicationConfiguration.getProperty(APP_INPUT_BACKEND).trim().toUpperCase(Locale.ENGLISH));
+    }
+
+    @Singleton
+    @Named(APP_INPUT_BACKEND_KEY)
+    @Provides
+    public static CommandExecutor inputBackendCommandExecutor(@Named(APP_INPUT_BACKEND_KEY) InputBackend inputBackend,
+                                                              Provider<ShellCommandExecutor> shellCommandExecutor,
+                                                              Provider<EvdevCommandExecutor> evdevCommandExecutor) {
+        if (inputBackend == InputBackend.EVDEV) {
+            return evdevCommandExecutor.get();
+        }
+        return shellCommandExecutor.get();
     }
 
     @Singleton
@@ -75,4 +132,123 @@ public class ApiModule {
         }
         return NullOutputReceiver.getReceiver();
     }
+
+    @Singleton
+    @Named(APP_RECORDING_QUEUE_SIZE_KEY)
+    @Provides
+    public static int recordingQueueSize(ApplicationConfiguration applicationConfiguration) {
+        return Integer.valueOf(applicationConfiguration.getProperty(APP_RECORDING_QUEUE_SIZE));
+    }
+
+    @Singleton
+    @Named(APP_RECORDING_QUEUE_POLICY_KEY)
+    @Provides
+    public static DropPolicy recordingQueuePolicy(ApplicationConfiguration applicationConfiguration) {
+        return DropPolicy.valueOf(applicationConfiguration.getProperty(APP_RECORDING_QUEUE_POLICY).trim().toUpperCase(Locale.ENGLISH));
+    }
+
+    @Singleton
+    @Named(APP_RECORDING_ENCODER_THREADS_KEY)
+    @Provides
+    public static int recordingEncoderThreads(ApplicationConfiguration applicationConfiguration) {
+        return Integer.valueOf(applicationConfiguration.getProperty(APP_RECORDING_ENCODER_THREADS));
+    }
+
+    @Singleton
+    @Named(APP_RECORDING_FRAGMENT_FRAMES_KEY)
+    @Provides
+    public static int recordingFragmentFrames(ApplicationConfiguration applicationConfiguration) {
+        return Integer.valueOf(applicationConfiguration.getProperty(APP_RECORDING_FRAGMENT_FRAMES));
+    }
+
+    @Singleton
+    @Named(APP_RECORDING_FORMAT_KEY)
+    @Provides
+    public static QuickTimeOutputStream.VideoFormat recordingFormat(ApplicationConfiguration applicationConfiguration) {
+        return QuickTimeOutputStream.VideoFormat.valueOf(applicationConfiguration.getProperty(APP_RECORDING_FORMAT).trim().toUpperCase(Locale.ENGLISH));
+    }
+
+    @Singleton
+    @Named(APP_RECORDING_MODE_KEY)
+    @Provides
+    public static RecordingMode recordingMode(ApplicationConfiguration applicationConfiguration) {
+        return RecordingMode.valueOf(applicationConfiguration.getProperty(APP_RECORDING_MODE).trim().toUpperCase(Locale.ENGLISH));
+    }
+
+    @Singleton
+    @Named(APP_RECORDING_SPOOL_COMPRESSION_KEY)
+    @Provides
+    public static boolean isRecordingSpoolCompressionEnabled(ApplicationConfiguration applicationConfiguration) {
+        return Boolean.valueOf(applicationConfiguration.getProperty(APP_RECORDING_SPOOL_COMPRESSION));
+    }
+
+    @Singleton
+    @Named(APP_REPLAY_SECONDS_KEY)
+    @Provides
+    public static int replaySeconds(ApplicationConfiguration applicationConfiguration) {
+        return Integer.valueOf(applicationConfiguration.getProperty(APP_REPLAY_SECONDS));
+    }
+
+    @Singleton
+    @Named(APP_REPLAY_MEMORY_KEY)
+    @Provides
+    public static int replayMemory(ApplicationConfiguration applicationConfiguration) {
+        return Integer.valueOf(applicationConfiguration.getProperty(APP_REPLAY_MEMORY));
+    }
+
+    @Singleton
+    @Named(APP_CONVERSION_PARALLEL_KEY)
+    @Provides
+    public static ParallelConversionMode parallelConversionMode(ApplicationConfiguration applicationConfiguration) {
+        return ParallelConversionMode.valueOf(applicationConfiguration.getProperty(APP_CONVERSION_PARALLEL).trim().toUpperCase(Locale.ENGLISH));
+    }
+
+    @Singleton
+    @Named(APP_CONVERSION_PARALLEL_THRESHOLD_KEY)
+    @Provides
+    public static int parallelConversionThreshold(ApplicationConfiguration applicationConfiguration) {
+        return Integer.valueOf(applicationConfiguration.getProperty(APP_CONVERSION_PARALLEL_THRESHOLD));
+    }
+
+    @Singleton
+    @Named(APP_CONVERSION_SCALE_KEY)
+    @Provides
+    public static int conversionScale(ApplicationConfiguration applicationConfiguration) {
+        return Integer.valueOf(applicationConfiguration.getProperty(APP_CONVERSION_SCALE));
+    }
+
+    @Singleton
+    @Named(APP_ORIENTATION_AUTO_KEY)
+    @Provides
+    public static boolean isAutoOrientationEnabled(ApplicationConfiguration applicationConfiguration) {
+        return Boolean.valueOf(applicationConfiguration.getProperty(APP_ORIENTATION_AUTO));
+    }
+
+    @Singleton
+    @Named(APP_ORIENTATION_POLL_INTERVAL_KEY)
+    @Provides
+    public static long orientationPollInterval(ApplicationConfiguration applicationConfiguration) {
+        return Long.valueOf(applicationConfiguration.getProperty(APP_ORIENTATION_POLL_INTERVAL));
+    }
+
+    @Singleton
+    @Named(APP_CAPTURE_FPS_KEY)
+    @Provides
+    public static int captureFps(ApplicationConfiguration applicationConfiguration) {
+        return Integer.valueOf(applicationConfiguration.getProperty(APP_CAPTURE_FPS));
+    }
+
+    @Singleton
+    @Named(APP_CAPTURE_IDLE_FPS_KEY)
+    @Provides
+    public static int captureIdleFps(ApplicationConfiguration applicationConfiguration) {
+        return Integer.valueOf(applicationConfiguration.getProperty(APP_CAPTURE_IDLE_FPS));
+    }
+
+    @Singleton
+    @Named(APP_CAPTURE_IDLE_FRAMES_KEY)
+    @Provides
+    public static int captureIdleFrames(ApplicationConfiguration applicationConfiguration) {
+        return Integer.valueOf(applicationConfiguration.getProperty(APP_CAPTURE_IDLE_FRAMES));
+    }
 }
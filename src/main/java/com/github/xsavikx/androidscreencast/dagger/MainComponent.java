@@ -2,7 +2,9 @@ package com.github.xsavikx.androidscreencast.dagger;
 
 import com.github.xsavikx.androidscreencast.api.command.executor.CommandExecutor;
 import com.github.xsavikx.androidscreencast.api.command.factory.InputCommandFactory;
+import com.github.xsavikx.androidscreencast.api.injector.Injector;
 import com.github.xsavikx.androidscreencast.app.Application;
+import com.github.xsavikx.androidscreencast.ui.interaction.TypedTextBuffer;
 import dagger.Component;
 
 import javax.inject.Singleton;
@@ -15,4 +17,8 @@ public interface MainComponent {
     CommandExecutor commandExecutor();
 
     InputCommandFactory inputCommandFactory();
+
+    Injector injector();
+
+    TypedTextBuffer typedTextBuffer();
 }
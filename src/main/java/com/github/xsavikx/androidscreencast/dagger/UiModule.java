@@ -9,6 +9,8 @@ import dagger.Provides;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_HUD_ENABLED_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_INPUT_TEXT_WINDOW_KEY;
 import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_WINDOW_HEIGHT_KEY;
 import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_WINDOW_WIDTH_KEY;
 
@@ -28,6 +30,20 @@ public class UiModule {
         return Integer.valueOf(applicationConfiguration.getProperty(ApplicationConfigurationProperty.APP_WINDOW_WIDTH));
     }
 
+    @Singleton
+    @Named(APP_HUD_ENABLED_KEY)
+    @Provides
+    public static boolean isHudEnabled(final ApplicationConfiguration applicationConfiguration) {
+        return Boolean.valueOf(applicationConfiguration.getProperty(ApplicationConfigurationProperty.APP_HUD_ENABLED));
+    }
+
+    @Singleton
+    @Named(APP_INPUT_TEXT_WINDOW_KEY)
+    @Provides
+    public static int inputTextWindow(final ApplicationConfiguration applicationConfiguration) {
+        return Integer.valueOf(applicationConfiguration.getProperty(ApplicationConfigurationProperty.APP_INPUT_TEXT_WINDOW));
+    }
+
     @Singleton
     @Provides
     public static InputKeyEvent[] initialData() {
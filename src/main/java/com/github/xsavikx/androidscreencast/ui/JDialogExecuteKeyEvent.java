@@ -62,12 +62,10 @@ public final class JDialogExecuteKeyEvent extends JDialog {
             if (rowIndex > 0) {
 
                 final String title = (String) commandListTable.getModel().getValueAt(rowIndex, TITLE_COLUMN_INDEX);
-                SwingUtilities.invokeLater(() -> {
-                    final InputKeyEvent inputKeyEvent = InputKeyEvent.valueOf(title);
-                    final boolean longPress = useLongPress.getState();
-                    final KeyCommand keyCommand = inputCommandFactory.getKeyCommand(inputKeyEvent, longPress);
-                    commandExecutor.execute(keyCommand);
-                });
+                final InputKeyEvent inputKeyEvent = InputKeyEvent.valueOf(title);
+                final boolean longPress = useLongPress.getState();
+                final KeyCommand keyCommand = inputCommandFactory.getKeyCommand(inputKeyEvent, longPress);
+                commandExecutor.submit(keyCommand);
                 closeDialog();
             } else {
                 JOptionPane.showMessageDialog(null, NO_COMMAND_CHOSEN_WARNING_MESSAGE, NO_COMMAND_CHOSEN_WARNING_DIALOG_TITLE,
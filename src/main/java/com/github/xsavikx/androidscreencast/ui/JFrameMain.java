@@ -8,6 +8,7 @@ import com.github.xsavikx.androidscreencast.ui.explorer.JFrameExplorer;
 import com.github.xsavikx.androidscreencast.ui.interaction.KeyEventDispatcherFactory;
 import com.github.xsavikx.androidscreencast.ui.interaction.KeyboardActionListenerFactory;
 import com.github.xsavikx.androidscreencast.ui.interaction.MouseActionAdapter;
+import com.github.xsavikx.androidscreencast.ui.worker.SwingWorker;
 import com.google.common.io.Files;
 
 import javax.inject.Inject;
@@ -18,9 +19,13 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 
 import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_WINDOW_HEIGHT_KEY;
 import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_WINDOW_WIDTH_KEY;
@@ -49,6 +54,7 @@ public final class JFrameMain extends JFrame {
     private JButton jbKbPhoneOn = new JButton("Call");
     private JButton jbKbPhoneOff = new JButton("End call");
     private JButton jbRecord = new JButton("Start record");
+    private JButton jbReplay = new JButton("Save replay");
     private Dimension oldImageDimension;
 
     @Inject
@@ -91,6 +97,7 @@ public final class JFrameMain extends JFrame {
         jbKbPhoneOff.setFocusable(false);
         jbExecuteKeyEvent.setFocusable(false);
         jbRecord.setFocusable(false);
+        jbReplay.setFocusable(false);
 
         jbKbHome.addActionListener(KeyboardActionListenerFactory.getInstance(InputKeyEvent.KEYCODE_HOME));
         jbKbMenu.addActionListener(KeyboardActionListenerFactory.getInstance(InputKeyEvent.KEYCODE_MENU));
@@ -99,6 +106,7 @@ public final class JFrameMain extends JFrame {
         jbKbPhoneOn.addActionListener(KeyboardActionListenerFactory.getInstance(InputKeyEvent.KEYCODE_CALL));
         jbKbPhoneOff.addActionListener(KeyboardActionListenerFactory.getInstance(InputKeyEvent.KEYCODE_ENDCALL));
         jbRecord.addActionListener(createRecordActionListener());
+        jbReplay.addActionListener(actionEvent -> saveReplay());
 
 
         jtbHardkeys.add(jbKbHome);
@@ -118,9 +126,21 @@ public final class JFrameMain extends JFrame {
         setLocationRelativeTo(null);
         setPreferredWindowSize();
 
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowIconified(WindowEvent e) {
+                injector.setScreenVisible(false);
+            }
+
+            @Override
+            public void windowDeiconified(WindowEvent e) {
+                injector.setScreenVisible(true);
+            }
+        });
         jp.addMouseMotionListener(ma);
         jp.addMouseListener(ma);
         jp.addMouseWheelListener(ma);
+        ma.resolveGestureMode();
 
         jbExplorer.addActionListener(actionEvent -> {
             SwingUtilities.invokeLater(() -> {
@@ -138,6 +158,9 @@ public final class JFrameMain extends JFrame {
 
         jtb.add(jbExecuteKeyEvent);
         jtb.add(jbRecord);
+        if (injector.isReplayEnabled()) {
+            jtb.add(jbReplay);
+        }
     }
 
     private void setPreferredWindowSize() {
@@ -161,21 +184,8 @@ public final class JFrameMain extends JFrame {
                         startRecording(tmpVideoFile);
                     } else {
                         recording = false;
-                        stopRecording();
                         jbRecord.setText("Start record");
-                        JFileChooser jFileChooser = new JFileChooser();
-                        FileNameExtensionFilter filter = new FileNameExtensionFilter("Video file", "mov");
-                        jFileChooser.setFileFilter(filter);
-                        int returnVal = jFileChooser.showSaveDialog(JFrameMain.this);
-                        if (returnVal == JFileChooser.APPROVE_OPTION) {
-                            File resultFile = jFileChooser.getSelectedFile();
-                            if (!resultFile.getName().endsWith(".mov")) {
-                                resultFile = new File(resultFile.getAbsolutePath() + ".mov");
-                            }
-                            Files.move(tmpVideoFile, resultFile);
-                        } else {
-                            tmpVideoFile.deleteOnExit();
-                        }
+                        stopRecording(tmpVideoFile);
                     }
                 } catch (IOException ex) {
                     throw new IORuntimeException(ex);
@@ -184,14 +194,161 @@ public final class JFrameMain extends JFrame {
         };
     }
 
+    /**
+     * Stops recording in background, as the recorder writes all queued frames first, and then offers to save the movie
+     * or encodes a deferred recording. Recording can't be started again until the recording is stopped.
+     */
+    private void stopRecording(final File videoFile) {
+        jbRecord.setEnabled(false);
+        final SwingWorker<Optional<File>, Void> worker = new SwingWorker<Optional<File>, Void>() {
+            @Override
+            protected Optional<File> doInBackground() throws Exception {
+                return injector.stopRecording();
+            }
+
+            @Override
+            protected void done() {
+                jbRecord.setEnabled(true);
+                try {
+                    final Optional<File> spoolFile = get();
+                    if (spoolFile.isPresent()) {
+                        transcodeRecording(spoolFile.get(), videoFile);
+                    } else {
+                        saveRecording(videoFile);
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    videoFile.deleteOnExit();
+                    JOptionPane.showMessageDialog(JFrameMain.this, "Recording could not be stopped: " + e.getMessage(),
+                            "Recording failed", JOptionPane.ERROR_MESSAGE);
+                } catch (IOException e) {
+                    throw new IORuntimeException(e);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * Encodes a deferred recording in background, showing progress that can be cancelled, and offers to save the
+     * movie once it is ready. Recording can't be started again until transcoding finishes.
+     * <p>
+     * {@link SwingWorker#done()} is called as soon as the worker is cancelled, while transcoding may still be going on,
+     * so files are deleted and recording is enabled by the background thread once transcoding has stopped.
+     */
+    private void transcodeRecording(final File spoolFile, final File videoFile) {
+        jbRecord.setEnabled(false);
+        final ProgressMonitor progressMonitor = new ProgressMonitor(this, "Encoding recorded video", null, 0, 100);
+        final SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                boolean transcoded = false;
+                try {
+                    injector.transcodeRecording(spoolFile, videoFile, this::setProgress);
+                    transcoded = !isCancelled();
+                    return null;
+                } finally {
+                    spoolFile.delete();
+                    if (!transcoded) {
+                        videoFile.delete();
+                    }
+                    SwingUtilities.invokeLater(() -> jbRecord.setEnabled(true));
+                }
+            }
+
+            @Override
+            protected void done() {
+                progressMonitor.close();
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    get();
+                    saveRecording(videoFile);
+                } catch (InterruptedException | ExecutionException e) {
+                    JOptionPane.showMessageDialog(JFrameMain.this, "Recorded video could not be encoded: " + e.getMessage(),
+                            "Recording failed", JOptionPane.ERROR_MESSAGE);
+                } catch (IOException e) {
+                    throw new IORuntimeException(e);
+                }
+            }
+        };
+        worker.addPropertyChangeListener(event -> {
+            if ("progress".equals(event.getPropertyName())) {
+                progressMonitor.setProgress((Integer) event.getNewValue());
+                if (progressMonitor.isCanceled()) {
+                    worker.cancel(true);
+                }
+            }
+        });
+        worker.execute();
+    }
+
+    /**
+     * Writes the replay in background and offers to save it once it is ready.
+     */
+    private void saveReplay() {
+        jbReplay.setEnabled(false);
+        final SwingWorker<Integer, Void> worker = new SwingWorker<Integer, Void>() {
+            private File replayFile;
+
+            @Override
+            protected Integer doInBackground() throws Exception {
+                replayFile = java.nio.file.Files.createTempFile("androidScreenCastReplay", ".mov.tmp").toFile();
+                final int frames = injector.saveReplay(replayFile);
+                if (frames == 0) {
+                    replayFile.delete();
+                }
+                return frames;
+            }
+
+            @Override
+            protected void done() {
+                jbReplay.setEnabled(true);
+                try {
+                    if (get() > 0) {
+                        saveRecording(replayFile);
+                    } else {
+                        JOptionPane.showMessageDialog(JFrameMain.this, "There is nothing to replay yet.", "Save replay",
+                                JOptionPane.INFORMATION_MESSAGE);
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    if (replayFile != null) {
+                        replayFile.delete();
+                    }
+                    JOptionPane.showMessageDialog(JFrameMain.this, "Replay could not be saved: " + e.getMessage(),
+                            "Save replay", JOptionPane.ERROR_MESSAGE);
+                } catch (IOException e) {
+                    throw new IORuntimeException(e);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    private void saveRecording(File videoFile) throws IOException {
+        JFileChooser jFileChooser = new JFileChooser();
+        FileNameExtensionFilter filter = new FileNameExtensionFilter("Video file", "mov");
+        jFileChooser.setFileFilter(filter);
+        int returnVal = jFileChooser.showSaveDialog(this);
+        if (returnVal == JFileChooser.APPROVE_OPTION) {
+            File resultFile = jFileChooser.getSelectedFile();
+            if (!resultFile.getName().endsWith(".mov")) {
+                resultFile = new File(resultFile.getAbsolutePath() + ".mov");
+            }
+            Files.move(videoFile, resultFile);
+        } else {
+            videoFile.deleteOnExit();
+        }
+    }
+
     public void launchInjector() {
-        injector.setScreenCaptureListener((size, image, landscape) -> {
+        injector.setScreenCaptureListener((size, image, rotation, dirtyRegions) -> {
             if (!size.equals(oldImageDimension)) {
                 jsp.setPreferredSize(size);
                 JFrameMain.this.pack();
                 oldImageDimension = size;
             }
-            jp.handleNewImage(size, image);
+            jp.handleNewImage(size, image, dirtyRegions);
         });
         injector.start();
     }
@@ -199,8 +356,4 @@ public final class JFrameMain extends JFrame {
     private void startRecording(File file) {
         injector.startRecording(file);
     }
-
-    private void stopRecording() {
-        injector.stopRecording();
-    }
 }
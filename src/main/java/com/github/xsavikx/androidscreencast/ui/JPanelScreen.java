@@ -1,24 +1,39 @@
 package com.github.xsavikx.androidscreencast.ui;
 
+import com.github.xsavikx.androidscreencast.api.metrics.CaptureMetrics;
+import com.github.xsavikx.androidscreencast.api.metrics.Stage;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.List;
 
 @Singleton
 public final class JPanelScreen extends JPanel {
 
     private static final long serialVersionUID = -2034873107028503004L;
+    private final transient CaptureMetrics metrics;
+    private final transient MetricsOverlay metricsOverlay;
     private float coef = 1;
     private double origX;
     private double origY;
+    private double drawnWidth;
+    private double drawnHeight;
     private Dimension size = null;
     private BufferedImage image = null;
+    /**
+     * Whether the next paint shows a new frame as a whole, its duration is recorded then.
+     */
+    private boolean isFramePaintPending = false;
 
     @Inject
-    JPanelScreen() {
+    JPanelScreen(final CaptureMetrics metrics, final MetricsOverlay metricsOverlay) {
+        this.metrics = metrics;
+        this.metricsOverlay = metricsOverlay;
         setFocusable(true);
+        metricsOverlay.install(this);
     }
 
     public Point getRawPoint(final Point p1) {
@@ -28,16 +43,64 @@ public final class JPanelScreen extends JPanel {
         return p2;
     }
 
-    void handleNewImage(final Dimension size, final BufferedImage image) {
+    /**
+     * @return size of the shown frame in device pixels, {@code null} if no frame was shown yet
+     */
+    public Dimension getRawSize() {
+        return size;
+    }
+
+    /**
+     * Shows the new frame, repainting only its changed regions if the previous frame had the same size.
+     * <p>
+     * Regions are painted immediately one by one, because {@link RepaintManager} would merge several dirty rectangles
+     * of the panel into their bounding box. Regions overlapping the metrics overlay are merged with it and painted
+     * last, so the overlay is painted once per frame and stays on top.
+     */
+    void handleNewImage(final Dimension size, final BufferedImage image, final List<Rectangle> dirtyRegions) {
+        final boolean sameGeometry = this.image != null && size.equals(this.size)
+                && image.getWidth() == this.image.getWidth() && image.getHeight() == this.image.getHeight();
         this.size = size;
         this.image = image;
-        repaint();
+        metricsOverlay.onFrameDisplayed();
+        if (!sameGeometry || drawnWidth == 0 || drawnHeight == 0) {
+            isFramePaintPending = true;
+            repaint();
+            return;
+        }
+        final long paintStart = System.nanoTime();
+        final Rectangle overlayBounds = metricsOverlay.getBounds();
+        Rectangle overlayRegion = null;
+        for (final Rectangle region : dirtyRegions) {
+            final Rectangle panelRegion = toPanelRegion(region);
+            if (panelRegion.intersects(overlayBounds)) {
+                overlayRegion = (overlayRegion == null ? overlayBounds : overlayRegion).union(panelRegion);
+            } else {
+                paintImmediately(panelRegion);
+            }
+        }
+        if (overlayRegion != null) {
+            paintImmediately(overlayRegion);
+        }
+        metrics.record(Stage.PAINT, System.nanoTime() - paintStart);
+    }
+
+    private Rectangle toPanelRegion(final Rectangle region) {
+        final double scaleX = drawnWidth / image.getWidth();
+        final double scaleY = drawnHeight / image.getHeight();
+        // one extra pixel on every side covers rounding and interpolation of the scaled image
+        final int left = (int) Math.floor(origX + region.x * scaleX) - 1;
+        final int top = (int) Math.floor(origY + region.y * scaleY) - 1;
+        final int right = (int) Math.ceil(origX + (region.x + region.width) * scaleX) + 1;
+        final int bottom = (int) Math.ceil(origY + (region.y + region.height) * scaleY) + 1;
+        return new Rectangle(left, top, right - left, bottom - top);
     }
 
     @Override
     protected void paintComponent(final Graphics g) {
         if (isNotInitialized())
             return;
+        final long paintStart = System.nanoTime();
         final Graphics2D g2 = (Graphics2D) g;
         g2.clearRect(0, 0, getWidth(), getHeight());
         final double width = Math.min(getWidth(), size.width * getHeight() / size.height);
@@ -45,7 +108,14 @@ public final class JPanelScreen extends JPanel {
         final double height = width * size.height / size.width;
         origX = (getWidth() - width) / 2;
         origY = (getHeight() - height) / 2;
+        drawnWidth = (int) width;
+        drawnHeight = (int) height;
         g2.drawImage(image, (int) origX, (int) origY, (int) width, (int) height, this);
+        metricsOverlay.paint(g2);
+        if (isFramePaintPending) {
+            isFramePaintPending = false;
+            metrics.record(Stage.PAINT, System.nanoTime() - paintStart);
+        }
     }
 
     private boolean isNotInitialized() {
@@ -0,0 +1,130 @@
+package com.github.xsavikx.androidscreencast.ui;
+
+import com.github.xsavikx.androidscreencast.api.metrics.CaptureMetrics;
+import com.github.xsavikx.androidscreencast.api.metrics.HistogramSnapshot;
+import com.github.xsavikx.androidscreencast.api.metrics.Stage;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.swing.*;
+import java.awt.*;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_HUD_ENABLED_KEY;
+
+/**
+ * Heads-up display with frame rates and stage latencies of the last second, painted over the device screen.
+ * <p>
+ * Accessed only on the Event Dispatch Thread.
+ */
+@Singleton
+final class MetricsOverlay {
+
+    private static final int UPDATE_INTERVAL_MILLIS = 1000;
+    private static final int MARGIN = 8;
+    private static final int PADDING = 4;
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    private static final Color BACKGROUND = new Color(0, 0, 0, 160);
+    private final CaptureMetrics metrics;
+    private final boolean enabled;
+    private Map<Stage, HistogramSnapshot> previousSnapshot;
+    private long previousFramesCaptured;
+    private long previousBytesCaptured;
+    private long previousUpdateNanos;
+    private int framesDisplayed = 0;
+    private String[] lines = new String[0];
+    private Rectangle bounds = new Rectangle();
+
+    @Inject
+    MetricsOverlay(final CaptureMetrics metrics, @Named(APP_HUD_ENABLED_KEY) final boolean enabled) {
+        this.metrics = metrics;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts refreshing the overlay of the given component, if the overlay is enabled.
+     */
+    void install(final JComponent component) {
+        if (!enabled) {
+            return;
+        }
+        previousSnapshot = metrics.snapshot();
+        previousFramesCaptured = metrics.getFramesCaptured();
+        previousBytesCaptured = metrics.getBytesCaptured();
+        previousUpdateNanos = System.nanoTime();
+        final Timer timer = new Timer(UPDATE_INTERVAL_MILLIS, e -> {
+            final Rectangle oldBounds = bounds;
+            update(component.getFontMetrics(FONT));
+            component.repaint(oldBounds.union(bounds));
+        });
+        timer.start();
+    }
+
+    void onFrameDisplayed() {
+        framesDisplayed++;
+    }
+
+    /**
+     * @return area of the component covered by the overlay, empty if nothing is shown
+     */
+    Rectangle getBounds() {
+        return !enabled || lines.length == 0 ? new Rectangle() : new Rectangle(bounds);
+    }
+
+    /**
+     * Paints the overlay, unless the clip of the graphics excludes it.
+     */
+    void paint(final Graphics2D g) {
+        if (!enabled || lines.length == 0 || !g.hitClip(bounds.x, bounds.y, bounds.width, bounds.height)) {
+            return;
+        }
+        g.setFont(FONT);
+        final FontMetrics fontMetrics = g.getFontMetrics();
+        final int lineHeight = fontMetrics.getHeight();
+        g.setColor(BACKGROUND);
+        g.fill(bounds);
+        g.setColor(Color.WHITE);
+        int baseline = MARGIN + PADDING + fontMetrics.getAscent();
+        for (String line : lines) {
+            g.drawString(line, MARGIN + PADDING, baseline);
+            baseline += lineHeight;
+        }
+    }
+
+    private void update(final FontMetrics fontMetrics) {
+        final long now = System.nanoTime();
+        final double seconds = (now - previousUpdateNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        final Map<Stage, HistogramSnapshot> snapshot = metrics.snapshot();
+        final long framesCaptured = metrics.getFramesCaptured();
+        final long bytesCaptured = metrics.getBytesCaptured();
+        final String[] newLines = new String[Stage.values().length + 1];
+        newLines[0] = String.format(Locale.ENGLISH, "display %5.1f fps  capture %5.1f fps  %6.2f MB/s  dropped %d/%d",
+                framesDisplayed / seconds, (framesCaptured - previousFramesCaptured) / seconds,
+                (bytesCaptured - previousBytesCaptured) / seconds / (1024 * 1024),
+                metrics.getFramesDropped(), metrics.getRecordingFramesDropped());
+        for (Stage stage : Stage.values()) {
+            final HistogramSnapshot recent = snapshot.get(stage).minus(previousSnapshot.get(stage));
+            newLines[stage.ordinal() + 1] = String.format(Locale.ENGLISH, "%-8s n %4d  p50 %7.1f ms  p99 %7.1f ms",
+                    stage.name().toLowerCase(Locale.ENGLISH), recent.getCount(),
+                    toMillis(recent.getPercentileNanos(0.5)), toMillis(recent.getPercentileNanos(0.99)));
+        }
+        lines = newLines;
+        int width = 0;
+        for (String line : lines) {
+            width = Math.max(width, fontMetrics.stringWidth(line));
+        }
+        bounds = new Rectangle(MARGIN, MARGIN, width + 2 * PADDING, lines.length * fontMetrics.getHeight() + 2 * PADDING);
+        previousSnapshot = snapshot;
+        previousFramesCaptured = framesCaptured;
+        previousBytesCaptured = bytesCaptured;
+        previousUpdateNanos = now;
+        framesDisplayed = 0;
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
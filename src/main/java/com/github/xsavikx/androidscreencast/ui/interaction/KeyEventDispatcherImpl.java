@@ -1,20 +1,16 @@
 package com.github.xsavikx.androidscreencast.ui.interaction;
 
-import com.github.xsavikx.androidscreencast.api.command.KeyCommand;
-import com.github.xsavikx.androidscreencast.api.command.executor.CommandExecutor;
-import com.github.xsavikx.androidscreencast.api.command.factory.InputCommandFactory;
-import com.github.xsavikx.androidscreencast.api.injector.KeyCodeConverter;
+import com.github.xsavikx.androidscreencast.api.injector.Injector;
 import com.github.xsavikx.androidscreencast.dagger.MainComponentProvider;
 
-import javax.swing.*;
 import java.awt.*;
 import java.awt.event.KeyEvent;
 
 public final class KeyEventDispatcherImpl implements KeyEventDispatcher {
 
     private final Window window;
-    private CommandExecutor commandExecutor;
-    private InputCommandFactory inputCommandFactory;
+    private Injector injector;
+    private TypedTextBuffer typedTextBuffer;
 
     KeyEventDispatcherImpl(Window frame) {
         this.window = frame;
@@ -25,26 +21,23 @@ public final class KeyEventDispatcherImpl implements KeyEventDispatcher {
         if (!window.isActive())
             return false;
         if (e.getID() == KeyEvent.KEY_TYPED) {
-            final int code = KeyCodeConverter.getKeyCode(e);
-            SwingUtilities.invokeLater(() -> {
-                final KeyCommand command = getInputCommandFactory().getKeyCommand(code);
-                getCommandExecutor().execute(command);
-            });
+            getInjector().onUserInput();
+            getTypedTextBuffer().type(e);
         }
         return false;
     }
 
-    private InputCommandFactory getInputCommandFactory() {
-        if (inputCommandFactory == null) {
-            inputCommandFactory = MainComponentProvider.mainComponent().inputCommandFactory();
+    private TypedTextBuffer getTypedTextBuffer() {
+        if (typedTextBuffer == null) {
+            typedTextBuffer = MainComponentProvider.mainComponent().typedTextBuffer();
         }
-        return inputCommandFactory;
+        return typedTextBuffer;
     }
 
-    private CommandExecutor getCommandExecutor() {
-        if (commandExecutor == null) {
-            commandExecutor = MainComponentProvider.mainComponent().commandExecutor();
+    private Injector getInjector() {
+        if (injector == null) {
+            injector = MainComponentProvider.mainComponent().injector();
         }
-        return commandExecutor;
+        return injector;
     }
 }
@@ -3,9 +3,9 @@ package com.github.xsavikx.androidscreencast.ui.interaction;
 import com.github.xsavikx.androidscreencast.api.command.KeyCommand;
 import com.github.xsavikx.androidscreencast.api.command.executor.CommandExecutor;
 import com.github.xsavikx.androidscreencast.api.command.factory.InputCommandFactory;
+import com.github.xsavikx.androidscreencast.api.injector.Injector;
 import com.github.xsavikx.androidscreencast.dagger.MainComponentProvider;
 
-import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
@@ -13,6 +13,8 @@ public final class KeyboardActionListener implements ActionListener {
 
     private InputCommandFactory inputCommandFactory;
     private CommandExecutor commandExecutor;
+    private Injector injector;
+    private TypedTextBuffer typedTextBuffer;
     private final int key;
 
     KeyboardActionListener(int key) {
@@ -21,10 +23,10 @@ public final class KeyboardActionListener implements ActionListener {
 
     @Override
     public void actionPerformed(final ActionEvent e) {
-        SwingUtilities.invokeLater(() -> {
-            final KeyCommand command = getInputCommandFactory().getKeyCommand(key);
-            getCommandExecutor().execute(command);
-        });
+        getInjector().onUserInput();
+        getTypedTextBuffer().flush();
+        final KeyCommand command = getInputCommandFactory().getKeyCommand(key);
+        getCommandExecutor().submit(command);
     }
 
     private InputCommandFactory getInputCommandFactory() {
@@ -40,4 +42,18 @@ public final class KeyboardActionListener implements ActionListener {
         }
         return commandExecutor;
     }
+
+    private Injector getInjector() {
+        if (injector == null) {
+            injector = MainComponentProvider.mainComponent().injector();
+        }
+        return injector;
+    }
+
+    private TypedTextBuffer getTypedTextBuffer() {
+        if (typedTextBuffer == null) {
+            typedTextBuffer = MainComponentProvider.mainComponent().typedTextBuffer();
+        }
+        return typedTextBuffer;
+    }
 }
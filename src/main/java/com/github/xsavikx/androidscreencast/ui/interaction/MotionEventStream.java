@@ -0,0 +1,98 @@
+package com.github.xsavikx.androidscreencast.ui.interaction;
+
+import com.github.xsavikx.androidscreencast.api.command.MotionEventCommand;
+import com.github.xsavikx.androidscreencast.api.command.executor.CommandExecutor;
+import com.github.xsavikx.androidscreencast.api.command.factory.InputCommandFactory;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Streams a touch gesture to the device while it is being made.
+ * <p>
+ * The mouse reports positions far more often than the device can execute commands, so only one move is executed at a
+ * time and the following positions replace each other until it is done. Moves are also sent no more often than once
+ * per {@link #MOVE_INTERVAL_MILLIS}. Down and up are never skipped. Every step carries the positions of all fingers,
+ * the first one is the primary finger.
+ * <p>
+ * Must be used on the Event Dispatch Thread only.
+ */
+final class MotionEventStream {
+
+    private static final int MOVE_INTERVAL_MILLIS = 16;
+    private final CommandExecutor commandExecutor;
+    private final InputCommandFactory inputCommandFactory;
+    private final Timer timer;
+    private boolean isActive = false;
+    /**
+     * Latest positions not sent yet, {@code null} if there are none.
+     */
+    private Point[] pendingMove;
+    private CompletableFuture<Void> lastMove = CompletableFuture.completedFuture(null);
+    private long lastMoveMillis;
+
+    MotionEventStream(final CommandExecutor commandExecutor, final InputCommandFactory inputCommandFactory) {
+        this.commandExecutor = commandExecutor;
+        this.inputCommandFactory = inputCommandFactory;
+        this.timer = new Timer(MOVE_INTERVAL_MILLIS, e -> sendPendingMove());
+        this.timer.setRepeats(false);
+    }
+
+    boolean isActive() {
+        return isActive;
+    }
+
+    void down(final Point... pointers) {
+        if (isActive) {
+            up(pointers);
+        }
+        isActive = true;
+        submit(MotionEventCommand.Action.DOWN, pointers);
+    }
+
+    void move(final Point... pointers) {
+        if (!isActive) {
+            return;
+        }
+        pendingMove = pointers;
+        sendPendingMove();
+    }
+
+    void up(final Point... pointers) {
+        if (!isActive) {
+            return;
+        }
+        isActive = false;
+        pendingMove = null;
+        timer.stop();
+        submit(MotionEventCommand.Action.UP, pointers);
+    }
+
+    private void sendPendingMove() {
+        if (pendingMove == null || !lastMove.isDone()) {
+            return;
+        }
+        final long wait = lastMoveMillis + MOVE_INTERVAL_MILLIS - System.currentTimeMillis();
+        if (wait > 0) {
+            timer.setInitialDelay((int) wait);
+            timer.restart();
+            return;
+        }
+        final Point[] pointers = pendingMove;
+        pendingMove = null;
+        lastMoveMillis = System.currentTimeMillis();
+        lastMove = submit(MotionEventCommand.Action.MOVE, pointers);
+        lastMove.whenComplete((result, e) -> SwingUtilities.invokeLater(this::sendPendingMove));
+    }
+
+    private CompletableFuture<Void> submit(final MotionEventCommand.Action action, final Point[] pointers) {
+        final int[] x = new int[pointers.length];
+        final int[] y = new int[pointers.length];
+        for (int i = 0; i < pointers.length; i++) {
+            x[i] = Math.max(0, pointers[i].x);
+            y[i] = Math.max(0, pointers[i].y);
+        }
+        return commandExecutor.submit(inputCommandFactory.getMotionEventCommand(action, x, y));
+    }
+}
@@ -1,28 +1,56 @@
 package com.github.xsavikx.androidscreencast.ui.interaction;
 
+import com.github.xsavikx.androidscreencast.api.AndroidDevice;
 import com.github.xsavikx.androidscreencast.api.command.SwipeCommand;
 import com.github.xsavikx.androidscreencast.api.command.TapCommand;
 import com.github.xsavikx.androidscreencast.api.command.executor.CommandExecutor;
 import com.github.xsavikx.androidscreencast.api.command.factory.InputCommandFactory;
+import com.github.xsavikx.androidscreencast.api.injector.GestureMode;
 import com.github.xsavikx.androidscreencast.api.injector.Injector;
+import com.github.xsavikx.androidscreencast.api.injector.InputBackend;
 import com.github.xsavikx.androidscreencast.ui.JPanelScreen;
+import com.github.xsavikx.androidscreencast.ui.worker.SwingWorker;
+import org.slf4j.Logger;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
+import java.util.concurrent.ExecutionException;
+
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_INPUT_BACKEND_KEY;
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_INPUT_GESTURES_KEY;
+import static org.slf4j.LoggerFactory.getLogger;
 
 @Singleton
 public final class MouseActionAdapter extends MouseAdapter {
 
     private final static long ONE_SECOND = 1000L;
+    /**
+     * Android 10, the first version supporting {@code input motionevent}.
+     */
+    private final static int MOTION_EVENT_API_LEVEL = 29;
     private final JPanelScreen jp;
     private final CommandExecutor commandExecutor;
     private final InputCommandFactory inputCommandFactory;
     private final Injector injector;
+    private final TypedTextBuffer typedTextBuffer;
+    private final AndroidDevice androidDevice;
+    private final GestureMode gestureMode;
+    private final InputBackend inputBackend;
+    private final MotionEventStream motionEventStream;
+    /**
+     * Whether gestures are streamed as motion events, {@code false} until the gesture mode is resolved.
+     */
+    private boolean streamsGestures = false;
+    /**
+     * Whether the last press started a streamed gesture, so its click is already made.
+     */
+    private boolean isPressStreamed = false;
     private int dragFromX = -1;
     private int dragFromY = -1;
     private long timeFromPress = -1;
@@ -31,14 +59,66 @@ public final class MouseActionAdapter extends MouseAdapter {
     MouseActionAdapter(final JPanelScreen jp,
                        final CommandExecutor commandExecutor,
                        final InputCommandFactory inputCommandFactory,
-                       final Injector injector) {
+                       final Injector injector,
+                       final TypedTextBuffer typedTextBuffer,
+                       final AndroidDevice androidDevice,
+                       @Named(APP_INPUT_GESTURES_KEY) final GestureMode gestureMode,
+                       @Named(APP_INPUT_BACKEND_KEY) final InputBackend inputBackend) {
         this.jp = jp;
         this.commandExecutor = commandExecutor;
         this.inputCommandFactory = inputCommandFactory;
         this.injector = injector;
+        this.typedTextBuffer = typedTextBuffer;
+        this.androidDevice = androidDevice;
+        this.gestureMode = gestureMode;
+        this.inputBackend = inputBackend;
+        this.motionEventStream = new MotionEventStream(commandExecutor, inputCommandFactory);
     }
 
 
+    /**
+     * Decides whether gestures are streamed as motion events. In {@link GestureMode#AUTO} mode this depends on the
+     * Android version, which may take a shell command to read, so it is read in background. Gestures are sent as
+     * swipes until it is known.
+     */
+    public void resolveGestureMode() {
+        if (gestureMode != GestureMode.AUTO || inputBackend == InputBackend.EVDEV) {
+            // evdev injects motion events itself, so they don't depend on the Android version
+            streamsGestures = gestureMode != GestureMode.SWIPE;
+            return;
+        }
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() {
+                return androidDevice.getApiLevel();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    streamsGestures = get() >= MOTION_EVENT_API_LEVEL;
+                } catch (InterruptedException | ExecutionException e) {
+                    log().warn("Unable to resolve the gesture mode, gestures are sent as swipes.", e);
+                }
+            }
+        }.execute();
+    }
+
+    @Override
+    public void mousePressed(final MouseEvent e) {
+        if (injector != null) {
+            injector.onUserInput();
+        }
+        isPressStreamed = streamsGestures;
+        if (SwingUtilities.isLeftMouseButton(e) && isPressStreamed) {
+            final Point p2 = jp.getRawPoint(e.getPoint());
+            if (p2.x > 0 && p2.y > 0) {
+                typedTextBuffer.flush();
+                motionEventStream.down(pointers(p2, e));
+            }
+        }
+    }
+
     @Override
     public void mouseClicked(final MouseEvent e) {
         if (injector != null && e.getButton() == MouseEvent.BUTTON3) {
@@ -46,17 +126,24 @@ public final class MouseActionAdapter extends MouseAdapter {
             e.consume();
             return;
         }
+        if (isPressStreamed) {
+            // The tap was already made by the gesture.
+            return;
+        }
         final Point p2 = jp.getRawPoint(e.getPoint());
         if (p2.x > 0 && p2.y > 0) {
-            SwingUtilities.invokeLater(() -> {
-                final TapCommand command = inputCommandFactory.getTapCommand(p2.x, p2.y);
-                commandExecutor.execute(command);
-            });
+            final TapCommand command = inputCommandFactory.getTapCommand(p2.x, p2.y);
+            typedTextBuffer.flush();
+            commandExecutor.submit(command);
         }
     }
 
     @Override
     public void mouseDragged(final MouseEvent e) {
+        if (motionEventStream.isActive()) {
+            motionEventStream.move(pointers(jp.getRawPoint(e.getPoint()), e));
+            return;
+        }
         if (dragFromX == -1 && dragFromY == -1) {
             final Point p2 = jp.getRawPoint(e.getPoint());
             dragFromX = p2.x;
@@ -67,20 +154,34 @@ public final class MouseActionAdapter extends MouseAdapter {
 
     @Override
     public void mouseReleased(MouseEvent e) {
+        if (motionEventStream.isActive() && SwingUtilities.isLeftMouseButton(e)) {
+            motionEventStream.up(pointers(jp.getRawPoint(e.getPoint()), e));
+            return;
+        }
         if (timeFromPress >= ONE_SECOND) {
             final Point p2 = jp.getRawPoint(e.getPoint());
             final int xFrom = dragFromX;
             final int yFrom = dragFromY;
             final int xTo = p2.x;
             final int yTo = p2.y;
-            SwingUtilities.invokeLater(() -> {
-                final SwipeCommand command = inputCommandFactory.getSwipeCommand(xFrom, yFrom, xTo, yTo, timeFromPress);
-                commandExecutor.execute(command);
-            });
+            final SwipeCommand command = inputCommandFactory.getSwipeCommand(xFrom, yFrom, xTo, yTo, timeFromPress);
+            typedTextBuffer.flush();
+            commandExecutor.submit(command);
             clearState();
         }
     }
 
+    /**
+     * Dragging with Ctrl pressed pinches: a second finger moves opposite to the mouse around the center of the screen.
+     */
+    private Point[] pointers(final Point p, final MouseEvent e) {
+        final Dimension rawSize = jp.getRawSize();
+        if (!e.isControlDown() || rawSize == null) {
+            return new Point[]{p};
+        }
+        return new Point[]{p, new Point(rawSize.width - p.x, rawSize.height - p.y)};
+    }
+
     private void clearState() {
         dragFromX = -1;
         dragFromY = -1;
@@ -94,4 +195,15 @@ public final class MouseActionAdapter extends MouseAdapter {
         // JFrameMain.this.injector.injectTrackball(arg0.getWheelRotation() < 0 ?
         // -1f : 1f);
     }
+
+    private enum LogSingleton {
+        INSTANCE;
+
+        @SuppressWarnings({"NonSerializableFieldInSerializableClass", "ImmutableEnumChecker"})
+        private final Logger value = getLogger(MouseActionAdapter.class);
+    }
+
+    private static Logger log() {
+        return LogSingleton.INSTANCE.value;
+    }
 }
@@ -0,0 +1,85 @@
+package com.github.xsavikx.androidscreencast.ui.interaction;
+
+import com.github.xsavikx.androidscreencast.api.command.executor.CommandExecutor;
+import com.github.xsavikx.androidscreencast.api.command.factory.InputCommandFactory;
+import com.github.xsavikx.androidscreencast.api.injector.KeyCodeConverter;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.swing.*;
+import java.awt.event.KeyEvent;
+
+import static com.github.xsavikx.androidscreencast.configuration.ApplicationConfigurationPropertyKeys.APP_INPUT_TEXT_WINDOW_KEY;
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Collects typed characters into {@code input text} commands.
+ * <p>
+ * Every command costs a round trip to the device, so typing a word key by key lags behind. Printable ASCII characters
+ * are collected for a short window after the first of them and sent as a single command. Other characters can't be
+ * typed by {@code input text}; they are sent as key events after the collected text, so the order of typing is kept.
+ * Any other input should {@link #flush()} the collected text before being submitted for the same reason.
+ * <p>
+ * Must be used on the Event Dispatch Thread only.
+ */
+@Singleton
+public final class TypedTextBuffer {
+
+    /**
+     * Longer text is sent without waiting for the window, so pasting doesn't build a huge command.
+     */
+    private static final int MAX_TEXT_LENGTH = 256;
+    private final CommandExecutor commandExecutor;
+    private final InputCommandFactory inputCommandFactory;
+    private final StringBuilder text = new StringBuilder();
+    private final Timer timer;
+
+    @Inject
+    public TypedTextBuffer(final CommandExecutor commandExecutor,
+                           final InputCommandFactory inputCommandFactory,
+                           @Named(APP_INPUT_TEXT_WINDOW_KEY) final int windowMillis) {
+        checkArgument(windowMillis >= 0, "Typing window must not be negative, but was %s", windowMillis);
+        this.commandExecutor = commandExecutor;
+        this.inputCommandFactory = inputCommandFactory;
+        this.timer = new Timer(windowMillis, e -> flush());
+        this.timer.setRepeats(false);
+    }
+
+    /**
+     * Types the character of the {@link KeyEvent#KEY_TYPED} event.
+     */
+    public void type(final KeyEvent e) {
+        final char c = e.getKeyChar();
+        if (!isPrintable(c)) {
+            flush();
+            commandExecutor.submit(inputCommandFactory.getKeyCommand(KeyCodeConverter.getKeyCode(e)));
+            return;
+        }
+        if (c == 's' && text.length() > 0 && text.charAt(text.length() - 1) == '%') {
+            // "%s" would be typed as a space.
+            flush();
+        }
+        text.append(c);
+        if (timer.getInitialDelay() == 0 || text.length() >= MAX_TEXT_LENGTH) {
+            flush();
+        } else if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    /**
+     * Submits the collected text immediately.
+     */
+    public void flush() {
+        timer.stop();
+        if (text.length() > 0) {
+            commandExecutor.submit(inputCommandFactory.getTextCommand(text.toString()));
+            text.setLength(0);
+        }
+    }
+
+    private static boolean isPrintable(final char c) {
+        return c >= ' ' && c <= '~';
+    }
+}
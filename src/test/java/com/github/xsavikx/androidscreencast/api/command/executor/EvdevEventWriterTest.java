@@ -0,0 +1,208 @@
+package com.github.xsavikx.androidscreencast.api.command.executor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevEventWriter.EVENT_SIZE_32;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevEventWriter.EVENT_SIZE_64;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_POSITION_X;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_POSITION_Y;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_PRESSURE;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_SLOT;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_TOUCH_MAJOR;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_TRACKING_ID;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.BTN_TOUCH;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class EvdevEventWriterTest {
+
+    private static final int EV_SYN = 0x00;
+    private static final int EV_KEY = 0x01;
+    private static final int EV_ABS = 0x03;
+    private static final String TOUCHSCREEN_WITHOUT_EXTRAS = String.join("\n",
+            "add device 1: /dev/input/event1",
+            "  name:     \"touchscreen\"",
+            "  events:",
+            "    ABS (0003): 002f  : value 0, min 0, max 1, fuzz 0, flat 0, resolution 0",
+            "                0035  : value 0, min 0, max 1079, fuzz 0, flat 0, resolution 0",
+            "                0036  : value 0, min 0, max 2399, fuzz 0, flat 0, resolution 0",
+            "                0039  : value 0, min 0, max 65535, fuzz 0, flat 0, resolution 0",
+            "  input props:",
+            "    INPUT_PROP_DIRECT");
+
+    private final ByteArrayOutputStream device = new ByteArrayOutputStream();
+
+    @Test
+    public void writesRecordsOf64BitUserSpace() throws IOException {
+        new EvdevEventWriter(EvdevTouchscreen.find(EvdevTouchscreenTest.TOUCHSCREEN), EVENT_SIZE_64, device)
+                .touch(new int[]{540}, new int[]{1200});
+
+        final byte[] expected = new byte[]{
+                0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                0x03, 0x00, 0x2f, 0x00, 0x00, 0x00, 0x00, 0x00};
+        assertEquals(8 * EVENT_SIZE_64, device.size());
+        assertArrayEquals(expected, Arrays.copyOf(device.toByteArray(), EVENT_SIZE_64));
+        assertEvents(EVENT_SIZE_64,
+                abs(ABS_MT_SLOT, 0),
+                abs(ABS_MT_TRACKING_ID, 0),
+                abs(ABS_MT_PRESSURE, 128),
+                abs(ABS_MT_TOUCH_MAJOR, 128),
+                abs(ABS_MT_POSITION_X, 540),
+                abs(ABS_MT_POSITION_Y, 1200),
+                key(BTN_TOUCH, 1),
+                syn());
+    }
+
+    @Test
+    public void writesRecordsOf32BitUserSpace() throws IOException {
+        new EvdevEventWriter(EvdevTouchscreen.find(EvdevTouchscreenTest.TOUCHSCREEN), EVENT_SIZE_32, device)
+                .touch(new int[]{0x1234}, new int[]{-5});
+
+        final byte[] expected = new byte[]{
+                0, 0, 0, 0, 0, 0, 0, 0,
+                0x03, 0x00, 0x35, 0x00, 0x37, 0x04, 0x00, 0x00};
+        assertEquals(8 * EVENT_SIZE_32, device.size());
+        assertArrayEquals(expected, Arrays.copyOfRange(device.toByteArray(), 4 * EVENT_SIZE_32, 5 * EVENT_SIZE_32));
+        assertEvents(EVENT_SIZE_32,
+                abs(ABS_MT_SLOT, 0),
+                abs(ABS_MT_TRACKING_ID, 0),
+                abs(ABS_MT_PRESSURE, 128),
+                abs(ABS_MT_TOUCH_MAJOR, 128),
+                abs(ABS_MT_POSITION_X, 1079),
+                abs(ABS_MT_POSITION_Y, 0),
+                key(BTN_TOUCH, 1),
+                syn());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownRecordSize() {
+        new EvdevEventWriter(EvdevTouchscreen.find(EvdevTouchscreenTest.TOUCHSCREEN), 20, device);
+    }
+
+    @Test
+    public void tracksFingersInSlots() throws IOException {
+        final EvdevEventWriter writer =
+                new EvdevEventWriter(EvdevTouchscreen.find(EvdevTouchscreenTest.TOUCHSCREEN), EVENT_SIZE_64, device);
+
+        writer.touch(new int[]{100}, new int[]{200});
+        assertEvents(EVENT_SIZE_64,
+                abs(ABS_MT_SLOT, 0),
+                abs(ABS_MT_TRACKING_ID, 0),
+                abs(ABS_MT_PRESSURE, 128),
+                abs(ABS_MT_TOUCH_MAJOR, 128),
+                abs(ABS_MT_POSITION_X, 100),
+                abs(ABS_MT_POSITION_Y, 200),
+                key(BTN_TOUCH, 1),
+                syn());
+
+        writer.touch(new int[]{110, 900}, new int[]{210, 2000});
+        assertEvents(EVENT_SIZE_64,
+                abs(ABS_MT_SLOT, 0),
+                abs(ABS_MT_POSITION_X, 110),
+                abs(ABS_MT_POSITION_Y, 210),
+                abs(ABS_MT_SLOT, 1),
+                abs(ABS_MT_TRACKING_ID, 1),
+                abs(ABS_MT_PRESSURE, 128),
+                abs(ABS_MT_TOUCH_MAJOR, 128),
+                abs(ABS_MT_POSITION_X, 900),
+                abs(ABS_MT_POSITION_Y, 2000),
+                syn());
+
+        writer.touch(new int[]{120}, new int[]{220});
+        assertEvents(EVENT_SIZE_64,
+                abs(ABS_MT_SLOT, 0),
+                abs(ABS_MT_POSITION_X, 120),
+                abs(ABS_MT_POSITION_Y, 220),
+                abs(ABS_MT_SLOT, 1),
+                abs(ABS_MT_TRACKING_ID, -1),
+                syn());
+
+        writer.release();
+        assertEvents(EVENT_SIZE_64,
+                abs(ABS_MT_SLOT, 0),
+                abs(ABS_MT_TRACKING_ID, -1),
+                key(BTN_TOUCH, 0),
+                syn());
+
+        writer.release();
+        assertEvents(EVENT_SIZE_64);
+
+        writer.touch(new int[]{300}, new int[]{400});
+        assertEvents(EVENT_SIZE_64,
+                abs(ABS_MT_SLOT, 0),
+                abs(ABS_MT_TRACKING_ID, 2),
+                abs(ABS_MT_PRESSURE, 128),
+                abs(ABS_MT_TOUCH_MAJOR, 128),
+                abs(ABS_MT_POSITION_X, 300),
+                abs(ABS_MT_POSITION_Y, 400),
+                key(BTN_TOUCH, 1),
+                syn());
+    }
+
+    @Test
+    public void skipsMissingAxesAndKeys() throws IOException {
+        final EvdevEventWriter writer =
+                new EvdevEventWriter(EvdevTouchscreen.find(TOUCHSCREEN_WITHOUT_EXTRAS), EVENT_SIZE_64, device);
+
+        writer.touch(new int[]{1, 2, 3}, new int[]{4, 5, 6});
+        assertEvents(EVENT_SIZE_64,
+                abs(ABS_MT_SLOT, 0),
+                abs(ABS_MT_TRACKING_ID, 0),
+                abs(ABS_MT_POSITION_X, 1),
+                abs(ABS_MT_POSITION_Y, 4),
+                abs(ABS_MT_SLOT, 1),
+                abs(ABS_MT_TRACKING_ID, 1),
+                abs(ABS_MT_POSITION_X, 2),
+                abs(ABS_MT_POSITION_Y, 5),
+                syn());
+
+        writer.release();
+        assertEvents(EVENT_SIZE_64,
+                abs(ABS_MT_SLOT, 0),
+                abs(ABS_MT_TRACKING_ID, -1),
+                abs(ABS_MT_SLOT, 1),
+                abs(ABS_MT_TRACKING_ID, -1),
+                syn());
+    }
+
+    /**
+     * Checks the records written since the last check, skipping their zeroed {@code struct timeval}.
+     */
+    private void assertEvents(final int eventSize, final int[]... expected) {
+        final ByteBuffer buffer = ByteBuffer.wrap(device.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        device.reset();
+        assertEquals(0, buffer.remaining() % eventSize);
+        final List<String> events = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            for (int i = 8; i < eventSize; i += 4) {
+                assertEquals(0, buffer.getInt());
+            }
+            events.add(Arrays.toString(new int[]{buffer.getShort(), buffer.getShort(), buffer.getInt()}));
+        }
+        final List<String> expectedEvents = new ArrayList<>();
+        for (final int[] event : expected) {
+            expectedEvents.add(Arrays.toString(event));
+        }
+        assertEquals(expectedEvents, events);
+    }
+
+    private static int[] abs(final int code, final int value) {
+        return new int[]{EV_ABS, code, value};
+    }
+
+    private static int[] key(final int code, final int value) {
+        return new int[]{EV_KEY, code, value};
+    }
+
+    private static int[] syn() {
+        return new int[]{EV_SYN, 0, 0};
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.xsavikx.androidscreencast.api.command.executor;
+
+import org.junit.Test;
+
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_POSITION_X;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_POSITION_Y;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_PRESSURE;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_SLOT;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.ABS_MT_TOUCH_MAJOR;
+import static com.github.xsavikx.androidscreencast.api.command.executor.EvdevTouchscreen.BTN_TOUCH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EvdevTouchscreenTest {
+
+    private static final String KEYS = String.join("\n",
+            "add device 1: /dev/input/event0",
+            "  name:     \"gpio-keys\"",
+            "  events:",
+            "    KEY (0001): 0072  0073  0074  00e8",
+            "  input props:",
+            "    <none>");
+
+    static final String TOUCHSCREEN = String.join("\n",
+            "add device 2: /dev/input/event2",
+            "  name:     \"touchscreen\"",
+            "  events:",
+            "    KEY (0001): 014a",
+            "    ABS (0003): 002f  : value 0, min 0, max 9, fuzz 0, flat 0, resolution 0",
+            "                0030  : value 0, min 0, max 255, fuzz 0, flat 0, resolution 0",
+            "                0035  : value 0, min 0, max 1079, fuzz 0, flat 0, resolution 0",
+            "                0036  : value 0, min 0, max 2399, fuzz 0, flat 0, resolution 0",
+            "                0039  : value 0, min 0, max 65535, fuzz 0, flat 0, resolution 0",
+            "                003a  : value 0, min 0, max 255, fuzz 0, flat 0, resolution 0",
+            "  input props:",
+            "    INPUT_PROP_DIRECT");
+
+    private static final String TOUCHPAD = String.join("\n",
+            "add device 3: /dev/input/event3",
+            "  name:     \"touchpad\"",
+            "  events:",
+            "    KEY (0001): 0110  014a  0145  014d",
+            "    ABS (0003): 002f  : value 0, min 0, max 4, fuzz 0, flat 0, resolution 0",
+            "                0035  : value 0, min 0, max 3000, fuzz 0, flat 0, resolution 0",
+            "                0036  : value 0, min 0, max 2000, fuzz 0, flat 0, resolution 0",
+            "                0039  : value 0, min 0, max 65535, fuzz 0, flat 0, resolution 0",
+            "  input props:",
+            "    INPUT_PROP_POINTER",
+            "    INPUT_PROP_BUTTONPAD");
+
+    private static final String SINGLE_TOUCH = String.join("\n",
+            "add device 4: /dev/input/event4",
+            "  name:     \"single-touch\"",
+            "  events:",
+            "    KEY (0001): 014a",
+            "    ABS (0003): 0000  : value 0, min 0, max 1079, fuzz 0, flat 0, resolution 0",
+            "                0001  : value 0, min 0, max 2399, fuzz 0, flat 0, resolution 0",
+            "                0035  : value 0, min 0, max 1079, fuzz 0, flat 0, resolution 0",
+            "                0036  : value 0, min 0, max 2399, fuzz 0, flat 0, resolution 0",
+            "  input props:",
+            "    INPUT_PROP_DIRECT");
+
+    @Test
+    public void findsTouchscreen() {
+        final EvdevTouchscreen touchscreen = EvdevTouchscreen.find(KEYS + "\n" + TOUCHSCREEN);
+
+        assertNotNull(touchscreen);
+        assertEquals("/dev/input/event2", touchscreen.getPath());
+        assertEquals(10, touchscreen.getMaxPointers());
+        assertEquals(0, touchscreen.getAxis(ABS_MT_POSITION_X).getMin());
+        assertEquals(1079, touchscreen.getAxis(ABS_MT_POSITION_X).getMax());
+        assertEquals(2399, touchscreen.getAxis(ABS_MT_POSITION_Y).getMax());
+        assertEquals(128, touchscreen.getAxis(ABS_MT_PRESSURE).getMiddle());
+        assertEquals(255, touchscreen.getAxis(ABS_MT_TOUCH_MAJOR).getMax());
+        assertTrue(touchscreen.hasKey(BTN_TOUCH));
+    }
+
+    @Test
+    public void prefersDirectInputDevice() {
+        assertEquals("/dev/input/event2", EvdevTouchscreen.find(TOUCHPAD + "\n" + TOUCHSCREEN).getPath());
+        assertEquals("/dev/input/event2", EvdevTouchscreen.find(TOUCHSCREEN + "\n" + TOUCHPAD).getPath());
+    }
+
+    @Test
+    public void fallsBackToIndirectInputDevice() {
+        final EvdevTouchscreen touchscreen = EvdevTouchscreen.find(KEYS + "\n" + TOUCHPAD);
+
+        assertNotNull(touchscreen);
+        assertEquals("/dev/input/event3", touchscreen.getPath());
+        assertEquals(5, touchscreen.getMaxPointers());
+        assertNull(touchscreen.getAxis(ABS_MT_PRESSURE));
+    }
+
+    @Test
+    public void ignoresDevicesWithoutSlots() {
+        assertNull(EvdevTouchscreen.find(KEYS + "\n" + SINGLE_TOUCH));
+        assertNull(EvdevTouchscreen.find(""));
+    }
+
+    @Test
+    public void readsCrLfOutput() {
+        final EvdevTouchscreen touchscreen = EvdevTouchscreen.find((KEYS + "\n" + TOUCHSCREEN).replace("\n", "\r\n"));
+
+        assertNotNull(touchscreen);
+        assertEquals("/dev/input/event2", touchscreen.getPath());
+        assertFalse(touchscreen.hasKey(0x72));
+    }
+
+    @Test
+    public void clampsToAxis() {
+        final EvdevTouchscreen.Axis axis = EvdevTouchscreen.find(TOUCHSCREEN).getAxis(ABS_MT_SLOT);
+
+        assertEquals(0, axis.clamp(-1));
+        assertEquals(9, axis.clamp(10));
+        assertEquals(4, axis.clamp(4));
+    }
+}
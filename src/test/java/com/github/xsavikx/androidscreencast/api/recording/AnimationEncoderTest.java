@@ -0,0 +1,123 @@
+package com.github.xsavikx.androidscreencast.api.recording;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class AnimationEncoderTest {
+
+    private static final int A = 0x102030;
+    private static final int B = 0x405060;
+    private static final int C = 0x708090;
+    private static final int D = 0xA0B0C0;
+    private static final int X = 0xFF0000;
+
+    @Test
+    public void encodesKeyFrameAsRunsAndLiterals() throws IOException {
+        final BufferedImage image = image(3, new int[]{A, A, B}, new int[]{C, D, D});
+
+        assertArrayEquals(bytes(
+                int32(27), int16(0),
+                new int[]{1}, new int[]{-2}, pixel(A), new int[]{1}, pixel(B), new int[]{-1},
+                new int[]{1}, new int[]{1}, pixel(C), new int[]{-2}, pixel(D), new int[]{-1},
+                new int[]{0}), encode(image, null));
+    }
+
+    @Test
+    public void splitsLongRuns() throws IOException {
+        final int[] row = new int[130];
+        Arrays.fill(row, A);
+
+        assertArrayEquals(bytes(
+                int32(17), int16(0),
+                new int[]{1}, new int[]{-128}, pixel(A), new int[]{-2}, pixel(A), new int[]{-1},
+                new int[]{0}), encode(image(130, row), null));
+    }
+
+    @Test
+    public void encodesOnlyChangedScanlinesOfDeltaFrame() throws IOException {
+        final BufferedImage previous = image(4, new int[]{A, A, A, A}, new int[]{B, B, C, D}, new int[]{A, B, C, D});
+        final BufferedImage image = image(4, new int[]{A, A, A, A}, new int[]{B, B, X, D}, new int[]{A, B, C, D});
+
+        // skip 2 pixels, 1 literal pixel, the unchanged rest of the line is not coded
+        assertArrayEquals(bytes(
+                int32(21), int16(0x0008), int16(1), int16(0), int16(1), int16(0),
+                new int[]{3}, new int[]{1}, pixel(X), new int[]{-1},
+                new int[]{0}), encode(image, previous));
+    }
+
+    @Test
+    public void skipsUnchangedPixelsInsideScanline() throws IOException {
+        final BufferedImage previous = image(5, new int[]{A, B, C, D, A});
+        final BufferedImage image = image(5, new int[]{X, B, C, D, X});
+
+        assertArrayEquals(bytes(
+                int32(19), int16(0),
+                new int[]{1}, new int[]{1}, pixel(X), new int[]{0, 4}, new int[]{1}, pixel(X), new int[]{-1},
+                new int[]{0}), encode(image, previous));
+    }
+
+    @Test
+    public void splitsLongSkips() throws IOException {
+        final int[] before = new int[300];
+        Arrays.fill(before, A);
+        final int[] after = before.clone();
+        after[299] = X;
+
+        assertArrayEquals(bytes(
+                int32(15), int16(0),
+                new int[]{255}, new int[]{0, 46}, new int[]{1}, pixel(X), new int[]{-1},
+                new int[]{0}), encode(image(300, after), image(300, before)));
+    }
+
+    @Test
+    public void encodesUnchangedFrameWithoutScanlines() throws IOException {
+        final BufferedImage previous = image(2, new int[]{A, B}, new int[]{C, D});
+        final BufferedImage image = image(2, new int[]{A, B}, new int[]{C, D});
+
+        assertArrayEquals(bytes(
+                int32(15), int16(0x0008), int16(2), int16(0), int16(0), int16(0),
+                new int[]{0}), encode(image, previous));
+    }
+
+    private static byte[] encode(final BufferedImage image, final BufferedImage previous) throws IOException {
+        final ByteArrayImageOutputStream out = new ByteArrayImageOutputStream();
+        new AnimationEncoder().encode(image, previous, out);
+        return out.toByteArray();
+    }
+
+    private static BufferedImage image(final int width, final int[]... rows) {
+        final BufferedImage image = new BufferedImage(width, rows.length, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < rows.length; y++) {
+            image.setRGB(0, y, width, 1, rows[y], 0, width);
+        }
+        return image;
+    }
+
+    private static int[] int32(final int value) {
+        return new int[]{value >>> 24, value >>> 16, value >>> 8, value};
+    }
+
+    private static int[] int16(final int value) {
+        return new int[]{value >>> 8, value};
+    }
+
+    private static int[] pixel(final int rgb) {
+        return new int[]{rgb >> 16, rgb >> 8, rgb};
+    }
+
+    private static byte[] bytes(final int[]... parts) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (final int[] part : parts) {
+            for (final int value : part) {
+                out.write(value);
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.xsavikx.androidscreencast.api.recording;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares encoding frames by a reused {@link FrameEncoder} with looking up, configuring and disposing an image writer
+ * for every frame, as frames were encoded before.
+ * <p>
+ * Run by {@code java -cp target/classes:target/test-classes
+ * com.github.xsavikx.androidscreencast.api.recording.FrameEncoderBenchmark [width height frames]}.
+ */
+public final class FrameEncoderBenchmark {
+
+    private static final float QUALITY = 0.9f;
+    private static final int WARMUP_ROUNDS = 2;
+
+    private FrameEncoderBenchmark() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final int width = args.length > 0 ? Integer.parseInt(args[0]) : 720;
+        final int height = args.length > 1 ? Integer.parseInt(args[1]) : 1280;
+        final int frames = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        final BufferedImage[] images = createFrames(width, height, 8);
+        for (final QuickTimeOutputStream.VideoFormat videoFormat : new QuickTimeOutputStream.VideoFormat[]{
+                QuickTimeOutputStream.VideoFormat.JPG, QuickTimeOutputStream.VideoFormat.PNG}) {
+            for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+                final long perFrameWriter = encodeWithWriterPerFrame(videoFormat, images, frames);
+                final long reusedEncoder = encodeWithReusedEncoder(videoFormat, images, frames);
+                if (round == WARMUP_ROUNDS) {
+                    System.out.printf("%s %dx%d, %d frames: writer per frame %.2f ms/frame, reused encoder %.2f ms/frame%n",
+                            videoFormat, width, height, frames, perFrameWriter / 1e6 / frames,
+                            reusedEncoder / 1e6 / frames);
+                }
+            }
+        }
+    }
+
+    private static long encodeWithReusedEncoder(final QuickTimeOutputStream.VideoFormat videoFormat,
+                                                final BufferedImage[] images, final int frames) throws IOException {
+        final FrameEncoder encoder = new FrameEncoder(videoFormat);
+        try {
+            long length = 0;
+            final long start = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                length += encoder.encode(images[i % images.length], null, QUALITY).getLength();
+            }
+            return elapsed(start, length);
+        } finally {
+            encoder.dispose();
+        }
+    }
+
+    private static long encodeWithWriterPerFrame(final QuickTimeOutputStream.VideoFormat videoFormat,
+                                                 final BufferedImage[] images, final int frames) throws IOException {
+        final String mimeType = videoFormat == QuickTimeOutputStream.VideoFormat.JPG ? "image/jpeg" : "image/png";
+        long length = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final ImageWriter iw = ImageIO.getImageWritersByMIMEType(mimeType).next();
+            final ImageWriteParam iwParam = iw.getDefaultWriteParam();
+            if (videoFormat == QuickTimeOutputStream.VideoFormat.JPG) {
+                iwParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                iwParam.setCompressionQuality(QUALITY);
+            }
+            final MemoryCacheImageOutputStream imgOut = new MemoryCacheImageOutputStream(buffer);
+            iw.setOutput(imgOut);
+            iw.write(null, new IIOImage(images[i % images.length], null, null), iwParam);
+            iw.dispose();
+            imgOut.close();
+            length += buffer.toByteArray().length;
+        }
+        return elapsed(start, length);
+    }
+
+    private static long elapsed(final long start, final long length) {
+        final long elapsed = System.nanoTime() - start;
+        if (length == 0) {
+            throw new IllegalStateException("Nothing was encoded");
+        }
+        return elapsed;
+    }
+
+    /**
+     * Creates screen-like frames: flat backgrounds with a few blocks of noise, which move between the frames.
+     */
+    private static BufferedImage[] createFrames(final int width, final int height, final int count) {
+        final Random random = new Random(42);
+        final BufferedImage[] images = new BufferedImage[count];
+        for (int i = 0; i < count; i++) {
+            final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            final Graphics2D g = image.createGraphics();
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.setColor(new Color(0x3F51B5));
+            g.fillRect(0, 0, width, height / 10);
+            for (int block = 0; block < 4; block++) {
+                final int x0 = (block * width / 4 + i * 16) % width;
+                final int y0 = height / 5 + block * height / 6;
+                for (int y = y0; y < Math.min(height, y0 + height / 10); y++) {
+                    for (int x = x0; x < Math.min(width, x0 + width / 5); x++) {
+                        image.setRGB(x, y, random.nextInt(0x1000000));
+                    }
+                }
+            }
+            g.dispose();
+            images[i] = image;
+        }
+        return images;
+    }
+}
@@ -0,0 +1,185 @@
+package com.github.xsavikx.androidscreencast.api.recording;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QuickTimeOutputStreamTest {
+
+    private static final int SYNC = 0x02000000;
+    private static final int NON_SYNC = 0x01010000;
+    private static final int SIZE = 4;
+
+    @Test
+    public void pointsTrackFragmentRunsAtSampleData() throws IOException {
+        final ByteBuffer movie = writeFragmentedMovie(QuickTimeOutputStream.VideoFormat.RAW, 3, "KKKKKKK");
+
+        final List<Atom> fragments = find(atoms(movie, 0, movie.limit()), "moof");
+        assertEquals(3, fragments.size());
+        final List<Integer> sampleCounts = new ArrayList<>();
+        int frame = 0;
+        for (final Atom fragment : fragments) {
+            final Atom run = trackFragmentRun(movie, fragment);
+            assertEquals(0x000301, movie.getInt(run.offset + 8));
+            final int sampleCount = movie.getInt(run.offset + 12);
+            sampleCounts.add(sampleCount);
+            assertEquals(run.offset + run.size, fragment.offset + fragment.size);
+            int data = fragment.offset + movie.getInt(run.offset + 16);
+            assertEquals(mediaDataAfter(movie, fragment).offset + 8, data);
+            for (int sample = 0; sample < sampleCount; sample++, frame++) {
+                assertEquals(10, movie.getInt(run.offset + 20 + sample * 8));
+                final int size = movie.getInt(run.offset + 24 + sample * 8);
+                assertEquals(SIZE * SIZE * 3, size);
+                for (int i = 0; i < size; i++) {
+                    assertEquals(gray(frame, i / 3), movie.get(data + i) & 0xff);
+                }
+                data += size;
+            }
+        }
+        assertEquals(Arrays.asList(3, 3, 1), sampleCounts);
+    }
+
+    @Test
+    public void fillsUnusedFragmentSpaceWithFreeAtom() throws IOException {
+        final ByteBuffer movie = writeFragmentedMovie(QuickTimeOutputStream.VideoFormat.RAW, 3, "KKKK");
+
+        final List<Atom> atoms = atoms(movie, 0, movie.limit());
+        final List<String> types = new ArrayList<>();
+        for (final Atom atom : atoms) {
+            types.add(atom.type);
+        }
+        assertEquals(Arrays.asList("ftyp", "moov", "moof", "wide", "mdat", "moof", "free", "wide", "mdat"), types);
+        // the second fragment reserved space for 3 run table entries of 8 bytes, but has 1 sample
+        assertEquals(16, atoms.get(6).size);
+        assertEquals(atoms.get(2).size, atoms.get(5).size + atoms.get(6).size);
+    }
+
+    @Test
+    public void startsFragmentsOfDeltaFramesWithKeyFrames() throws IOException {
+        final ByteBuffer movie = writeFragmentedMovie(QuickTimeOutputStream.VideoFormat.RLE, 3, "KDDDKDDKDD");
+
+        final List<List<Integer>> sampleFlags = new ArrayList<>();
+        for (final Atom fragment : find(atoms(movie, 0, movie.limit()), "moof")) {
+            final Atom run = trackFragmentRun(movie, fragment);
+            assertEquals(0x000701, movie.getInt(run.offset + 8));
+            final int sampleCount = movie.getInt(run.offset + 12);
+            int data = fragment.offset + movie.getInt(run.offset + 16);
+            assertEquals(mediaDataAfter(movie, fragment).offset + 8, data);
+            final List<Integer> flags = new ArrayList<>();
+            for (int sample = 0; sample < sampleCount; sample++) {
+                final int size = movie.getInt(run.offset + 24 + sample * 12);
+                // every animation sample starts with its own size
+                assertEquals(size, movie.getInt(data));
+                flags.add(movie.getInt(run.offset + 28 + sample * 12));
+                data += size;
+            }
+            sampleFlags.add(flags);
+        }
+        assertEquals(Arrays.asList(
+                Arrays.asList(SYNC, NON_SYNC, NON_SYNC, NON_SYNC),
+                Arrays.asList(SYNC, NON_SYNC, NON_SYNC),
+                Arrays.asList(SYNC, NON_SYNC, NON_SYNC)), sampleFlags);
+    }
+
+    /**
+     * Writes frames of distinct gray pixels, encoding {@code 'K'} frames as key frames and {@code 'D'} frames as delta
+     * frames.
+     */
+    private static ByteBuffer writeFragmentedMovie(final QuickTimeOutputStream.VideoFormat videoFormat,
+                                                   final int fragmentLength, final String frames) throws IOException {
+        final File file = File.createTempFile("fragmented", ".mov");
+        try {
+            final QuickTimeOutputStream out = new QuickTimeOutputStream(file, videoFormat);
+            out.setTimeScale(1000);
+            out.setFragmentLength(fragmentLength);
+            BufferedImage previous = null;
+            for (int frame = 0; frame < frames.length(); frame++) {
+                final BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+                for (int pixel = 0; pixel < SIZE * SIZE; pixel++) {
+                    image.setRGB(pixel % SIZE, pixel / SIZE, gray(frame, pixel) * 0x010101);
+                }
+                out.writeFrame(out.encodeFrame(image, frames.charAt(frame) == 'K' ? null : previous), 10);
+                previous = image;
+            }
+            out.close();
+            return ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    private static int gray(final int frame, final int pixel) {
+        return frame * SIZE * SIZE + pixel;
+    }
+
+    private static Atom trackFragmentRun(final ByteBuffer movie, final Atom fragment) {
+        final List<Atom> trackFragments = find(atoms(movie, fragment.offset + 8, fragment.offset + fragment.size), "traf");
+        assertEquals(1, trackFragments.size());
+        final Atom trackFragment = trackFragments.get(0);
+        final List<Atom> runs = find(atoms(movie, trackFragment.offset + 8, trackFragment.offset + trackFragment.size),
+                "trun");
+        assertEquals(1, runs.size());
+        return runs.get(0);
+    }
+
+    /**
+     * @return media data atom of the fragment, skipping the free space and wide atoms in between
+     */
+    private static Atom mediaDataAfter(final ByteBuffer movie, final Atom fragment) {
+        for (final Atom atom : atoms(movie, fragment.offset + fragment.size, movie.limit())) {
+            if (atom.type.equals("mdat")) {
+                return atom;
+            }
+            assertTrue(atom.type.equals("free") || atom.type.equals("wide"));
+        }
+        throw new AssertionError("No media data atom after the movie fragment at " + fragment.offset);
+    }
+
+    private static List<Atom> atoms(final ByteBuffer movie, final int start, final int end) {
+        final List<Atom> atoms = new ArrayList<>();
+        for (int offset = start; offset < end; ) {
+            final int size = movie.getInt(offset);
+            assertTrue(size >= 8 && offset + size <= end);
+            final byte[] type = new byte[4];
+            for (int i = 0; i < type.length; i++) {
+                type[i] = movie.get(offset + 4 + i);
+            }
+            atoms.add(new Atom(offset, size, new String(type, StandardCharsets.US_ASCII)));
+            offset += size;
+        }
+        return atoms;
+    }
+
+    private static List<Atom> find(final List<Atom> atoms, final String type) {
+        final List<Atom> found = new ArrayList<>();
+        for (final Atom atom : atoms) {
+            if (atom.type.equals(type)) {
+                found.add(atom);
+            }
+        }
+        return found;
+    }
+
+    private static final class Atom {
+        private final int offset;
+        private final int size;
+        private final String type;
+
+        private Atom(final int offset, final int size, final String type) {
+            this.offset = offset;
+            this.size = size;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.xsavikx.androidscreencast.api.recording;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SampleTableTest {
+
+    private static final int SYNC = 0x02000000;
+    private static final int NON_SYNC = 0x01010000;
+
+    private final SampleTable table = new SampleTable();
+
+    @Test
+    public void groupsEqualDurationsIntoRuns() throws IOException {
+        table.add(0, 10, 3, true);
+        table.add(10, 10, 3, true);
+        table.add(20, 10, 5, true);
+
+        assertEquals(2, table.getRunCount());
+        assertEquals(11, table.getTotalDuration());
+        assertArrayEquals(ints(2, 3, 1, 5), timeToSample());
+    }
+
+    @Test
+    public void splitsRunWhenExtendingLastSample() throws IOException {
+        table.add(0, 10, 3, true);
+        table.add(10, 10, 3, true);
+        table.add(20, 10, 3, true);
+
+        table.extendLast(4);
+
+        assertEquals(2, table.getRunCount());
+        assertEquals(13, table.getTotalDuration());
+        assertArrayEquals(ints(2, 3, 1, 7), timeToSample());
+    }
+
+    @Test
+    public void extendsSingleSampleRun() throws IOException {
+        table.add(0, 10, 3, true);
+        table.add(10, 10, 1, true);
+
+        table.extendLast(1);
+        table.extendLast(4);
+
+        assertEquals(2, table.getRunCount());
+        assertEquals(9, table.getTotalDuration());
+        assertArrayEquals(ints(1, 3, 1, 6), timeToSample());
+    }
+
+    @Test
+    public void mergesExtendedSampleIntoPreviousRun() throws IOException {
+        table.add(0, 10, 5, true);
+        table.add(10, 10, 5, true);
+        table.add(20, 10, 2, true);
+
+        table.extendLast(3);
+
+        assertEquals(1, table.getRunCount());
+        assertEquals(15, table.getTotalDuration());
+        assertArrayEquals(ints(3, 5), timeToSample());
+
+        table.add(30, 10, 5, true);
+        assertArrayEquals(ints(4, 5), timeToSample());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsExtendingEmptyTable() {
+        table.extendLast(1);
+    }
+
+    @Test
+    public void listsKeyFramesOnlyWithDeltaFrames() throws IOException {
+        table.add(0, 10, 1, true);
+        table.add(10, 20, 1, true);
+        assertFalse(table.hasNonSyncSamples());
+
+        table.add(30, 30, 1, false);
+        table.add(60, 40, 1, true);
+        assertTrue(table.hasNonSyncSamples());
+        assertEquals(3, table.getSyncSampleCount());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        table.writeSyncSamples(out);
+        assertArrayEquals(ints(1, 2, 4), out.toByteArray());
+    }
+
+    @Test
+    public void writesFragmentRunWithSampleFlags() throws IOException {
+        table.add(100, 10, 1, true);
+        table.add(110, 20, 1, false);
+        table.add(130, 30, 2, false);
+        table.add(160, 40, 2, true);
+        table.extendLast(1);
+
+        assertArrayEquals(ints(
+                1, 10, SYNC,
+                1, 20, NON_SYNC,
+                2, 30, NON_SYNC,
+                3, 40, SYNC), fragmentRun(true));
+    }
+
+    @Test
+    public void writesFragmentRunWithoutSampleFlags() throws IOException {
+        table.add(100, 10, 1, true);
+        table.add(110, 20, 2, true);
+
+        assertArrayEquals(ints(1, 10, 2, 20), fragmentRun(false));
+    }
+
+    @Test
+    public void restartsSampleNumbersAfterClear() throws IOException {
+        table.add(0, 10, 1, true);
+        table.add(10, 20, 1, false);
+        table.clear();
+
+        table.add(30, 30, 4, false);
+        table.add(60, 40, 4, true);
+
+        assertEquals(2, table.size());
+        assertEquals(8, table.getTotalDuration());
+        assertArrayEquals(ints(4, 30, NON_SYNC, 4, 40, SYNC), fragmentRun(true));
+    }
+
+    @Test
+    public void writesWideOffsetsOnlyWhenRequired() throws IOException {
+        table.add(0x10, 10, 1, true);
+        assertFalse(table.requiresWideOffsets());
+        table.add(0x100000000L, 20, 1, true);
+        assertTrue(table.requiresWideOffsets());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        table.writeOffsets(out, true);
+        assertArrayEquals(ints(0, 0x10, 1, 0), out.toByteArray());
+        out.reset();
+        table.writeSizes(out);
+        assertArrayEquals(ints(10, 20), out.toByteArray());
+    }
+
+    private byte[] timeToSample() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        table.writeTimeToSample(out);
+        return out.toByteArray();
+    }
+
+    private byte[] fragmentRun(final boolean writeFlags) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        table.writeFragmentRun(out, writeFlags, SYNC, NON_SYNC);
+        return out.toByteArray();
+    }
+
+    private static byte[] ints(final int... values) {
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * Integer.BYTES);
+        for (final int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+}